@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks;
+
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.benchmarks.support.BenchmarkRequest;
+import io.sgr.streamify.benchmarks.support.DiscardingWebDavServer;
+import io.sgr.streamify.benchmarks.support.Payloads;
+import io.sgr.streamify.concurrent.VirtualThreads;
+import io.sgr.streamify.extensions.webdav.WebDavUploadChannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link #concurrency} uploads of {@value #PAYLOAD_SIZE} bytes at once through {@link WebDavUploadChannel}, with
+ * producers which pause for {@link #thinkTimeMillis} between pieces the way a query does between fetches, either on
+ * platform threads or on virtual threads. Every upload holds a producer and a request body writer for its whole
+ * duration, so this shows how far each model goes before the threads themselves become the cost.
+ * <p>
+ * The {@code virtual} mode needs Java 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConcurrentUploadBenchmark {
+
+    private static final int PAYLOAD_SIZE = 256 * 1024;
+    private static final int PIECE_SIZE = 16 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"64", "512"})
+    public int concurrency;
+
+    @Param({"0", "1"})
+    public int thinkTimeMillis;
+
+    private byte[] payload;
+    private DiscardingWebDavServer server;
+    private ExecutorService producers;
+    private ExecutorService writers;
+    private WebDavUploadChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        payload = Payloads.jsonLines(PAYLOAD_SIZE);
+        if ("virtual".equals(mode)) {
+            producers = VirtualThreads.newThreadPerTaskExecutor("benchmark-producer-")
+                    .orElseThrow(() -> new IllegalStateException("Virtual threads are not available in this runtime!"));
+            writers = VirtualThreads.newThreadPerTaskExecutor("benchmark-writer-")
+                    .orElseThrow(() -> new IllegalStateException("Virtual threads are not available in this runtime!"));
+        } else {
+            producers = Executors.newCachedThreadPool();
+            writers = Executors.newCachedThreadPool();
+        }
+        server = new DiscardingWebDavServer();
+        channel = new WebDavUploadChannel(server.getBaseUrl(), null, null)
+                .setExecutor(writers)
+                .setMaxConcurrentRequests(concurrency);
+    }
+
+    @TearDown(Level.Iteration)
+    public void forgetRequests() throws InterruptedException {
+        server.forgetRequests();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        producers.shutdownNow();
+        writers.shutdownNow();
+        server.close();
+    }
+
+    @Benchmark
+    public void upload() throws InterruptedException, ExecutionException {
+        final List<Future<?>> uploads = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            uploads.add(producers.submit(this::uploadOne));
+        }
+        for (Future<?> upload : uploads) {
+            upload.get();
+        }
+    }
+
+    private void uploadOne() {
+        final StreamingRequest request = new BenchmarkRequest(BUFFER_SIZE);
+        try (
+                OutputStream out = channel.open(request, request.getId() + ".jsonl")
+        ) {
+            for (int offset = 0; offset < payload.length; offset += PIECE_SIZE) {
+                out.write(payload, offset, Math.min(PIECE_SIZE, payload.length - offset));
+                if (thinkTimeMillis > 0) {
+                    Thread.sleep(thinkTimeMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while uploading!"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks;
+
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.benchmarks.support.BenchmarkRequest;
+import io.sgr.streamify.benchmarks.support.Payloads;
+import io.sgr.streamify.channels.FileSystemStreamingChannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@value #PAYLOAD_SIZE} bytes of JSON lines through {@link FileSystemStreamingChannel} into the temporary
+ * directory, either through its direct buffer or through memory mapped regions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileSystemChannelBenchmark {
+
+    private static final int PAYLOAD_SIZE = 64 * 1024 * 1024;
+    private static final String IDENTIFIER = "export.jsonl";
+
+    @Param({"128", "65536"})
+    public int writeSize;
+
+    @Param({"false", "true"})
+    public boolean memoryMapped;
+
+    private byte[] payload;
+    private Path directory;
+    private FileSystemStreamingChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        payload = Payloads.jsonLines(PAYLOAD_SIZE);
+        directory = Files.createTempDirectory("streamify-benchmark-");
+        channel = new FileSystemStreamingChannel(directory).setMemoryMapped(memoryMapped).setPreallocateBytes((long) PAYLOAD_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(channel.resolve(IDENTIFIER));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        final StreamingRequest request = new BenchmarkRequest(PAYLOAD_SIZE);
+        try (
+                OutputStream out = channel.open(request, IDENTIFIER)
+        ) {
+            Payloads.writeInPieces(out, payload, writeSize);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks;
+
+import io.sgr.streamify.OutputStreamWrapper;
+import io.sgr.streamify.benchmarks.support.Payloads;
+import io.sgr.streamify.buffers.ChunkedPipe;
+import io.sgr.streamify.wrappers.GZipOutputStreamWrapper;
+import io.sgr.streamify.wrappers.ParallelGZipOutputStreamWrapper;
+import io.sgr.streamify.wrappers.SingleFileZipOutputStreamWrapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes {@value #PAYLOAD_SIZE} bytes of JSON lines through an {@link OutputStreamWrapper} into a {@link ChunkedPipe}
+ * drained by another thread, which is what happens inside an upload channel minus the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputStreamWrapperBenchmark {
+
+    private static final int PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    @Param({"none", "gzip", "parallel-gzip", "zip"})
+    public String wrapper;
+
+    @Param({"64", "1024", "65536"})
+    public int writeSize;
+
+    @Param({"65536", "1048576"})
+    public int bufferSize;
+
+    private byte[] payload;
+    private OutputStreamWrapper outputStreamWrapper;
+    private ExecutorService consumer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = Payloads.jsonLines(PAYLOAD_SIZE);
+        outputStreamWrapper = createWrapper(wrapper);
+        consumer = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        consumer.shutdownNow();
+    }
+
+    @Benchmark
+    public long wrapAndHandOver() throws IOException, ExecutionException, InterruptedException {
+        final ChunkedPipe pipe = new ChunkedPipe(bufferSize);
+        final Future<Long> drained = consumer.submit(() -> drain(pipe));
+        try (
+                OutputStream out = outputStreamWrapper.wrap(pipe.sink())
+        ) {
+            Payloads.writeInPieces(out, payload, writeSize);
+        }
+        return drained.get();
+    }
+
+    private static long drain(final ChunkedPipe pipe) throws IOException {
+        final long[] count = new long[1];
+        //noinspection StatementWithEmptyBody
+        while (pipe.source().readChunk((chunk, offset, length) -> count[0] += length)) {
+            // Keep draining
+        }
+        return count[0];
+    }
+
+    private static OutputStreamWrapper createWrapper(final String name) {
+        switch (name) {
+            case "gzip":
+                return new GZipOutputStreamWrapper();
+            case "parallel-gzip":
+                return new ParallelGZipOutputStreamWrapper();
+            case "zip":
+                return new SingleFileZipOutputStreamWrapper("export.jsonl");
+            default:
+                return out -> out;
+        }
+    }
+
+}
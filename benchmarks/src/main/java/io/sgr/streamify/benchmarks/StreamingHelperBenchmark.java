@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks;
+
+import io.sgr.streamify.benchmarks.support.ExportRow;
+import io.sgr.streamify.benchmarks.support.InMemoryDatabase;
+import io.sgr.streamify.jdbc.KeyRange;
+import io.sgr.streamify.jdbc.StreamingHelper;
+import io.sgr.streamify.jdbc.StreamingOptions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Streams every row of an in-memory table through {@link StreamingHelper#queryToStream} and a {@link io.sgr.streamify.jdbc.RowConverter},
+ * one operation is one full query. The partitioned variant splits the table into key ranges streamed in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingHelperBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"100", "1000", "10000"})
+    public int fetchSize;
+
+    @Param({"4"})
+    public int partitions;
+
+    private InMemoryDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = InMemoryDatabase.create("streaming-helper", rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public void queryToStream(final Blackhole blackhole) throws SQLException {
+        try (
+                Stream<ExportRow> stream = StreamingHelper.queryToStream(
+                        database.getDataSource(), InMemoryDatabase.SELECT_ALL, null, ExportRow::read, new StreamingOptions().setFetchSize(fetchSize))
+        ) {
+            stream.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public long queryToParallelStream() {
+        try (
+                Stream<ExportRow> stream = StreamingHelper.queryToParallelStream(database.getDataSource(), InMemoryDatabase.SELECT_RANGE,
+                        KeyRange.split(1, rows + 1L, partitions), ExportRow::read, new StreamingOptions().setFetchSize(fetchSize))
+        ) {
+            // Blackhole isn't meant to be shared between threads, let the rows be consumed by counting instead.
+            return stream.count();
+        }
+    }
+
+}
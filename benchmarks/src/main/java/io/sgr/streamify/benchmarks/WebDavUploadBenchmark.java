@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks;
+
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.benchmarks.support.BenchmarkRequest;
+import io.sgr.streamify.benchmarks.support.DiscardingWebDavServer;
+import io.sgr.streamify.benchmarks.support.Payloads;
+import io.sgr.streamify.extensions.webdav.WebDavUploadChannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads {@value #PAYLOAD_SIZE} bytes of JSON lines end to end through {@link WebDavUploadChannel} into a local server
+ * which discards the content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WebDavUploadBenchmark {
+
+    private static final int PAYLOAD_SIZE = 32 * 1024 * 1024;
+
+    @Param({"128", "65536"})
+    public int writeSize;
+
+    @Param({"65536", "1048576"})
+    public int bufferSize;
+
+    private byte[] payload;
+    private DiscardingWebDavServer server;
+    private WebDavUploadChannel channel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        payload = Payloads.jsonLines(PAYLOAD_SIZE);
+        server = new DiscardingWebDavServer();
+        channel = new WebDavUploadChannel(server.getBaseUrl(), null, null);
+    }
+
+    @TearDown(Level.Iteration)
+    public void forgetRequests() throws InterruptedException {
+        server.forgetRequests();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Benchmark
+    public void upload() throws IOException {
+        final StreamingRequest request = new BenchmarkRequest(bufferSize);
+        try (
+                OutputStream out = channel.open(request, request.getId() + ".jsonl")
+        ) {
+            Payloads.writeInPieces(out, payload, writeSize);
+        }
+    }
+
+}
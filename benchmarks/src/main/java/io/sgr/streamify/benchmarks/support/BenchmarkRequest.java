@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks.support;
+
+import io.sgr.streamify.StreamingRequest;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+public class BenchmarkRequest implements StreamingRequest {
+
+    private final String id;
+    private final int bufferSize;
+
+    public BenchmarkRequest(final int bufferSize) {
+        this.id = UUID.randomUUID().toString();
+        this.bufferSize = bufferSize;
+    }
+
+    @Nonnull
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Nonnull
+    @Override
+    public String getContentType() {
+        return "application/x-jsonlines";
+    }
+
+    @Override
+    public Optional<Integer> getBufferSize() {
+        return Optional.of(bufferSize);
+    }
+
+}
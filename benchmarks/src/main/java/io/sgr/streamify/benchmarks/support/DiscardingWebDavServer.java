@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks.support;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A local stand-in for a WebDAV server which accepts every upload and throws the content away, so what gets measured is
+ * the client side rather than the disk of a real server.
+ */
+public class DiscardingWebDavServer implements Closeable {
+
+    private final MockWebServer server;
+
+    public DiscardingWebDavServer() throws IOException {
+        this.server = new MockWebServer();
+        this.server.setBodyLimit(0);
+        this.server.setDispatcher(new Dispatcher() {
+            @Nonnull
+            @Override
+            public MockResponse dispatch(@Nonnull final RecordedRequest request) {
+                return new MockResponse().setResponseCode(201);
+            }
+        });
+        this.server.start();
+    }
+
+    @Nonnull
+    public String getBaseUrl() {
+        return server.url("/").toString();
+    }
+
+    /**
+     * The server keeps a record of every request it has seen, drop them between iterations so they don't pile up.
+     *
+     * @throws InterruptedException
+     *         If interrupted while draining.
+     */
+    public void forgetRequests() throws InterruptedException {
+        //noinspection StatementWithEmptyBody
+        while (server.takeRequest(0, TimeUnit.MILLISECONDS) != null) {
+            // Keep draining
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks.support;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import javax.annotation.Nonnull;
+
+public class ExportRow {
+
+    private final long id;
+    private final String name;
+    private final double amount;
+    private final boolean active;
+    private final Timestamp createdAt;
+
+    private ExportRow(final long id, final String name, final double amount, final boolean active, final Timestamp createdAt) {
+        this.id = id;
+        this.name = name;
+        this.amount = amount;
+        this.active = active;
+        this.createdAt = createdAt;
+    }
+
+    @Nonnull
+    public static ExportRow read(@Nonnull final ResultSet rs) throws SQLException {
+        return new ExportRow(rs.getLong(1), rs.getString(2), rs.getDouble(3), rs.getBoolean(4), rs.getTimestamp(5));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks.support;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.annotation.Nonnull;
+import javax.sql.DataSource;
+
+/**
+ * An H2 in-memory database pre-filled with an {@code exports} table of the given number of rows.
+ */
+public class InMemoryDatabase implements AutoCloseable {
+
+    public static final String SELECT_ALL = "SELECT id, name, amount, active, created_at FROM exports ORDER BY id";
+    public static final String SELECT_RANGE = "SELECT id, name, amount, active, created_at FROM exports WHERE id >= ? AND id < ? ORDER BY id";
+
+    private final JdbcDataSource dataSource;
+
+    private InMemoryDatabase(final JdbcDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Nonnull
+    public static InMemoryDatabase create(@Nonnull final String name, final int rows) throws SQLException {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        try (
+                Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement()
+        ) {
+            stmt.execute("DROP TABLE IF EXISTS exports");
+            stmt.execute("CREATE TABLE exports (id BIGINT PRIMARY KEY, name VARCHAR(64), amount DOUBLE, active BOOLEAN, created_at TIMESTAMP)");
+            stmt.execute("INSERT INTO exports SELECT X, CONCAT('name-', X), X * 1.5, MOD(X, 2) = 0, "
+                    + "DATEADD('SECOND', X, TIMESTAMP '2019-01-01 00:00:00') FROM SYSTEM_RANGE(1, " + rows + ")");
+        }
+        return new InMemoryDatabase(dataSource);
+    }
+
+    @Nonnull
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (
+                Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement()
+        ) {
+            stmt.execute("SHUTDOWN");
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.benchmarks.support;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+public final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * @param size
+     *         Approximate size of the payload in bytes.
+     * @return JSON lines which look like what an exporter would produce, compress about as well as real exports do.
+     */
+    @Nonnull
+    public static byte[] jsonLines(final int size) {
+        final Random random = new Random(size);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(size + 256);
+        long id = 0;
+        while (bos.size() < size) {
+            final String line = String.format("{\"id\":%d,\"name\":\"name-%08x\",\"amount\":%.4f,\"active\":%b}%n",
+                    ++id, random.nextInt(), random.nextDouble() * 10000, random.nextBoolean());
+            final byte[] bytes = line.getBytes(UTF_8);
+            bos.write(bytes, 0, bytes.length);
+        }
+        return bos.toByteArray();
+    }
+
+    public static void writeInPieces(@Nonnull final OutputStream out, @Nonnull final byte[] payload, final int pieceSize) throws IOException {
+        int offset = 0;
+        while (offset < payload.length) {
+            final int len = Math.min(pieceSize, payload.length - offset);
+            out.write(payload, offset, len);
+            offset += len;
+        }
+    }
+
+}
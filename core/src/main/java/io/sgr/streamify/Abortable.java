@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify;
+
+/**
+ * A stream of a {@link StreamingChannel} which can be given up on, so content which has only been partially written
+ * never shows up at the destination as if it was complete, the way it would once the stream is closed.
+ */
+public interface Abortable {
+
+    /**
+     * Discards whatever has been written and releases resources instead of completing the content, e.g. cancels the
+     * upload or deletes the temporary file. Closing the stream afterwards does nothing. Should not throw, failures to
+     * clean up are best left to the destination.
+     */
+    void abort();
+
+}
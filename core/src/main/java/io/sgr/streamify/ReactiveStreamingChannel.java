@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify;
+
+import org.reactivestreams.Publisher;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A channel which pulls content from a publisher as fast as it can send it, instead of having a writer block on an
+ * {@link java.io.OutputStream}, so no thread is tied up producing content while the channel can't take any.
+ */
+public interface ReactiveStreamingChannel {
+
+    /**
+     * Subscribes to the content and sends it, demand is only signalled as the channel is ready for more.
+     *
+     * @param request
+     *         The streaming request.
+     * @param identifier
+     *         Identifies the content within the channel, e.g. the file name.
+     * @param content
+     *         The content, buffers must not be touched by the publisher once published.
+     * @return A future completed once the content has been sent, or failed if either side failed.
+     */
+    @Nonnull
+    CompletableFuture<Void> stream(@Nonnull StreamingRequest request, @Nonnull String identifier, @Nonnull Publisher<ByteBuffer> content);
+
+}
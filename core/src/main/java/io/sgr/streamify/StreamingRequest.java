@@ -17,6 +17,12 @@
 
 package io.sgr.streamify;
 
+import io.sgr.streamify.buffers.SpillOptions;
+import io.sgr.streamify.checksums.ChecksumOptions;
+import io.sgr.streamify.codecs.CompressionCodec;
+
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import javax.annotation.Nonnull;
@@ -31,4 +37,73 @@ public interface StreamingRequest {
 
     Optional<Integer> getBufferSize();
 
+    /**
+     * @return Codec to compress the content with before it leaves the channel, nothing by default.
+     */
+    default Optional<CompressionCodec> getCompressionCodec() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return Wrappers the channel applies to its stream, the first one being closest to the destination and the last
+     *         one receiving what's written to the channel, see {@link io.sgr.streamify.wrappers.OutputStreamWrappers}.
+     *         Just the {@link #getCompressionCodec() compression codec} if any by default.
+     */
+    @Nonnull
+    default List<OutputStreamWrapper> getWrappers() {
+        return getCompressionCodec().<List<OutputStreamWrapper>>map(Collections::singletonList).orElse(Collections.emptyList());
+    }
+
+    /**
+     * @return Priority of the content when channels have to pick which stream goes first, e.g.
+     *         {@link io.sgr.streamify.channels.SchedulingStreamingChannel}, higher first, 0 if not set.
+     */
+    default Optional<Integer> getPriority() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return How long to wait for a connection to the destination, the channel's default if not set.
+     */
+    default Optional<Long> getConnectTimeoutMillis() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return How long reading from the destination, e.g. waiting for its response, may stall, the channel's default if
+     *         not set.
+     */
+    default Optional<Long> getReadTimeoutMillis() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return How long writing to the destination may stall, the channel's default if not set.
+     */
+    default Optional<Long> getWriteTimeoutMillis() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return Hint of how many requests the channel may run at once for this content, e.g. parts of a chunked upload,
+     *         the channel's setting if not set. Channels may cap it by their own limits.
+     */
+    default Optional<Integer> getMaxConcurrency() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return How to buffer content the destination can't take fast enough, the channel's setting if not set.
+     */
+    default Optional<SpillOptions> getSpillOptions() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return Checksums to compute over the content as it's streamed, the channel's setting if not set.
+     */
+    default Optional<ChecksumOptions> getChecksumOptions() {
+        return Optional.empty();
+    }
+
 }
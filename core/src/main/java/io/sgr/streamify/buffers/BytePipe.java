@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.buffers;
+
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A bounded buffer between one producer thread writing to {@link #sink()} and one consumer thread draining
+ * {@link #source()}. Closing either end releases the other one.
+ */
+public interface BytePipe {
+
+    @Nonnull
+    OutputStream sink();
+
+    @Nonnull
+    ChunkSource source();
+
+    /**
+     * @return Total time in nanoseconds the producer has spent waiting for room in the pipe so far.
+     */
+    long getProducerBlockedNanos();
+
+}
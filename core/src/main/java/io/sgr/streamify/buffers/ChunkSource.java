@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.buffers;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Consumer side of a buffer which can hand its content over chunk by chunk, without copying it into a caller supplied
+ * array first.
+ */
+public interface ChunkSource extends Closeable {
+
+    /**
+     * Waits for the next chunk and passes it to the given consumer. The chunk is only valid during the call, since it
+     * will be handed back to the producer right after the consumer returns.
+     *
+     * @param consumer
+     *         The consumer of the chunk.
+     * @return {@code false} if the end of stream has been reached, otherwise {@code true}.
+     * @throws IOException
+     *         If the source has been closed or the consumer failed.
+     */
+    boolean readChunk(@Nonnull ChunkConsumer consumer) throws IOException;
+
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.buffers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A bounded single-producer/single-consumer pipe which hands bytes over in pooled chunks.
+ * <p>
+ * The pipe is a ring of {@code capacity / chunkSize} chunks which are allocated lazily and then reused for the whole
+ * life of the pipe. The producer fills a chunk and publishes it by bumping a counter, the consumer drains it and gives
+ * it back the same way, so no lock is taken on the hot path, and a side only parks when the ring is full (producer) or
+ * empty (consumer). Closing either end wakes up the other side, so neither side depends on the other thread staying
+ * alive the way {@link java.io.PipedInputStream} does.
+ */
+public class ChunkedPipe implements BytePipe {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private static final int MIN_CHUNKS = 2;
+
+    private final byte[][] chunks;
+    private final int[] limits;
+    private final int chunkSize;
+
+    private final Sink sink;
+    private final Source source;
+
+    private volatile long published;
+    private volatile long consumed;
+    private volatile boolean sinkClosed;
+    private volatile boolean sourceClosed;
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+    private volatile long producerBlockedNanos;
+
+    public ChunkedPipe(final int capacity) {
+        this(capacity, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedPipe(final int capacity, final int chunkSize) {
+        checkArgument(capacity > 0, "Capacity should be greater than 0!");
+        checkArgument(chunkSize > 0, "Chunk size should be greater than 0!");
+        this.chunkSize = Math.max(1, Math.min(chunkSize, capacity / MIN_CHUNKS));
+        final int count = Math.max(MIN_CHUNKS, capacity / this.chunkSize);
+        this.chunks = new byte[count][];
+        this.limits = new int[count];
+        this.sink = new Sink();
+        this.source = new Source();
+    }
+
+    /**
+     * @return The producer side of this pipe, should only be used by one thread at a time.
+     */
+    @Nonnull
+    @Override
+    public Sink sink() {
+        return sink;
+    }
+
+    /**
+     * @return The consumer side of this pipe, should only be used by one thread at a time.
+     */
+    @Nonnull
+    @Override
+    public Source source() {
+        return source;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getCapacity() {
+        return chunkSize * chunks.length;
+    }
+
+    @Override
+    public long getProducerBlockedNanos() {
+        return producerBlockedNanos;
+    }
+
+    private int slotOf(final long index) {
+        return (int) (index % chunks.length);
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.interrupted()) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on pipe!");
+        }
+    }
+
+    public final class Sink extends OutputStream {
+
+        private byte[] current;
+        private int position;
+
+        private Sink() {
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            final byte[] chunk = acquire();
+            chunk[position++] = (byte) b;
+            if (position == chunk.length) {
+                publish();
+            }
+        }
+
+        @Override
+        public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+            checkPositionIndexes(off, off + len, b.length);
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                final byte[] chunk = acquire();
+                final int count = Math.min(remaining, chunk.length - position);
+                System.arraycopy(b, offset, chunk, position, count);
+                position += count;
+                offset += count;
+                remaining -= count;
+                if (position == chunk.length) {
+                    publish();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            ensureOpen();
+            if (position > 0) {
+                publish();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (sinkClosed) {
+                return;
+            }
+            if (position > 0 && !sourceClosed) {
+                publish();
+            }
+            current = null;
+            sinkClosed = true;
+            LockSupport.unpark(waitingConsumer);
+        }
+
+        private void ensureOpen() throws IOException {
+            if (sinkClosed) {
+                throw new IOException("Pipe closed!");
+            }
+            if (sourceClosed) {
+                throw new IOException("Read end of the pipe has been closed!");
+            }
+        }
+
+        private byte[] acquire() throws IOException {
+            ensureOpen();
+            if (nonNull(current)) {
+                return current;
+            }
+            final long index = published;
+            if (index - consumed >= chunks.length) {
+                awaitFreeSlot(index);
+            }
+            final int slot = slotOf(index);
+            byte[] chunk = chunks[slot];
+            if (isNull(chunk)) {
+                chunk = new byte[chunkSize];
+                chunks[slot] = chunk;
+            }
+            current = chunk;
+            return chunk;
+        }
+
+        @SuppressFBWarnings(value = "VO_VOLATILE_INCREMENT", justification = "Only the producer writes this counter.")
+        private void awaitFreeSlot(final long index) throws IOException {
+            waitingProducer = Thread.currentThread();
+            final long start = System.nanoTime();
+            try {
+                while (index - consumed >= chunks.length) {
+                    ensureOpen();
+                    LockSupport.park(this);
+                    checkInterrupted();
+                }
+            } finally {
+                waitingProducer = null;
+                producerBlockedNanos = producerBlockedNanos + System.nanoTime() - start;
+            }
+        }
+
+        @SuppressFBWarnings(value = "VO_VOLATILE_INCREMENT", justification = "Only the producer writes this counter.")
+        private void publish() {
+            final long index = published;
+            limits[slotOf(index)] = position;
+            current = null;
+            position = 0;
+            published = index + 1;
+            LockSupport.unpark(waitingConsumer);
+        }
+
+    }
+
+    public final class Source extends InputStream implements ChunkSource {
+
+        private byte[] current;
+        private int position;
+        private int limit;
+
+        private Source() {
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!acquire()) {
+                return -1;
+            }
+            final int b = current[position++] & 0xFF;
+            if (position == limit) {
+                release();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+            checkPositionIndexes(off, off + len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!acquire()) {
+                return -1;
+            }
+            final int count = Math.min(len, limit - position);
+            System.arraycopy(current, position, b, off, count);
+            position += count;
+            if (position == limit) {
+                release();
+            }
+            return count;
+        }
+
+        @Override
+        public boolean readChunk(@Nonnull final ChunkConsumer consumer) throws IOException {
+            if (!acquire()) {
+                return false;
+            }
+            consumer.accept(current, position, limit - position);
+            release();
+            return true;
+        }
+
+        @Override
+        public int available() {
+            return nonNull(current) ? limit - position : 0;
+        }
+
+        /**
+         * Closes the consumer side, any producer blocked on or later writing to the pipe will get an {@link IOException}.
+         * Unlike other methods of this class, this one is safe to call from any thread.
+         */
+        @Override
+        public void close() {
+            sourceClosed = true;
+            LockSupport.unpark(waitingProducer);
+        }
+
+        private boolean acquire() throws IOException {
+            if (sourceClosed) {
+                throw new IOException("Pipe closed!");
+            }
+            if (nonNull(current)) {
+                return true;
+            }
+            final long index = consumed;
+            if (index >= published && !awaitChunk(index)) {
+                return false;
+            }
+            final int slot = slotOf(index);
+            current = chunks[slot];
+            limit = limits[slot];
+            position = 0;
+            return true;
+        }
+
+        private boolean awaitChunk(final long index) throws IOException {
+            waitingConsumer = Thread.currentThread();
+            try {
+                while (index >= published) {
+                    if (sinkClosed) {
+                        // Everything has been published before the sink was marked as closed.
+                        return index < published;
+                    }
+                    if (sourceClosed) {
+                        throw new IOException("Pipe closed!");
+                    }
+                    LockSupport.park(this);
+                    checkInterrupted();
+                }
+                return true;
+            } finally {
+                waitingConsumer = null;
+            }
+        }
+
+        @SuppressFBWarnings(value = "VO_VOLATILE_INCREMENT", justification = "Only the consumer writes this counter.")
+        private void release() {
+            current = null;
+            consumed = consumed + 1;
+            LockSupport.unpark(waitingProducer);
+        }
+
+    }
+
+}
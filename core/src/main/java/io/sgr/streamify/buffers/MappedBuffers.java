@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.buffers;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Unmaps memory-mapped buffers right away instead of waiting for them to be garbage collected, as far as the runtime
+ * allows: through {@code Unsafe.invokeCleaner} on Java 9 and later, through the buffer's cleaner on Java 8.
+ * <p>
+ * Touching a buffer after it has been unmapped crashes the JVM, callers have to make sure nobody uses it anymore.
+ */
+final class MappedBuffers {
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+        final Class<?> unsafeClass = findClass("sun.misc.Unsafe");
+        INVOKE_CLEANER = isNull(unsafeClass) ? null : findMethod(unsafeClass, "invokeCleaner", ByteBuffer.class);
+        UNSAFE = isNull(INVOKE_CLEANER) ? null : findUnsafe(unsafeClass);
+        final Class<?> directBufferClass = findClass("sun.nio.ch.DirectBuffer");
+        final Class<?> cleanerClass = findClass("sun.misc.Cleaner");
+        CLEANER = isNull(directBufferClass) ? null : findMethod(directBufferClass, "cleaner");
+        CLEAN = isNull(cleanerClass) ? null : findMethod(cleanerClass, "clean");
+    }
+
+    private MappedBuffers() {
+    }
+
+    /**
+     * @param buffer
+     *         The buffer to unmap, must not be used afterwards.
+     * @return Whether the buffer has been unmapped, {@code false} if the runtime doesn't allow it.
+     */
+    static boolean unmap(@Nonnull final MappedByteBuffer buffer) {
+        try {
+            if (nonNull(UNSAFE)) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return true;
+            }
+            if (nonNull(CLEANER) && nonNull(CLEAN)) {
+                final Object cleaner = CLEANER.invoke(buffer);
+                if (nonNull(cleaner)) {
+                    CLEAN.invoke(cleaner);
+                    return true;
+                }
+            }
+        } catch (IllegalAccessException | InvocationTargetException | RuntimeException e) {
+            // Left to the garbage collector.
+        }
+        return false;
+    }
+
+    private static Class<?> findClass(@Nonnull final String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(@Nonnull final Class<?> clazz, @Nonnull final String name, final Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @SuppressFBWarnings(value = "DP_DO_INSIDE_DO_PRIVILEGED", justification = "Best effort, without access the buffers are left to the GC.")
+    private static Object findUnsafe(@Nonnull final Class<?> unsafeClass) {
+        try {
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return field.get(null);
+        } catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+}
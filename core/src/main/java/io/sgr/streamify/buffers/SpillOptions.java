@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.buffers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Settings of the disk tier of a {@link SpillingPipe}.
+ * <p>
+ * The spill file is memory-mapped in regions of up to 256M. Once the source is closed the file is deleted and the
+ * regions are unmapped as soon as no copy is in progress, which releases the disk space right away. On runtimes which
+ * don't allow unmapping, the mappings and the disk space behind them are only released once the pipe has been garbage
+ * collected.
+ */
+public class SpillOptions {
+
+    private final long maxDiskBytes;
+
+    private Path directory;
+
+    /**
+     * @param maxDiskBytes
+     *         Most bytes which can be spilled to disk at once, the producer blocks once both memory and disk are full.
+     */
+    public SpillOptions(final long maxDiskBytes) {
+        checkArgument(maxDiskBytes > 0, "Max disk bytes should be greater than 0!");
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    public long getMaxDiskBytes() {
+        return maxDiskBytes;
+    }
+
+    /**
+     * @return Directory to create spill files in, the default temporary directory if not set.
+     */
+    public Optional<Path> getDirectory() {
+        return Optional.ofNullable(directory);
+    }
+
+    public SpillOptions setDirectory(final Path directory) {
+        this.directory = directory;
+        return this;
+    }
+
+}
@@ -0,0 +1,597 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.buffers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A pipe which keeps up to {@code memoryCapacity} bytes in heap chunks like {@link ChunkedPipe}, and once those are all
+ * taken, spills further chunks into a memory-mapped temporary file instead of blocking the producer.
+ * <p>
+ * The spill file is used as a ring of {@link SpillOptions#getMaxDiskBytes()} bytes, so a producer which keeps
+ * outrunning the consumer only blocks once both tiers are full. The file is created on first spill and deleted when the
+ * source is closed, and its mapped regions unmapped, see {@link SpillOptions}. Chunks are handed over in the order they
+ * were written, whichever tier they went to.
+ */
+public class SpillingPipe implements BytePipe {
+
+    private static final int REGION_SIZE = 256 * 1024 * 1024;
+    private static final int MIN_CHUNKS = 2;
+
+    private final int chunkSize;
+    private final int maxChunks;
+    private final long diskCapacity;
+    private final Path directory;
+    private final MappedByteBuffer[] regions;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Deque<byte[]> freeChunks = new ArrayDeque<>();
+
+    private final Sink sink;
+    private final Source source;
+
+    private int allocatedChunks;
+    private FileChannel file;
+    private long diskTail;
+    private long diskUsed;
+    private long spilledBytes;
+    private long producerBlockedNanos;
+    private boolean sinkClosed;
+    private boolean sourceClosed;
+    private int diskUsers;
+
+    public SpillingPipe(final int memoryCapacity, @Nonnull final SpillOptions options) {
+        this(memoryCapacity, ChunkedPipe.DEFAULT_CHUNK_SIZE, options);
+    }
+
+    public SpillingPipe(final int memoryCapacity, final int chunkSize, @Nonnull final SpillOptions options) {
+        checkArgument(memoryCapacity > 0, "Capacity should be greater than 0!");
+        checkArgument(chunkSize > 0, "Chunk size should be greater than 0!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "Missing spill options!");
+        this.chunkSize = Math.max(1, Math.min(chunkSize, memoryCapacity / MIN_CHUNKS));
+        this.maxChunks = Math.max(MIN_CHUNKS, memoryCapacity / this.chunkSize);
+        this.diskCapacity = options.getMaxDiskBytes();
+        this.directory = options.getDirectory().orElse(null);
+        this.regions = new MappedByteBuffer[(int) ((diskCapacity + REGION_SIZE - 1) / REGION_SIZE)];
+        this.sink = new Sink();
+        this.source = new Source();
+    }
+
+    /**
+     * @return The producer side of this pipe, should only be used by one thread at a time.
+     */
+    @Nonnull
+    @Override
+    public Sink sink() {
+        return sink;
+    }
+
+    /**
+     * @return The consumer side of this pipe, should only be used by one thread at a time.
+     */
+    @Nonnull
+    @Override
+    public Source source() {
+        return source;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getMemoryCapacity() {
+        return chunkSize * maxChunks;
+    }
+
+    public long getDiskCapacity() {
+        return diskCapacity;
+    }
+
+    /**
+     * @return Total bytes which went through the disk tier so far.
+     */
+    public long getSpilledBytes() {
+        lock.lock();
+        try {
+            return spilledBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getProducerBlockedNanos() {
+        lock.lock();
+        try {
+            return producerBlockedNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void await(final Condition condition) throws InterruptedIOException {
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on pipe!");
+        }
+    }
+
+    private void ensureFile() throws IOException {
+        if (nonNull(file)) {
+            return;
+        }
+        final Path path = isNull(directory)
+                ? Files.createTempFile("streamify-spill-", ".tmp")
+                : Files.createTempFile(directory, "streamify-spill-", ".tmp");
+        try {
+            file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    private ByteBuffer region(final long position) {
+        return regions[(int) (position / REGION_SIZE)].duplicate();
+    }
+
+    private void mapRegions(final long position, final int length) throws IOException {
+        for (long index = position / REGION_SIZE; index <= (position + length - 1) / REGION_SIZE; index++) {
+            final int i = (int) index;
+            if (isNull(regions[i])) {
+                final long start = index * REGION_SIZE;
+                regions[i] = file.map(FileChannel.MapMode.READ_WRITE, start, Math.min(REGION_SIZE, diskCapacity - start));
+            }
+        }
+    }
+
+    private void copyToDisk(final long position, @Nonnull final byte[] src, final int offset, final int length) {
+        long pos = position;
+        int off = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            final ByteBuffer buffer = region(pos);
+            final int count = Math.min(remaining, REGION_SIZE - (int) (pos % REGION_SIZE));
+            // Called on Buffer, ByteBuffer.position(int) doesn't exist on Java 8 when built with a newer JDK.
+            ((Buffer) buffer).position((int) (pos % REGION_SIZE));
+            buffer.put(src, off, count);
+            pos += count;
+            off += count;
+            remaining -= count;
+        }
+    }
+
+    private byte readFromDisk(final long position) throws IOException {
+        enterDisk();
+        try {
+            return region(position).get((int) (position % REGION_SIZE));
+        } finally {
+            exitDisk();
+        }
+    }
+
+    private void copyFromDisk(final long position, @Nonnull final byte[] dst, final int offset, final int length) throws IOException {
+        enterDisk();
+        try {
+            copyFromRegions(position, dst, offset, length);
+        } finally {
+            exitDisk();
+        }
+    }
+
+    private void copyFromRegions(final long position, @Nonnull final byte[] dst, final int offset, final int length) {
+        long pos = position;
+        int off = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            final ByteBuffer buffer = region(pos);
+            final int count = Math.min(remaining, REGION_SIZE - (int) (pos % REGION_SIZE));
+            ((Buffer) buffer).position((int) (pos % REGION_SIZE));
+            buffer.get(dst, off, count);
+            pos += count;
+            off += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Marks the regions as in use by the calling thread, for them not to be unmapped underneath it.
+     */
+    private void enterDisk() throws IOException {
+        lock.lock();
+        try {
+            if (sourceClosed) {
+                throw new IOException("Pipe closed!");
+            }
+            diskUsers++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void exitDisk() {
+        lock.lock();
+        try {
+            diskUsers--;
+            unmapIfUnused();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unmaps the regions once the source is closed and nobody copies from or into them anymore, for the disk space of
+     * the deleted spill file to be released right away. Must be called while holding the lock.
+     */
+    private void unmapIfUnused() {
+        if (!sourceClosed || diskUsers > 0) {
+            return;
+        }
+        for (int i = 0; i < regions.length; i++) {
+            if (nonNull(regions[i])) {
+                MappedBuffers.unmap(regions[i]);
+                regions[i] = null;
+            }
+        }
+    }
+
+    private static final class Segment {
+
+        private final byte[] chunk;
+        private final long diskOffset;
+        private final int length;
+
+        private Segment(final byte[] chunk, final long diskOffset, final int length) {
+            this.chunk = chunk;
+            this.diskOffset = diskOffset;
+            this.length = length;
+        }
+
+    }
+
+    public final class Sink extends OutputStream {
+
+        private byte[] current;
+        private int position;
+
+        private Sink() {
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            ensureCurrent();
+            current[position++] = (byte) b;
+            if (position == current.length) {
+                publish();
+            }
+        }
+
+        @Override
+        public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+            checkPositionIndexes(off, off + len, b.length);
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                ensureCurrent();
+                final int count = Math.min(remaining, current.length - position);
+                System.arraycopy(b, offset, current, position, count);
+                position += count;
+                offset += count;
+                remaining -= count;
+                if (position == current.length) {
+                    publish();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            lock.lock();
+            try {
+                ensureOpen();
+            } finally {
+                lock.unlock();
+            }
+            if (position > 0) {
+                publish();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            final boolean skip;
+            lock.lock();
+            try {
+                if (sinkClosed) {
+                    return;
+                }
+                skip = sourceClosed;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                if (position > 0 && !skip) {
+                    publish();
+                }
+            } finally {
+                lock.lock();
+                try {
+                    current = null;
+                    sinkClosed = true;
+                    notEmpty.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (sinkClosed) {
+                throw new IOException("Pipe closed!");
+            }
+            if (sourceClosed) {
+                throw new IOException("Read end of the pipe has been closed!");
+            }
+        }
+
+        private void ensureCurrent() throws IOException {
+            if (nonNull(current)) {
+                return;
+            }
+            lock.lock();
+            try {
+                ensureOpen();
+                allocatedChunks++;
+                current = new byte[chunkSize];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void publish() throws IOException {
+            final int length = position;
+            final long diskOffset;
+            lock.lock();
+            try {
+                while (true) {
+                    ensureOpen();
+                    byte[] next = freeChunks.pollFirst();
+                    if (isNull(next) && allocatedChunks < maxChunks) {
+                        allocatedChunks++;
+                        next = new byte[chunkSize];
+                    }
+                    if (nonNull(next)) {
+                        segments.addLast(new Segment(current, -1, length));
+                        current = next;
+                        position = 0;
+                        notEmpty.signal();
+                        return;
+                    }
+                    if (diskCapacity - diskUsed >= length) {
+                        break;
+                    }
+                    final long start = System.nanoTime();
+                    await(notFull);
+                    producerBlockedNanos += System.nanoTime() - start;
+                }
+                // Reserve the space now, copy without holding the lock, then hand it over.
+                ensureFile();
+                diskOffset = diskTail;
+                final int head = (int) Math.min(length, diskCapacity - diskOffset);
+                mapRegions(diskOffset, head);
+                if (head < length) {
+                    mapRegions(0, length - head);
+                }
+                diskTail = (diskOffset + length) % diskCapacity;
+                diskUsed += length;
+                spilledBytes += length;
+                diskUsers++;
+            } finally {
+                lock.unlock();
+            }
+            final int head = (int) Math.min(length, diskCapacity - diskOffset);
+            try {
+                copyToDisk(diskOffset, current, 0, head);
+                if (head < length) {
+                    copyToDisk(0, current, head, length - head);
+                }
+            } finally {
+                exitDisk();
+            }
+            lock.lock();
+            try {
+                segments.addLast(new Segment(null, diskOffset, head));
+                if (head < length) {
+                    segments.addLast(new Segment(null, 0, length - head));
+                }
+                position = 0;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+    public final class Source extends InputStream implements ChunkSource {
+
+        private Segment current;
+        private int position;
+        private byte[] scratch;
+
+        private Source() {
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!acquire()) {
+                return -1;
+            }
+            final int b = nonNull(current.chunk) ? current.chunk[position] : readFromDisk(current.diskOffset + position);
+            position++;
+            if (position == current.length) {
+                release();
+            }
+            return b & 0xFF;
+        }
+
+        @Override
+        public int read(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+            checkPositionIndexes(off, off + len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!acquire()) {
+                return -1;
+            }
+            final int count = Math.min(len, current.length - position);
+            if (nonNull(current.chunk)) {
+                System.arraycopy(current.chunk, position, b, off, count);
+            } else {
+                copyFromDisk(current.diskOffset + position, b, off, count);
+            }
+            position += count;
+            if (position == current.length) {
+                release();
+            }
+            return count;
+        }
+
+        @Override
+        public boolean readChunk(@Nonnull final ChunkConsumer consumer) throws IOException {
+            if (!acquire()) {
+                return false;
+            }
+            final int count = current.length - position;
+            if (nonNull(current.chunk)) {
+                consumer.accept(current.chunk, position, count);
+            } else {
+                if (isNull(scratch)) {
+                    scratch = new byte[chunkSize];
+                }
+                copyFromDisk(current.diskOffset + position, scratch, 0, count);
+                consumer.accept(scratch, 0, count);
+            }
+            release();
+            return true;
+        }
+
+        @Override
+        public int available() {
+            return nonNull(current) ? current.length - position : 0;
+        }
+
+        /**
+         * Closes the consumer side and deletes the spill file, any producer blocked on or later writing to the pipe will
+         * get an {@link IOException}. Unlike other methods of this class, this one is safe to call from any thread.
+         *
+         * @throws IOException
+         *         If failed to delete the spill file.
+         */
+        @Override
+        public void close() throws IOException {
+            lock.lock();
+            try {
+                if (sourceClosed) {
+                    return;
+                }
+                sourceClosed = true;
+                segments.clear();
+                freeChunks.clear();
+                notFull.signalAll();
+                notEmpty.signalAll();
+                if (nonNull(file)) {
+                    file.close();
+                }
+                unmapIfUnused();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean acquire() throws IOException {
+            if (nonNull(current)) {
+                return true;
+            }
+            lock.lock();
+            try {
+                while (segments.isEmpty()) {
+                    if (sourceClosed) {
+                        throw new IOException("Pipe closed!");
+                    }
+                    if (sinkClosed) {
+                        return false;
+                    }
+                    await(notEmpty);
+                }
+                if (sourceClosed) {
+                    throw new IOException("Pipe closed!");
+                }
+                current = segments.pollFirst();
+                position = 0;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release() {
+            lock.lock();
+            try {
+                if (nonNull(current.chunk)) {
+                    freeChunks.addLast(current.chunk);
+                } else {
+                    diskUsed -= current.length;
+                }
+                current = null;
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import io.sgr.streamify.Abortable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A stream admitted by {@link SchedulingStreamingChannel}, which gives its share of the budget back once closed, whether
+ * closing the underlying stream succeeded or not.
+ */
+class AdmittedOutputStream extends OutputStream implements Abortable {
+
+    private final OutputStream out;
+    private final Runnable onClose;
+
+    private boolean closed;
+
+    AdmittedOutputStream(@Nonnull final OutputStream out, @Nonnull final Runnable onClose) {
+        this.out = out;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        out.write(b);
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+        } finally {
+            onClose.run();
+        }
+    }
+
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (out instanceof Abortable) {
+                ((Abortable) out).abort();
+            }
+        } finally {
+            onClose.run();
+        }
+    }
+
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.sgr.streamify.Abortable;
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The stream of a {@link FanOutStreamingChannel}, which should only be written by one thread at a time.
+ * <p>
+ * Chunks are reference counted, one reference per destination it has been handed to, and go back to the pool once the
+ * last destination is done with them. The writer only allocates a new chunk while the pool is below capacity, and
+ * otherwise waits for the slowest destination.
+ * <p>
+ * Destinations which failed, have been dropped, or are told to give up because the whole stream failed or has been
+ * {@link #abort() aborted}, abort their streams if those are {@link Abortable}, so they don't publish partial content as
+ * if it was complete. Streams which aren't are closed.
+ */
+public final class FanOutOutputStream extends OutputStream implements Abortable {
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("streamify-fanout-%d").build();
+    private static final Object FLUSH = new Object();
+    private static final Object END = new Object();
+    private static final Object ABORT = new Object();
+    private static final long POLL_MILLIS = 100;
+
+    private final List<Replica> replicas;
+    private final Map<Integer, Throwable> dropReasons;
+    private final ReplicaPolicy policy;
+    private final long stallTimeoutNanos;
+    private final int chunkSize;
+    private final BlockingQueue<Chunk> free = new LinkedBlockingQueue<>();
+
+    private int maxChunks;
+    private int allocated;
+    private long published;
+    private Chunk current;
+    private int position;
+    private IOException failure;
+    private boolean closed;
+
+    private FanOutOutputStream(
+            @Nonnull final List<OutputStream> streams, @Nonnull final Map<Integer, Throwable> dropReasons,
+            @Nonnull final FanOutStreamingChannel settings) {
+        this.dropReasons = dropReasons;
+        this.policy = settings.getPolicy();
+        this.stallTimeoutNanos = MILLISECONDS.toNanos(settings.getStallTimeoutMillis());
+        this.chunkSize = Math.min(settings.getChunkSize(), settings.getCapacity());
+        this.maxChunks = Math.max(2, settings.getCapacity() / chunkSize);
+        final List<Replica> replicas = new ArrayList<>(streams.size());
+        for (int i = 0; i < streams.size(); i++) {
+            if (nonNull(streams.get(i))) {
+                replicas.add(new Replica(i, streams.get(i)));
+            }
+        }
+        this.replicas = Collections.unmodifiableList(replicas);
+        final Executor executor = settings.getExecutor().orElse(null);
+        for (Replica replica : replicas) {
+            if (isNull(executor)) {
+                THREAD_FACTORY.newThread(replica).start();
+            } else {
+                executor.execute(replica);
+            }
+        }
+    }
+
+    static FanOutOutputStream open(
+            @Nonnull final List<StreamingChannel> destinations, @Nonnull final StreamingRequest request, @Nonnull final String identifier,
+            @Nonnull final FanOutStreamingChannel settings) throws IOException {
+        final List<OutputStream> streams = new ArrayList<>(destinations.size());
+        final Map<Integer, Throwable> dropped = new TreeMap<>();
+        for (int i = 0; i < destinations.size(); i++) {
+            try {
+                streams.add(destinations.get(i).open(request, identifier));
+            } catch (IOException | RuntimeException e) {
+                if (settings.getPolicy() != ReplicaPolicy.DROP) {
+                    streams.forEach(FanOutOutputStream::abortQuietly);
+                    throw e;
+                }
+                streams.add(null);
+                dropped.put(i, e);
+            }
+        }
+        if (dropped.size() == destinations.size()) {
+            throw allDropped(dropped);
+        }
+        return new FanOutOutputStream(streams, dropped, settings);
+    }
+
+    /**
+     * @return Destinations which have been dropped by {@link ReplicaPolicy#DROP}, by their index in
+     *         {@link FanOutStreamingChannel#getDestinations()}, along with why. Only complete once the stream is closed.
+     */
+    @Nonnull
+    public Map<Integer, Throwable> getDropped() {
+        return Collections.unmodifiableMap(new TreeMap<>(dropReasons));
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        final Chunk chunk = acquire();
+        chunk.data[position++] = (byte) b;
+        if (position == chunk.data.length) {
+            publish();
+        }
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        checkPositionIndexes(off, off + len, b.length);
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            final Chunk chunk = acquire();
+            final int count = Math.min(remaining, chunk.data.length - position);
+            System.arraycopy(b, offset, chunk.data, position, count);
+            position += count;
+            offset += count;
+            remaining -= count;
+            if (position == chunk.data.length) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Hands whatever has been written so far over to the destinations, which flush their own streams once they get to
+     * it, without waiting for them.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        checkReplicas();
+        if (position > 0) {
+            publish();
+        }
+        liveReplicas().forEach(replica -> replica.queue.add(FLUSH));
+    }
+
+    /**
+     * Waits for every destination to write and close its own stream. If the stream has failed, destinations are told to
+     * close their streams as they are and not waited for.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (isNull(failure)) {
+                if (position > 0) {
+                    publish();
+                }
+                finish();
+                return;
+            }
+        } catch (IOException e) {
+            abortAll();
+            throw e;
+        }
+        abortAll();
+        throw new IOException("Fan-out stream failed!", failure);
+    }
+
+    /**
+     * Tells every destination to abort its stream, without waiting for them.
+     */
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        abortAll();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+        if (nonNull(failure)) {
+            throw new IOException("Fan-out stream failed!", failure);
+        }
+    }
+
+    private Chunk acquire() throws IOException {
+        ensureOpen();
+        if (nonNull(current)) {
+            return current;
+        }
+        checkReplicas();
+        Chunk chunk = free.poll();
+        if (isNull(chunk) && allocated < maxChunks) {
+            allocated++;
+            chunk = new Chunk(new byte[chunkSize]);
+        }
+        current = isNull(chunk) ? awaitFreeChunk() : chunk;
+        position = 0;
+        return current;
+    }
+
+    private Chunk awaitFreeChunk() throws IOException {
+        long waitingSince = System.nanoTime();
+        while (true) {
+            final Chunk chunk;
+            try {
+                chunk = free.poll(POLL_MILLIS, MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for destinations!");
+            }
+            if (nonNull(chunk)) {
+                return chunk;
+            }
+            checkReplicas();
+            if (policy != ReplicaPolicy.BLOCK && System.nanoTime() - waitingSince >= stallTimeoutNanos) {
+                handleStall();
+                waitingSince = System.nanoTime();
+            }
+        }
+    }
+
+    private void publish() {
+        final Chunk chunk = current;
+        chunk.length = position;
+        current = null;
+        position = 0;
+        final List<Replica> live = liveReplicas();
+        // All references have to be in place before any destination gets the chunk.
+        chunk.references.set(live.size());
+        live.forEach(replica -> replica.queue.add(chunk));
+        published++;
+    }
+
+    private void finish() throws IOException {
+        final List<Replica> live = liveReplicas();
+        live.forEach(replica -> replica.queue.add(END));
+        for (Replica replica : live) {
+            awaitReplica(replica);
+        }
+        checkReplicas();
+    }
+
+    private void awaitReplica(final Replica replica) throws IOException {
+        final long waitingSince = System.nanoTime();
+        try {
+            while (!replica.done.await(POLL_MILLIS, MILLISECONDS)) {
+                if (policy != ReplicaPolicy.BLOCK && System.nanoTime() - waitingSince >= stallTimeoutNanos) {
+                    final IOException stalled = stalled(replica);
+                    if (policy == ReplicaPolicy.FAIL) {
+                        throw fail(stalled);
+                    }
+                    drop(replica, stalled);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw fail(new InterruptedIOException("Interrupted while waiting for destinations!"));
+        }
+    }
+
+    /**
+     * Drops or fails on destinations which have failed so far, depending on the policy.
+     */
+    private void checkReplicas() throws IOException {
+        for (Replica replica : liveReplicas()) {
+            final Throwable cause = replica.error;
+            if (isNull(cause)) {
+                continue;
+            }
+            if (policy != ReplicaPolicy.DROP) {
+                throw fail(new IOException(String.format("Failed to write to destination #%d!", replica.index), cause));
+            }
+            drop(replica, cause);
+        }
+    }
+
+    /**
+     * Nothing has been freed for the whole stall timeout, so whoever still holds the oldest chunk is the one to blame.
+     */
+    private void handleStall() throws IOException {
+        final List<Replica> live = liveReplicas();
+        final long oldest = live.stream().mapToLong(replica -> replica.released).min().orElse(published);
+        for (Replica replica : live) {
+            if (replica.released == oldest && oldest < published) {
+                if (policy == ReplicaPolicy.FAIL) {
+                    throw fail(stalled(replica));
+                }
+                drop(replica, stalled(replica));
+            }
+        }
+    }
+
+    private IOException stalled(final Replica replica) {
+        return new IOException(String.format("Destination #%d has not made progress for %d ms!", replica.index, TimeUnit.NANOSECONDS.toMillis(stallTimeoutNanos)));
+    }
+
+    private void drop(final Replica replica, final Throwable cause) throws IOException {
+        replica.dropped = true;
+        dropReasons.put(replica.index, cause);
+        final List<Object> pending = new ArrayList<>();
+        replica.queue.drainTo(pending);
+        pending.stream().filter(Chunk.class::isInstance).map(Chunk.class::cast).forEach(this::release);
+        replica.queue.add(ABORT);
+        if (replica.busy) {
+            // The chunk being written is only given back if the write ever returns, make up for it in the meantime.
+            maxChunks++;
+        }
+        if (liveReplicas().isEmpty()) {
+            throw fail(allDropped(dropReasons));
+        }
+    }
+
+    private void abortAll() {
+        for (Replica replica : liveReplicas()) {
+            replica.dropped = true;
+            final List<Object> pending = new ArrayList<>();
+            replica.queue.drainTo(pending);
+            pending.stream().filter(Chunk.class::isInstance).map(Chunk.class::cast).forEach(this::release);
+            replica.queue.add(ABORT);
+        }
+    }
+
+    private IOException fail(final IOException cause) {
+        if (isNull(failure)) {
+            failure = cause;
+        }
+        return cause;
+    }
+
+    private List<Replica> liveReplicas() {
+        return replicas.stream().filter(replica -> !replica.dropped).collect(Collectors.toList());
+    }
+
+    private void release(final Chunk chunk) {
+        if (chunk.references.decrementAndGet() == 0) {
+            free.add(chunk);
+        }
+    }
+
+    private static IOException allDropped(final Map<Integer, Throwable> dropped) {
+        final IOException e = new IOException("All destinations have been dropped!");
+        dropped.values().forEach(e::addSuppressed);
+        return e;
+    }
+
+    private static void abortQuietly(final OutputStream out) {
+        if (isNull(out)) {
+            return;
+        }
+        try {
+            if (out instanceof Abortable) {
+                ((Abortable) out).abort();
+            } else {
+                out.close();
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // Already failing
+        }
+    }
+
+    private static final class Chunk {
+
+        private final byte[] data;
+        private final AtomicInteger references = new AtomicInteger();
+        private int length;
+
+        private Chunk(final byte[] data) {
+            this.data = data;
+        }
+
+    }
+
+    private final class Replica implements Runnable {
+
+        private final int index;
+        private final OutputStream out;
+        private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile long released;
+        private volatile boolean busy;
+        private volatile Throwable error;
+        private volatile boolean dropped;
+
+        private Replica(final int index, final OutputStream out) {
+            this.index = index;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Object next = queue.take();
+                    if (next == END || next == ABORT) {
+                        close(next == END);
+                        return;
+                    }
+                    if (next == FLUSH) {
+                        write(null);
+                    } else {
+                        write((Chunk) next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = e;
+                abortQuietly(out);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        @SuppressFBWarnings(value = "VO_VOLATILE_INCREMENT", justification = "Only the destination's own thread writes this counter.")
+        private void write(final Chunk chunk) {
+            // A failed destination keeps giving chunks back until it has been dropped, or the whole stream has failed.
+            try {
+                if (isNull(error) && !dropped) {
+                    busy = true;
+                    if (isNull(chunk)) {
+                        out.flush();
+                    } else {
+                        out.write(chunk.data, 0, chunk.length);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            } finally {
+                busy = false;
+                if (nonNull(chunk)) {
+                    release(chunk);
+                    released = released + 1;
+                }
+            }
+        }
+
+        private void close(final boolean complete) {
+            if (!complete || nonNull(error)) {
+                abortQuietly(out);
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+        }
+
+    }
+
+}
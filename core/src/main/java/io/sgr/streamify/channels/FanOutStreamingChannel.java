@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.buffers.ChunkedPipe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Tees one stream into several destination channels, e.g. to replicate an export to more than one server without
+ * running the query twice.
+ * <p>
+ * Every chunk is written once into a bounded pool of shared buffers, and each destination drains it on a thread of its
+ * own, so destinations are written in parallel and the memory used stays within {@link #setCapacity(int)} however far
+ * apart they are. What happens when a destination falls behind or fails is up to the {@link ReplicaPolicy}.
+ */
+public class FanOutStreamingChannel implements StreamingChannel {
+
+    public static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+    public static final int DEFAULT_CHUNK_SIZE = ChunkedPipe.DEFAULT_CHUNK_SIZE;
+    public static final long DEFAULT_STALL_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final List<StreamingChannel> destinations;
+
+    private ReplicaPolicy policy = ReplicaPolicy.BLOCK;
+    private int capacity = DEFAULT_CAPACITY;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private long stallTimeoutMillis = DEFAULT_STALL_TIMEOUT_MILLIS;
+    private Executor executor;
+
+    public FanOutStreamingChannel(@Nonnull final List<? extends StreamingChannel> destinations) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(destinations) && !destinations.isEmpty(), "Missing destination channels!");
+        checkArgument(destinations.stream().allMatch(Objects::nonNull), "Destination channels should not be null!");
+        this.destinations = Collections.unmodifiableList(new ArrayList<>(destinations));
+    }
+
+    /**
+     * @return The stream, which can tell which destinations have been dropped once closed.
+     */
+    @Nonnull
+    @Override
+    public FanOutOutputStream open(@Nonnull final StreamingRequest request, @Nonnull final String identifier) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(request), "Missing streaming request!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(identifier), "Missing identifier!");
+        return FanOutOutputStream.open(destinations, request, identifier, this);
+    }
+
+    public List<StreamingChannel> getDestinations() {
+        return destinations;
+    }
+
+    public ReplicaPolicy getPolicy() {
+        return policy;
+    }
+
+    public FanOutStreamingChannel setPolicy(@Nonnull final ReplicaPolicy policy) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(policy), "Missing replica policy!");
+        this.policy = policy;
+        return this;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param capacity
+     *         Most bytes held in shared buffers at once, i.e. how far the fastest destination can get ahead of the
+     *         slowest one.
+     * @return This channel.
+     */
+    public FanOutStreamingChannel setCapacity(final int capacity) {
+        checkArgument(capacity > 0, "Capacity should be greater than 0!");
+        this.capacity = capacity;
+        return this;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public FanOutStreamingChannel setChunkSize(final int chunkSize) {
+        checkArgument(chunkSize > 0, "Chunk size should be greater than 0!");
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public long getStallTimeoutMillis() {
+        return stallTimeoutMillis;
+    }
+
+    /**
+     * @param timeout
+     *         How long the writer waits for the slowest destination to free a buffer, or to finish once the stream is
+     *         closed, before the policy is applied. Ignored by {@link ReplicaPolicy#BLOCK}.
+     * @param unit
+     *         Unit of the timeout.
+     * @return This channel.
+     */
+    public FanOutStreamingChannel setStallTimeout(final long timeout, @Nonnull final TimeUnit unit) {
+        checkArgument(timeout > 0, "Stall timeout should be greater than 0!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(unit), "Missing time unit!");
+        this.stallTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * @return Executor to drain each destination on, a dedicated daemon thread per destination if not set.
+     */
+    public Optional<Executor> getExecutor() {
+        return Optional.ofNullable(executor);
+    }
+
+    /**
+     * @param executor
+     *         Executor to drain destinations on. A task occupies its thread until the stream is closed.
+     * @return This channel.
+     */
+    public FanOutStreamingChannel setExecutor(@Nullable final Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Batches writes in a direct buffer, so the file system sees few large writes and no copy is made on the way to it.
+ */
+class FileChannelOutputStream extends StagedFileOutputStream {
+
+    private final ByteBuffer buffer;
+    private final long preallocated;
+
+    private long position;
+
+    FileChannelOutputStream(
+            @Nonnull final Path target, @Nonnull final Path staging, final boolean sync, final int bufferSize,
+            final long preallocateBytes) throws IOException {
+        super(target, staging, sync);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.preallocated = preallocateBytes;
+        if (preallocateBytes > 0) {
+            preallocate(preallocateBytes);
+        }
+    }
+
+    @Override
+    void writeByte(final int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    void writeBytes(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        checkPositionIndexes(off, off + len, b.length);
+        if (len >= buffer.capacity()) {
+            // Not worth copying into the buffer first.
+            flushBuffer();
+            writeFully(ByteBuffer.wrap(b, off, len));
+            return;
+        }
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            final int count = Math.min(remaining, buffer.remaining());
+            buffer.put(b, offset, count);
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    @Override
+    void flushBuffer() throws IOException {
+        // Through Buffer, so it links against Java 8 where ByteBuffer doesn't override these.
+        ((Buffer) buffer).flip();
+        try {
+            writeFully(buffer);
+        } finally {
+            ((Buffer) buffer).clear();
+        }
+    }
+
+    @Override
+    void finish() throws IOException {
+        flushBuffer();
+        if (preallocated > position) {
+            channel.truncate(position);
+        }
+    }
+
+    /**
+     * Fills the file with zeros up to its expected size, from the still empty buffer, it's cut back to what has been
+     * written once closed. Writing just the last byte would only make a sparse file on most file systems, leaving the
+     * blocks to be allocated as the content is written anyway.
+     */
+    private void preallocate(final long size) throws IOException {
+        long offset = 0;
+        while (offset < size) {
+            final ByteBuffer zeros = buffer.duplicate();
+            ((Buffer) zeros).limit((int) Math.min(zeros.capacity(), size - offset));
+            while (zeros.hasRemaining()) {
+                offset += channel.write(zeros, offset);
+            }
+        }
+    }
+
+    private void writeFully(final ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source);
+        }
+    }
+
+}
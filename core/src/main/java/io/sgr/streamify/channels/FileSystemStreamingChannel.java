@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.metrics.StreamingMetrics;
+import io.sgr.streamify.wrappers.OutputStreamWrappers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Writes content into files under a base directory, e.g. to stage exports on a local or network disk, or as a fast
+ * stand-in for a remote channel in tests and benchmarks.
+ * <p>
+ * Writes are batched in a large direct buffer and handed to a {@link java.nio.channels.FileChannel}, or copied into
+ * memory mapped regions of the file with {@link #setMemoryMapped(boolean)}. Content is written to a hidden temporary
+ * file next to the target, which is atomically renamed to the target once the stream is closed, so readers never see a
+ * partial file. A file any write failed on is deleted instead.
+ */
+public class FileSystemStreamingChannel implements StreamingChannel {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+    private final Path baseDirectory;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private Long preallocateBytes;
+    private boolean memoryMapped;
+    private int mappedRegionSize = DEFAULT_MAPPED_REGION_SIZE;
+    private boolean atomicRename = true;
+    private boolean sync;
+
+    public FileSystemStreamingChannel(@Nonnull final Path baseDirectory) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(baseDirectory), "Missing base directory!");
+        this.baseDirectory = baseDirectory.toAbsolutePath().normalize();
+    }
+
+    @SuppressFBWarnings("OS_OPEN_STREAM")   // The returned stream will be closed somewhere else.
+    @Nonnull
+    @Override
+    public OutputStream open(@Nonnull final StreamingRequest request, @Nonnull final String identifier) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(request), "Missing streaming request!");
+        checkArgument(!isNullOrEmpty(identifier), "Identifier shouldn't be blank string!");
+        final Path target = resolve(identifier);
+        final Path directory = target.getParent();
+        Files.createDirectories(directory);
+        final Path staging = atomicRename ? Files.createTempFile(directory, "." + target.getFileName(), ".tmp") : target;
+        StagedFileOutputStream out = null;
+        try {
+            out = memoryMapped
+                    ? new MappedFileOutputStream(target, staging, sync, mappedRegionSize)
+                    : new FileChannelOutputStream(target, staging, sync, bufferSize, isNull(preallocateBytes) ? 0 : preallocateBytes);
+            return OutputStreamWrappers.apply(out, request.getWrappers(), request.getBufferSize().orElse(bufferSize), StreamingMetrics.NOOP);
+        } catch (IOException | RuntimeException e) {
+            // Closing would move the staging file into place, abort instead.
+            if (nonNull(out)) {
+                out.abort();
+            }
+            Files.deleteIfExists(staging);
+            throw e;
+        }
+    }
+
+    /**
+     * @param identifier
+     *         Identifier of the content, a path relative to the base directory.
+     * @return Where the content of the identifier goes.
+     */
+    @Nonnull
+    public Path resolve(@Nonnull final String identifier) {
+        final String relative = identifier.startsWith("/") ? identifier.substring(1) : identifier;
+        final Path target = baseDirectory.resolve(relative).normalize();
+        checkArgument(target.startsWith(baseDirectory) && !target.equals(baseDirectory), "Identifier '%s' points outside of the base directory!", identifier);
+        return target;
+    }
+
+    public Path getBaseDirectory() {
+        return baseDirectory;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @param bufferSize
+     *         Size of the direct buffer writes are batched in before going to the file.
+     * @return This channel.
+     */
+    public FileSystemStreamingChannel setBufferSize(final int bufferSize) {
+        checkArgument(bufferSize > 0, "Buffer size should be greater than 0!");
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public Optional<Long> getPreallocateBytes() {
+        return Optional.ofNullable(preallocateBytes);
+    }
+
+    /**
+     * @param preallocateBytes
+     *         Expected size of the content, the file is filled with zeros up to it when opened so the file system
+     *         allocates its blocks in one go rather than on every write, and cut back to the actual size once closed.
+     *         That's writing the expected size twice, so it only pays off where allocating is expensive, e.g. to avoid
+     *         fragmentation. Doesn't apply to memory mapped files, which grow by whole regions anyway.
+     * @return This channel.
+     */
+    public FileSystemStreamingChannel setPreallocateBytes(@Nullable final Long preallocateBytes) {
+        checkArgument(isNull(preallocateBytes) || preallocateBytes > 0, "Preallocated bytes should be greater than 0!");
+        this.preallocateBytes = preallocateBytes;
+        return this;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * @param memoryMapped
+     *         Whether to copy content into memory mapped regions of the file instead of writing it. Mapped regions are
+     *         only released once garbage collected, which on some platforms keeps the file from being renamed or
+     *         deleted until then.
+     * @return This channel.
+     */
+    public FileSystemStreamingChannel setMemoryMapped(final boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        return this;
+    }
+
+    public int getMappedRegionSize() {
+        return mappedRegionSize;
+    }
+
+    public FileSystemStreamingChannel setMappedRegionSize(final int mappedRegionSize) {
+        checkArgument(mappedRegionSize > 0, "Mapped region size should be greater than 0!");
+        this.mappedRegionSize = mappedRegionSize;
+        return this;
+    }
+
+    public boolean isAtomicRename() {
+        return atomicRename;
+    }
+
+    /**
+     * @param atomicRename
+     *         Whether to write into a temporary file and rename it to the target once closed, which needs the file
+     *         system to support atomic moves, or to write the target directly.
+     * @return This channel.
+     */
+    public FileSystemStreamingChannel setAtomicRename(final boolean atomicRename) {
+        this.atomicRename = atomicRename;
+        return this;
+    }
+
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * @param sync
+     *         Whether to force content and metadata to the storage device before the stream is closed.
+     * @return This channel.
+     */
+    public FileSystemStreamingChannel setSync(final boolean sync) {
+        this.sync = sync;
+        return this;
+    }
+
+}
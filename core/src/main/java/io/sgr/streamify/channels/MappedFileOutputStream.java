@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Copies writes straight into the page cache through memory mapped regions of the file, which are mapped one after
+ * another as the file grows, and leaves writing them back to the operating system.
+ */
+class MappedFileOutputStream extends StagedFileOutputStream {
+
+    private final boolean sync;
+    private final int regionSize;
+
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    MappedFileOutputStream(
+            @Nonnull final Path target, @Nonnull final Path staging, final boolean sync, final int regionSize) throws IOException {
+        super(target, staging, sync);
+        this.sync = sync;
+        this.regionSize = regionSize;
+    }
+
+    @Override
+    void writeByte(final int b) throws IOException {
+        region().put((byte) b);
+    }
+
+    @Override
+    void writeBytes(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        checkPositionIndexes(off, off + len, b.length);
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            final MappedByteBuffer current = region();
+            final int count = Math.min(remaining, current.remaining());
+            current.put(b, offset, count);
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    @Override
+    void flushBuffer() {
+        // Already in the page cache.
+    }
+
+    @Override
+    void finish() throws IOException {
+        if (isNull(region)) {
+            return;
+        }
+        if (sync) {
+            region.force();
+        }
+        channel.truncate(regionStart + region.position());
+    }
+
+    private MappedByteBuffer region() throws IOException {
+        if (nonNull(region) && region.hasRemaining()) {
+            return region;
+        }
+        if (nonNull(region)) {
+            if (sync) {
+                region.force();
+            }
+            regionStart += region.capacity();
+        }
+        // Mapping beyond the end grows the file, which is cut back to what has been written once closed.
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionSize);
+        return region;
+    }
+
+}
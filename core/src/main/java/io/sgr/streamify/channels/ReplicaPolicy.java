@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+/**
+ * What a {@link FanOutStreamingChannel} does about a destination which falls behind or fails.
+ */
+public enum ReplicaPolicy {
+
+    /**
+     * Writes wait for the slowest destination, and the whole stream fails as soon as any destination does.
+     */
+    BLOCK,
+    /**
+     * A destination which fails, or holds up the shared buffers for longer than the stall timeout, is dropped while the
+     * others carry on. The stream only fails once every destination has been dropped.
+     */
+    DROP,
+    /**
+     * Like {@link #BLOCK}, except that a destination holding up the shared buffers for longer than the stall timeout
+     * fails the whole stream instead of stalling it.
+     */
+    FAIL
+
+}
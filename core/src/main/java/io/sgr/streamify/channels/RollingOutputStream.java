@@ -0,0 +1,313 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.sgr.streamify.Abortable;
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The stream of a {@link RollingStreamingChannel}, which should only be written by one thread at a time.
+ * <p>
+ * Once a write has failed the stream is {@link #abort() aborted} when closed, so the part being written is not published
+ * as if it was complete.
+ */
+public final class RollingOutputStream extends OutputStream implements Abortable {
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("streamify-rolling-%d").build();
+    private static final Executor THREAD_PER_PART = task -> THREAD_FACTORY.newThread(task).start();
+
+    private final StreamingChannel delegate;
+    private final StreamingRequest request;
+    private final String identifier;
+    private final RollingStreamingChannel settings;
+    private final long maxPartBytes;
+    private final long maxPartRecords;
+    private final byte delimiter;
+    private final Executor executor;
+    private final List<String> parts = new ArrayList<>();
+    private final Deque<Closing> closing = new ArrayDeque<>();
+
+    private OutputStream current;
+    private long partBytes;
+    private long partRecords;
+    private IOException failure;
+    private boolean aborted;
+    private boolean closed;
+
+    RollingOutputStream(
+            @Nonnull final StreamingChannel delegate, @Nonnull final StreamingRequest request, @Nonnull final String identifier,
+            @Nonnull final RollingStreamingChannel settings) {
+        this.delegate = delegate;
+        this.request = request;
+        this.identifier = identifier;
+        this.settings = settings;
+        this.maxPartBytes = settings.getMaxPartBytes().orElse(Long.MAX_VALUE);
+        this.maxPartRecords = settings.getMaxPartRecords().orElse(Long.MAX_VALUE);
+        this.delimiter = settings.getRecordDelimiter();
+        this.executor = settings.getExecutor().orElse(THREAD_PER_PART);
+    }
+
+    /**
+     * @return Identifiers of the parts opened so far, in order.
+     */
+    @Nonnull
+    public List<String> getParts() {
+        return Collections.unmodifiableList(new ArrayList<>(parts));
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        try {
+            part().write(b);
+        } catch (IOException e) {
+            throw fail(e);
+        }
+        partBytes++;
+        if ((byte) b == delimiter) {
+            partRecords++;
+            rollIfFull();
+        }
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        checkPositionIndexes(off, off + len, b.length);
+        try {
+            writeRecords(b, off, len);
+        } catch (IOException e) {
+            throw fail(e);
+        }
+    }
+
+    private void writeRecords(final byte[] b, final int off, final int len) throws IOException {
+        final int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            if (b[i] != delimiter) {
+                continue;
+            }
+            partRecords++;
+            if (partRecords >= maxPartRecords || partBytes + i + 1 - start >= maxPartBytes) {
+                part().write(b, start, i + 1 - start);
+                partBytes += i + 1 - start;
+                start = i + 1;
+                roll();
+            }
+        }
+        if (start < end) {
+            part().write(b, start, end - start);
+            partBytes += end - start;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (nonNull(current)) {
+            try {
+                current.flush();
+            } catch (IOException e) {
+                throw fail(e);
+            }
+        }
+    }
+
+    /**
+     * Closes the last part and waits for every part to be closed, an empty part is written if nothing else has been.
+     * <p>
+     * If a write has failed, the stream is {@link #abort() aborted} instead and the failure is thrown again.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (nonNull(failure)) {
+            abort();
+            throw new IOException("Rolling stream failed!", failure);
+        }
+        closed = true;
+        IOException failure = null;
+        try {
+            if (parts.isEmpty()) {
+                part();
+            }
+            if (nonNull(current)) {
+                current.close();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            current = null;
+        }
+        while (!closing.isEmpty()) {
+            try {
+                awaitOldest();
+            } catch (IOException e) {
+                if (isNull(failure)) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (nonNull(failure)) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Aborts the part being written, and the parts still being closed if their streams are {@link Abortable}, without
+     * waiting for them. Parts which have already been closed are left alone, and no more parts are opened.
+     */
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        aborted = true;
+        final OutputStream part = current;
+        current = null;
+        try {
+            if (part instanceof Abortable) {
+                ((Abortable) part).abort();
+            } else if (nonNull(part)) {
+                part.close();
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // Already failing
+        }
+        for (Closing pending : closing) {
+            if (pending.part instanceof Abortable) {
+                try {
+                    ((Abortable) pending.part).abort();
+                } catch (RuntimeException ignored) {
+                    // Already failing
+                }
+            }
+        }
+        closing.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+        if (nonNull(failure)) {
+            throw new IOException("Rolling stream failed!", failure);
+        }
+    }
+
+    private IOException fail(final IOException cause) {
+        if (isNull(failure)) {
+            failure = cause;
+        }
+        return cause;
+    }
+
+    private OutputStream part() throws IOException {
+        if (nonNull(current)) {
+            return current;
+        }
+        if (aborted) {
+            throw new IOException("Stream aborted!");
+        }
+        // Surface failures of parts closed in the background as soon as possible, without waiting for the rest.
+        while (!closing.isEmpty() && closing.peekFirst().future.isDone()) {
+            awaitOldest();
+        }
+        while (closing.size() >= settings.getParallelism()) {
+            awaitOldest();
+        }
+        final String part = settings.getPartIdentifier(identifier, parts.size());
+        current = delegate.open(request, part);
+        parts.add(part);
+        return current;
+    }
+
+    private void rollIfFull() {
+        if (partRecords >= maxPartRecords || partBytes >= maxPartBytes) {
+            roll();
+        }
+    }
+
+    private void roll() {
+        if (aborted) {
+            return;
+        }
+        final OutputStream part = current;
+        current = null;
+        partBytes = 0;
+        partRecords = 0;
+        closing.addLast(new Closing(part, CompletableFuture.runAsync(() -> {
+            try {
+                part.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor)));
+    }
+
+    private void awaitOldest() throws IOException {
+        try {
+            closing.removeFirst().future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for parts to close!");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            throw new IOException("Failed to close part!", cause);
+        }
+    }
+
+    private static final class Closing {
+        private final OutputStream part;
+        private final CompletableFuture<Void> future;
+
+        private Closing(final OutputStream part, final CompletableFuture<Void> future) {
+            this.part = part;
+            this.future = future;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Cuts a stream into parts of bounded size or number of records, each written to a channel of its own, so a large
+ * export becomes several smaller objects which can be uploaded and processed in parallel.
+ * <p>
+ * Parts are only cut right after a record delimiter, once the part has reached {@link #setMaxPartBytes(Long)} or
+ * {@link #setMaxPartRecords(Long)}, so a record is never split across parts, and a single record larger than the limit
+ * makes a larger part. Parts are named after the identifier with a sequence number before the extension, e.g.
+ * {@code export.jsonl} becomes {@code export-00000.jsonl}, {@code export-00001.jsonl}, and so on.
+ * <p>
+ * Closing a part, which for most channels means waiting for its upload to complete, happens in the background while
+ * the next part is being written, with at most {@link #setParallelism(int)} parts closing at once.
+ */
+public class RollingStreamingChannel implements StreamingChannel {
+
+    public static final long DEFAULT_MAX_PART_BYTES = 128L * 1024 * 1024;
+    public static final byte DEFAULT_RECORD_DELIMITER = '\n';
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final String DEFAULT_SEQUENCE_FORMAT = "-%05d";
+
+    private final StreamingChannel delegate;
+
+    private Long maxPartBytes = DEFAULT_MAX_PART_BYTES;
+    private Long maxPartRecords;
+    private byte recordDelimiter = DEFAULT_RECORD_DELIMITER;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private String sequenceFormat = DEFAULT_SEQUENCE_FORMAT;
+    private Executor executor;
+
+    public RollingStreamingChannel(@Nonnull final StreamingChannel delegate) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(delegate), "Missing channel to write parts to!");
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return The stream, which can tell the identifiers of the parts written so far.
+     */
+    @Nonnull
+    @Override
+    public RollingOutputStream open(@Nonnull final StreamingRequest request, @Nonnull final String identifier) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(request), "Missing streaming request!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(identifier), "Missing identifier!");
+        return new RollingOutputStream(delegate, request, identifier, this);
+    }
+
+    /**
+     * @param identifier
+     *         Identifier of the whole stream.
+     * @param sequence
+     *         Sequence number of the part, starting from 0.
+     * @return Identifier of the part, the sequence is inserted before the extension if there is one.
+     */
+    @Nonnull
+    public String getPartIdentifier(@Nonnull final String identifier, final int sequence) {
+        final String suffix = String.format(sequenceFormat, sequence);
+        final int slash = identifier.lastIndexOf('/');
+        final int dot = identifier.lastIndexOf('.');
+        if (dot <= slash + 1) {
+            return identifier + suffix;
+        }
+        return identifier.substring(0, dot) + suffix + identifier.substring(dot);
+    }
+
+    public Optional<Long> getMaxPartBytes() {
+        return Optional.ofNullable(maxPartBytes);
+    }
+
+    /**
+     * @param maxPartBytes
+     *         Size after which a part is cut at the next record delimiter, or {@code null} to only cut by records.
+     * @return This channel.
+     */
+    public RollingStreamingChannel setMaxPartBytes(@Nullable final Long maxPartBytes) {
+        checkArgument(isNull(maxPartBytes) || maxPartBytes > 0, "Max part bytes should be greater than 0!");
+        checkArgument(nonNull(maxPartBytes) || nonNull(maxPartRecords), "Parts should be limited by either bytes or records!");
+        this.maxPartBytes = maxPartBytes;
+        return this;
+    }
+
+    public Optional<Long> getMaxPartRecords() {
+        return Optional.ofNullable(maxPartRecords);
+    }
+
+    /**
+     * @param maxPartRecords
+     *         Number of records after which a part is cut, or {@code null} to only cut by size.
+     * @return This channel.
+     */
+    public RollingStreamingChannel setMaxPartRecords(@Nullable final Long maxPartRecords) {
+        checkArgument(isNull(maxPartRecords) || maxPartRecords > 0, "Max part records should be greater than 0!");
+        checkArgument(nonNull(maxPartBytes) || nonNull(maxPartRecords), "Parts should be limited by either bytes or records!");
+        this.maxPartRecords = maxPartRecords;
+        return this;
+    }
+
+    public byte getRecordDelimiter() {
+        return recordDelimiter;
+    }
+
+    public RollingStreamingChannel setRecordDelimiter(final byte recordDelimiter) {
+        this.recordDelimiter = recordDelimiter;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism
+     *         Most completed parts closing at once besides the one being written, writing waits for one of them to
+     *         finish beyond that.
+     * @return This channel.
+     */
+    public RollingStreamingChannel setParallelism(final int parallelism) {
+        checkArgument(parallelism > 0, "Parallelism should be greater than 0!");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public String getSequenceFormat() {
+        return sequenceFormat;
+    }
+
+    /**
+     * @param sequenceFormat
+     *         Format of the sequence suffix, which gets the sequence number of the part as its only argument.
+     * @return This channel.
+     */
+    public RollingStreamingChannel setSequenceFormat(@Nonnull final String sequenceFormat) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(sequenceFormat) && !String.format(sequenceFormat, 0).isEmpty(), "Missing sequence format!");
+        this.sequenceFormat = sequenceFormat;
+        return this;
+    }
+
+    /**
+     * @return Executor to close completed parts on, a new daemon thread per part if not set.
+     */
+    public Optional<Executor> getExecutor() {
+        return Optional.ofNullable(executor);
+    }
+
+    public RollingStreamingChannel setExecutor(@Nullable final Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.metrics.StreamingMetrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Admits streams into another channel under a budget of concurrent streams and of memory, so many exports started at
+ * once don't all hit the destination at the same time, and small urgent ones don't queue behind bulk ones.
+ * <p>
+ * {@link #open(StreamingRequest, String)} blocks until the stream is admitted, and the stream gives its share of the
+ * budget back once closed. Waiting streams are admitted by {@link StreamingRequest#getPriority()}, highest first, then
+ * in the order they arrived. Only the head of the queue is ever admitted, so a large stream waiting for memory isn't
+ * overtaken forever by smaller ones of the same or lower priority. A stream needing more memory than the whole budget
+ * is admitted once nothing else is running.
+ */
+public class SchedulingStreamingChannel implements StreamingChannel {
+
+    public static final int DEFAULT_MAX_CONCURRENT_STREAMS = 16;
+    public static final long DEFAULT_STREAM_BYTES = 1024 * 1024;
+
+    private static final Comparator<Ticket> ORDER = Comparator.<Ticket>comparingInt(ticket -> ticket.priority).reversed()
+            .thenComparingLong(ticket -> ticket.sequence);
+
+    private final StreamingChannel delegate;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition admitted = lock.newCondition();
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(ORDER);
+
+    private int maxConcurrentStreams = DEFAULT_MAX_CONCURRENT_STREAMS;
+    private Long memoryBudget;
+    private long defaultStreamBytes = DEFAULT_STREAM_BYTES;
+    private Long maxWaitNanos;
+    private StreamingMetrics metrics = StreamingMetrics.NOOP;
+
+    private long sequence;
+    private int activeStreams;
+    private long reservedBytes;
+
+    public SchedulingStreamingChannel(@Nonnull final StreamingChannel delegate) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(delegate), "Missing channel to schedule streams of!");
+        this.delegate = delegate;
+    }
+
+    /**
+     * @throws InterruptedIOException
+     *         If interrupted or timed out while waiting to be admitted, see {@link #setMaxWait(Long, TimeUnit)}.
+     */
+    @Nonnull
+    @Override
+    public OutputStream open(@Nonnull final StreamingRequest request, @Nonnull final String identifier) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(request), "Missing streaming request!");
+        final long bytes = request.getBufferSize().filter(size -> size > 0).map(Integer::longValue).orElse(defaultStreamBytes);
+        final Ticket ticket = admit(request.getPriority().orElse(0), bytes);
+        try {
+            return new AdmittedOutputStream(delegate.open(request, identifier), () -> release(ticket));
+        } catch (IOException | RuntimeException e) {
+            release(ticket);
+            throw e;
+        }
+    }
+
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * @param maxConcurrentStreams
+     *         Most streams open in the underlying channel at once, {@value #DEFAULT_MAX_CONCURRENT_STREAMS} by default.
+     * @return This channel.
+     */
+    public SchedulingStreamingChannel setMaxConcurrentStreams(final int maxConcurrentStreams) {
+        checkArgument(maxConcurrentStreams > 0, "Max concurrent streams should be greater than 0!");
+        lock.lock();
+        try {
+            this.maxConcurrentStreams = maxConcurrentStreams;
+            admitWaiting();
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public Optional<Long> getMemoryBudget() {
+        return Optional.ofNullable(memoryBudget);
+    }
+
+    /**
+     * @param memoryBudget
+     *         Most bytes streams open in the underlying channel may buffer at once, each counting for the buffer size of
+     *         its request, or {@code null} to only limit the number of streams.
+     * @return This channel.
+     */
+    public SchedulingStreamingChannel setMemoryBudget(@Nullable final Long memoryBudget) {
+        checkArgument(isNull(memoryBudget) || memoryBudget > 0, "Memory budget should be greater than 0!");
+        lock.lock();
+        try {
+            this.memoryBudget = memoryBudget;
+            admitWaiting();
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    public long getDefaultStreamBytes() {
+        return defaultStreamBytes;
+    }
+
+    /**
+     * @param defaultStreamBytes
+     *         Bytes a stream counts for if its request doesn't tell its buffer size, {@value #DEFAULT_STREAM_BYTES} by
+     *         default.
+     * @return This channel.
+     */
+    public SchedulingStreamingChannel setDefaultStreamBytes(final long defaultStreamBytes) {
+        checkArgument(defaultStreamBytes > 0, "Default stream bytes should be greater than 0!");
+        this.defaultStreamBytes = defaultStreamBytes;
+        return this;
+    }
+
+    /**
+     * @param maxWait
+     *         How long a stream may wait to be admitted before opening it fails, or {@code null} to wait as long as it
+     *         takes.
+     * @param unit
+     *         Unit of the wait.
+     * @return This channel.
+     */
+    public SchedulingStreamingChannel setMaxWait(@Nullable final Long maxWait, @Nonnull final TimeUnit unit) {
+        checkArgument(isNull(maxWait) || maxWait >= 0, "Max wait should not be negative!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(unit), "Missing time unit!");
+        this.maxWaitNanos = isNull(maxWait) ? null : unit.toNanos(maxWait);
+        return this;
+    }
+
+    /**
+     * @param metrics
+     *         Where to report how long streams waited to be admitted and how many are waiting, nowhere if {@code null}.
+     * @return This channel.
+     */
+    public SchedulingStreamingChannel setMetrics(@Nullable final StreamingMetrics metrics) {
+        this.metrics = nonNull(metrics) ? metrics : StreamingMetrics.NOOP;
+        return this;
+    }
+
+    /**
+     * @return Number of streams waiting to be admitted.
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of streams admitted and not closed yet.
+     */
+    public int getActiveStreams() {
+        lock.lock();
+        try {
+            return activeStreams;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Bytes of the memory budget taken by streams admitted and not closed yet.
+     */
+    public long getReservedBytes() {
+        lock.lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Ticket admit(final int priority, final long bytes) throws InterruptedIOException {
+        final long start = System.nanoTime();
+        final Long maxWait = maxWaitNanos;
+        lock.lock();
+        try {
+            final Ticket ticket = new Ticket(priority, sequence++, bytes);
+            waiting.add(ticket);
+            admitWaiting();
+            if (!ticket.admitted) {
+                metrics.recordQueueDepth(waiting.size());
+            }
+            long remaining = isNull(maxWait) ? Long.MAX_VALUE : maxWait;
+            while (!ticket.admitted) {
+                if (remaining <= 0) {
+                    abandon(ticket);
+                    throw new InterruptedIOException(String.format("Timed out waiting to be admitted, %d streams ahead!", waiting.size()));
+                }
+                try {
+                    if (isNull(maxWait)) {
+                        admitted.await();
+                    } else {
+                        remaining = admitted.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    abandon(ticket);
+                    if (ticket.admitted) {
+                        // Admitted just before being interrupted, give it back.
+                        releaseLocked(ticket);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to be admitted!");
+                }
+            }
+            return ticket;
+        } finally {
+            lock.unlock();
+            metrics.recordAdmissionWait(System.nanoTime() - start);
+        }
+    }
+
+    private void abandon(@Nonnull final Ticket ticket) {
+        if (waiting.remove(ticket)) {
+            // Whoever was behind may fit now.
+            admitWaiting();
+            metrics.recordQueueDepth(waiting.size());
+        }
+    }
+
+    private void release(@Nonnull final Ticket ticket) {
+        lock.lock();
+        try {
+            releaseLocked(ticket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked(@Nonnull final Ticket ticket) {
+        if (ticket.released) {
+            return;
+        }
+        ticket.released = true;
+        activeStreams--;
+        reservedBytes -= ticket.bytes;
+        admitWaiting();
+    }
+
+    private void admitWaiting() {
+        boolean changed = false;
+        Ticket head;
+        while (nonNull(head = waiting.peek()) && fits(head)) {
+            waiting.poll();
+            head.admitted = true;
+            activeStreams++;
+            reservedBytes += head.bytes;
+            changed = true;
+        }
+        if (changed) {
+            admitted.signalAll();
+            metrics.recordQueueDepth(waiting.size());
+        }
+    }
+
+    private boolean fits(@Nonnull final Ticket ticket) {
+        if (activeStreams >= maxConcurrentStreams) {
+            return false;
+        }
+        return isNull(memoryBudget) || activeStreams == 0 || reservedBytes + ticket.bytes <= memoryBudget;
+    }
+
+    private static final class Ticket {
+
+        private final int priority;
+        private final long sequence;
+        private final long bytes;
+
+        private boolean admitted;
+        private boolean released;
+
+        private Ticket(final int priority, final long sequence, final long bytes) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.bytes = bytes;
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import io.sgr.streamify.Abortable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Writes into a file through a {@link FileChannel}, and once closed, moves it into place if it has been written to a
+ * temporary file first. If any write failed the file is deleted instead, so a broken file never shows up under its
+ * final name.
+ */
+abstract class StagedFileOutputStream extends OutputStream implements Abortable {
+
+    private final Path target;
+    private final Path staging;
+    private final boolean sync;
+
+    final FileChannel channel;
+
+    private boolean failed;
+    private boolean closed;
+
+    StagedFileOutputStream(@Nonnull final Path target, @Nonnull final Path staging, final boolean sync) throws IOException {
+        this.target = target;
+        this.staging = staging;
+        this.sync = sync;
+        this.channel = FileChannel.open(staging, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public final void write(final int b) throws IOException {
+        ensureOpen();
+        try {
+            writeByte(b);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public final void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        try {
+            writeBytes(b, off, len);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public final void flush() throws IOException {
+        ensureOpen();
+        try {
+            flushBuffer();
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public final void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (!failed) {
+                finish();
+                if (sync) {
+                    channel.force(true);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            channel.close();
+            if (failed) {
+                Files.deleteIfExists(staging);
+            }
+        }
+        if (!failed && !staging.equals(target)) {
+            try {
+                Files.move(staging, target, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                // E.g. AtomicMoveNotSupportedException, don't leave the staging file behind.
+                try {
+                    Files.deleteIfExists(staging);
+                } catch (IOException ex) {
+                    e.addSuppressed(ex);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Closes the file and deletes it, whatever the target was.
+     */
+    @Override
+    public final void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Deleted anyway.
+        }
+        try {
+            Files.deleteIfExists(staging);
+        } catch (IOException ignored) {
+            // Nothing more we can do.
+        }
+    }
+
+    abstract void writeByte(int b) throws IOException;
+
+    abstract void writeBytes(@Nonnull byte[] b, int off, int len) throws IOException;
+
+    abstract void flushBuffer() throws IOException;
+
+    /**
+     * Writes out whatever is left and cuts the file down to what has actually been written.
+     *
+     * @throws IOException
+     *         If failed to write.
+     */
+    abstract void finish() throws IOException;
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+    }
+
+}
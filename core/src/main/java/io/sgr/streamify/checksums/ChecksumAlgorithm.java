@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.checksums;
+
+import static java.util.Objects.isNull;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Checksum;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Checksums which can be computed while content is being streamed.
+ */
+public enum ChecksumAlgorithm {
+
+    /**
+     * CRC-32C, as computed by {@code java.util.zip.CRC32C} on Java 9 and later, which is an intrinsic on most CPUs.
+     * Falls back to Guava, which is a lot slower, on Java 8.
+     */
+    CRC32C("CRC32C", "crc32c", ".crc32c") {
+        @Nonnull
+        @Override
+        Digester newDigester() {
+            final Checksum checksum = newCrc32c();
+            if (isNull(checksum)) {
+                final Hasher hasher = Hashing.crc32c().newHasher();
+                return new Digester() {
+                    @Override
+                    public void update(@Nonnull final byte[] b, final int off, final int len) {
+                        hasher.putBytes(b, off, len);
+                    }
+
+                    @Nonnull
+                    @Override
+                    public byte[] digest() {
+                        // Bytes of Guava hash codes are little-endian, CRCs are written big-endian.
+                        final int value = hasher.hash().asInt();
+                        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+                    }
+                };
+            }
+            return new Digester() {
+                @Override
+                public void update(@Nonnull final byte[] b, final int off, final int len) {
+                    checksum.update(b, off, len);
+                }
+
+                @Nonnull
+                @Override
+                public byte[] digest() {
+                    final long value = checksum.getValue();
+                    return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+                }
+            };
+        }
+    },
+
+    /**
+     * SHA-256, accelerated by the runtime where the CPU has SHA extensions.
+     */
+    SHA256("SHA256", "sha-256", ".sha256") {
+        @Nonnull
+        @Override
+        Digester newDigester() {
+            final MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to support SHA-256.
+                throw new IllegalStateException(e);
+            }
+            return new Digester() {
+                @Override
+                public void update(@Nonnull final byte[] b, final int off, final int len) {
+                    digest.update(b, off, len);
+                }
+
+                @Nonnull
+                @Override
+                public byte[] digest() {
+                    return digest.digest();
+                }
+            };
+        }
+    };
+
+    private static final Constructor<?> CRC32C_CONSTRUCTOR = findCrc32c();
+
+    private final String ocName;
+    private final String digestName;
+    private final String fileExtension;
+
+    ChecksumAlgorithm(@Nonnull final String ocName, @Nonnull final String digestName, @Nonnull final String fileExtension) {
+        this.ocName = ocName;
+        this.digestName = digestName;
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * @return Name of the algorithm in {@code OC-Checksum} headers of ownCloud and Nextcloud, e.g. {@code SHA256}.
+     */
+    @Nonnull
+    public String getOcName() {
+        return ocName;
+    }
+
+    /**
+     * @return Name of the algorithm in {@code Digest} headers (RFC 3230), e.g. {@code sha-256}.
+     */
+    @Nonnull
+    public String getDigestName() {
+        return digestName;
+    }
+
+    /**
+     * @return Extension of sidecar files holding the checksum of a file, e.g. {@code .sha256}.
+     */
+    @Nonnull
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    @Nonnull
+    abstract Digester newDigester();
+
+    private static Checksum newCrc32c() {
+        if (isNull(CRC32C_CONSTRUCTOR)) {
+            return null;
+        }
+        try {
+            return (Checksum) CRC32C_CONSTRUCTOR.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    private static Constructor<?> findCrc32c() {
+        try {
+            return Class.forName("java.util.zip.CRC32C").getConstructor();
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            // Java 8.
+            return null;
+        }
+    }
+
+    interface Digester {
+
+        void update(@Nonnull byte[] b, int off, int len);
+
+        @Nonnull
+        byte[] digest();
+
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.checksums;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Which checksums a channel computes while streaming, and what it does with them.
+ */
+public class ChecksumOptions {
+
+    private final Set<ChecksumAlgorithm> algorithms;
+
+    private boolean sidecar;
+    private boolean verify = true;
+
+    public ChecksumOptions(@Nonnull final ChecksumAlgorithm... algorithms) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(algorithms) && algorithms.length > 0, "Missing checksum algorithms!");
+        this.algorithms = Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(algorithms)));
+    }
+
+    @Nonnull
+    public Set<ChecksumAlgorithm> getAlgorithms() {
+        return algorithms;
+    }
+
+    public boolean isSidecar() {
+        return sidecar;
+    }
+
+    /**
+     * @param sidecar
+     *         Whether to write each checksum next to the content, e.g. {@code export.jsonl.sha256}, in the format of
+     *         {@code sha256sum}, false by default.
+     * @return This options.
+     */
+    public ChecksumOptions setSidecar(final boolean sidecar) {
+        this.sidecar = sidecar;
+        return this;
+    }
+
+    public boolean isVerify() {
+        return verify;
+    }
+
+    /**
+     * @param verify
+     *         Whether to fail the stream if the destination reports a different checksum for what it received, true by
+     *         default. Destinations which don't report checksums are not verified either way.
+     * @return This options.
+     */
+    public ChecksumOptions setVerify(final boolean verify) {
+        this.verify = verify;
+        return this;
+    }
+
+}
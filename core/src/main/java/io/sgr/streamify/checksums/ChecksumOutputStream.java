@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.checksums;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Objects.nonNull;
+
+import com.google.common.io.BaseEncoding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Computes checksums of the bytes on their way to another stream, so content can be verified without reading it back.
+ * Checksums are available once this stream has been closed.
+ */
+public class ChecksumOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final Map<ChecksumAlgorithm, ChecksumAlgorithm.Digester> digesters = new EnumMap<>(ChecksumAlgorithm.class);
+    private final Map<ChecksumAlgorithm, byte[]> checksums = new EnumMap<>(ChecksumAlgorithm.class);
+    private final byte[] single = new byte[1];
+
+    private long count;
+    private boolean closed;
+
+    public ChecksumOutputStream(@Nonnull final OutputStream out, @Nonnull final Collection<ChecksumAlgorithm> algorithms) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(out), "Missing output stream!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(algorithms) && !algorithms.isEmpty(), "Missing checksum algorithms!");
+        this.out = out;
+        for (ChecksumAlgorithm algorithm : algorithms) {
+            digesters.put(algorithm, algorithm.newDigester());
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        checkPositionIndexes(off, off + len, b.length);
+        out.write(b, off, len);
+        for (ChecksumAlgorithm.Digester digester : digesters.values()) {
+            digester.update(b, off, len);
+        }
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        digesters.forEach((algorithm, digester) -> checksums.put(algorithm, digester.digest()));
+        out.close();
+    }
+
+    /**
+     * @return Number of bytes written so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Checksums of everything written, empty until this stream has been closed.
+     */
+    @Nonnull
+    public Map<ChecksumAlgorithm, byte[]> getChecksums() {
+        return Collections.unmodifiableMap(checksums);
+    }
+
+    /**
+     * @param algorithm
+     *         One of the algorithms this stream has been created with.
+     * @return The checksum in lower case hex, nothing if this stream is still open or doesn't compute the algorithm.
+     */
+    @Nonnull
+    public Optional<String> getHexChecksum(@Nonnull final ChecksumAlgorithm algorithm) {
+        return Optional.ofNullable(checksums.get(algorithm)).map(BaseEncoding.base16().lowerCase()::encode);
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.metrics.StreamingMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Gzip which picks the compression level block by block, depending on whether compressing or draining the output is
+ * what holds the stream back.
+ * <p>
+ * Each block is written as a gzip member of its own, and a concatenation of members is still a valid gzip stream. When
+ * compressing a block took longer than writing its output, e.g. on a fast LAN, the next block is compressed at a lower
+ * level, and when writing took much longer, e.g. on a slow WAN link, at a higher level. Blocks which barely compress are
+ * followed by a run of stored blocks, with a compressed block every now and then to find out whether the content has
+ * become compressible again. Levels picked are reported through
+ * {@link StreamingMetrics#recordCompressionLevel(String, int, long)}.
+ */
+public class AdaptiveGZipCodec implements CompressionCodec {
+
+    public static final String NAME = "gzip-adaptive";
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private static final int DEFAULT_INITIAL_LEVEL = 6;
+
+    private final int initialLevel;
+    private final int blockSize;
+    private final StreamingMetrics metrics;
+
+    public AdaptiveGZipCodec() {
+        this(new CompressionOptions(), StreamingMetrics.NOOP);
+    }
+
+    /**
+     * @param options
+     *         The level of options is the one to start with, defaults to 6.
+     * @param metrics
+     *         Where to report levels picked.
+     */
+    public AdaptiveGZipCodec(@Nonnull final CompressionOptions options, @Nonnull final StreamingMetrics metrics) {
+        this(options.getLevel().filter(level -> level > Deflater.NO_COMPRESSION).orElse(DEFAULT_INITIAL_LEVEL), DEFAULT_BLOCK_SIZE, metrics);
+    }
+
+    /**
+     * @param initialLevel
+     *         Level of the first block, from 1 to 9.
+     * @param blockSize
+     *         Size of each block, levels are changed no more often than once per block.
+     * @param metrics
+     *         Where to report levels picked.
+     */
+    public AdaptiveGZipCodec(final int initialLevel, final int blockSize, @Nonnull final StreamingMetrics metrics) {
+        checkArgument(initialLevel >= Deflater.BEST_SPEED && initialLevel <= Deflater.BEST_COMPRESSION, "Initial level should be between 1 and 9!");
+        checkArgument(blockSize > 0, "Block size should be greater than 0!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(metrics), "Missing metrics!");
+        this.initialLevel = initialLevel;
+        this.blockSize = blockSize;
+        this.metrics = metrics;
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Nonnull
+    @Override
+    public String getFileExtension() {
+        return ".gz";
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream wrap(@Nonnull final OutputStream outputStream) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(outputStream), "Missing output stream!");
+        return new AdaptiveGZipOutputStream(outputStream, initialLevel, blockSize, metrics);
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import io.sgr.streamify.metrics.StreamingMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnull;
+
+class AdaptiveGZipOutputStream extends OutputStream {
+
+    /**
+     * Blocks compressing to more than this share of their size are considered incompressible.
+     */
+    static final double INCOMPRESSIBLE_RATIO = 0.95;
+    /**
+     * Stored blocks written after an incompressible block, before trying to compress again.
+     */
+    static final int STORED_BLOCKS_BEFORE_PROBE = 16;
+    /**
+     * How much longer writing has to take than compressing before spending more time on compression.
+     */
+    static final double RAISE_LEVEL_FACTOR = 2.0;
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b,  // Magic number
+            Deflater.DEFLATED,  // Compression method
+            0,                  // Flags
+            0, 0, 0, 0,         // Modification time
+            0,                  // Extra flags
+            (byte) 0xff         // Operating system: unknown
+    };
+    private static final int TRAILER_SIZE = 8;
+
+    private final OutputStream out;
+    private final StreamingMetrics metrics;
+    private final byte[] block;
+    private final CRC32 crc = new CRC32();
+
+    private byte[] member;
+    private int position;
+    private int level;
+    private int storedBlocksLeft;
+    private boolean written;
+    private boolean closed;
+
+    AdaptiveGZipOutputStream(@Nonnull final OutputStream out, final int initialLevel, final int blockSize, @Nonnull final StreamingMetrics metrics) {
+        this.out = out;
+        this.metrics = metrics;
+        this.block = new byte[blockSize];
+        this.member = new byte[blockSize + (blockSize >> 3) + 64];
+        this.level = initialLevel;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        block[position++] = (byte) b;
+        if (position == block.length) {
+            writeMember();
+        }
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        checkPositionIndexes(off, off + len, b.length);
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            final int count = Math.min(remaining, block.length - position);
+            System.arraycopy(b, offset, block, position, count);
+            position += count;
+            offset += count;
+            remaining -= count;
+            if (position == block.length) {
+                writeMember();
+            }
+        }
+    }
+
+    /**
+     * Writes whatever has been written so far as a member of its own, so frequent flushing costs ratio.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (position > 0) {
+            writeMember();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // An empty stream still needs one member to be valid gzip.
+            if (position > 0 || !written) {
+                writeMember();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+    }
+
+    private void writeMember() throws IOException {
+        final int length = position;
+        final int blockLevel = storedBlocksLeft > 0 ? Deflater.NO_COMPRESSION : level;
+        final long start = System.nanoTime();
+        final int size = compress(length, blockLevel);
+        final long compressed = System.nanoTime();
+        out.write(member, 0, size);
+        final long drained = System.nanoTime();
+        position = 0;
+        written = true;
+        metrics.recordCompressionLevel(AdaptiveGZipCodec.NAME, blockLevel, length);
+        if (blockLevel == Deflater.NO_COMPRESSION) {
+            storedBlocksLeft--;
+            return;
+        }
+        final int deflated = size - HEADER.length - TRAILER_SIZE;
+        level = nextLevel(level, length, compressed - start, drained - compressed);
+        if (length > 0 && deflated >= length * INCOMPRESSIBLE_RATIO) {
+            storedBlocksLeft = STORED_BLOCKS_BEFORE_PROBE;
+        }
+    }
+
+    /**
+     * @return Level of the next block, one step towards whichever of compressing or writing took less time.
+     */
+    static int nextLevel(final int level, final int length, final long compressNanos, final long drainNanos) {
+        if (length == 0) {
+            return level;
+        }
+        if (compressNanos > drainNanos) {
+            return Math.max(Deflater.BEST_SPEED, level - 1);
+        }
+        if (drainNanos > compressNanos * RAISE_LEVEL_FACTOR) {
+            return Math.min(Deflater.BEST_COMPRESSION, level + 1);
+        }
+        return level;
+    }
+
+    private int compress(final int length, final int blockLevel) {
+        final DeflaterPool pool = DeflaterPool.shared(blockLevel, Deflater.DEFAULT_STRATEGY, true);
+        final Deflater deflater = pool.borrow();
+        boolean completed = false;
+        try {
+            System.arraycopy(HEADER, 0, member, 0, HEADER.length);
+            int size = HEADER.length;
+            deflater.setInput(block, 0, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (size + TRAILER_SIZE >= member.length) {
+                    member = Arrays.copyOf(member, member.length * 2);
+                }
+                size += deflater.deflate(member, size, member.length - size - TRAILER_SIZE);
+            }
+            crc.reset();
+            crc.update(block, 0, length);
+            writeIntLE(member, size, crc.getValue());
+            writeIntLE(member, size + 4, length);
+            completed = true;
+            return size + TRAILER_SIZE;
+        } finally {
+            if (completed) {
+                pool.release(deflater);
+            } else {
+                deflater.end();
+            }
+        }
+    }
+
+    private static void writeIntLE(final byte[] buf, final int offset, final long value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >> 8);
+        buf[offset + 2] = (byte) (value >> 16);
+        buf[offset + 3] = (byte) (value >> 24);
+    }
+
+}
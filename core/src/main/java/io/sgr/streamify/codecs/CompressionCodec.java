@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import io.sgr.streamify.OutputStreamWrapper;
+
+import javax.annotation.Nonnull;
+
+/**
+ * An {@link OutputStreamWrapper} which compresses what's written to it in a well known format.
+ */
+public interface CompressionCodec extends OutputStreamWrapper {
+
+    /**
+     * @return Name the codec can be looked up with from {@link CompressionCodecs}, e.g. {@code gzip}.
+     */
+    @Nonnull
+    String getName();
+
+    /**
+     * @return Conventional file extension of the format including the leading dot, e.g. {@code .gz}.
+     */
+    @Nonnull
+    String getFileExtension();
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Service provider interface for codecs living outside of core, implementations are discovered with
+ * {@link java.util.ServiceLoader} by {@link CompressionCodecs}.
+ */
+public interface CompressionCodecProvider {
+
+    @Nonnull
+    String getName();
+
+    @Nonnull
+    CompressionCodec create(@Nonnull CompressionOptions options);
+
+}
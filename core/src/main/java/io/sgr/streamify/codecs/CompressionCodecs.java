@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.metrics.StreamingMetrics;
+
+import java.util.Locale;
+import java.util.ServiceLoader;
+
+import javax.annotation.Nonnull;
+
+public final class CompressionCodecs {
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Looks up a codec by name, built-in ones first, then those registered through {@link CompressionCodecProvider}.
+     *
+     * @param name
+     *         Name of the codec, case insensitive.
+     * @param options
+     *         Options to create the codec with.
+     * @return The codec.
+     * @throws IllegalArgumentException
+     *         If no such codec can be found.
+     */
+    @Nonnull
+    public static CompressionCodec forName(@Nonnull final String name, @Nonnull final CompressionOptions options) {
+        checkArgument(!isNullOrEmpty(name), "Missing codec name!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "Missing compression options!");
+        final String normalized = name.toLowerCase(Locale.ROOT);
+        if (GZipCodec.NAME.equals(normalized)) {
+            return new GZipCodec(options);
+        }
+        if (AdaptiveGZipCodec.NAME.equals(normalized)) {
+            return new AdaptiveGZipCodec(options, StreamingMetrics.NOOP);
+        }
+        for (CompressionCodecProvider provider : ServiceLoader.load(CompressionCodecProvider.class)) {
+            if (provider.getName().equalsIgnoreCase(normalized)) {
+                return provider.create(options);
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown compression codec '%s'!", name));
+    }
+
+}
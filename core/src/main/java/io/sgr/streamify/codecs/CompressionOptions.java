@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+
+import java.util.Optional;
+
+/**
+ * Tuning knobs of a codec, codecs ignore the ones they don't support and use their own defaults for unset ones.
+ */
+public class CompressionOptions {
+
+    private Integer level;
+    private Integer strategy;
+    private Integer threads;
+
+    public Optional<Integer> getLevel() {
+        return Optional.ofNullable(level);
+    }
+
+    public CompressionOptions setLevel(final Integer level) {
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * @return Deflate strategy, one of {@link java.util.zip.Deflater#DEFAULT_STRATEGY}, {@link java.util.zip.Deflater#FILTERED}
+     *         or {@link java.util.zip.Deflater#HUFFMAN_ONLY}.
+     */
+    public Optional<Integer> getStrategy() {
+        return Optional.ofNullable(strategy);
+    }
+
+    public CompressionOptions setStrategy(final Integer strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+    public Optional<Integer> getThreads() {
+        return Optional.ofNullable(threads);
+    }
+
+    public CompressionOptions setThreads(final Integer threads) {
+        checkArgument(isNull(threads) || threads > 0, "Number of threads should be greater than 0!");
+        this.threads = threads;
+        return this;
+    }
+
+}
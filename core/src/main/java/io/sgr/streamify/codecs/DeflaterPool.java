@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A pool of {@link Deflater}s sharing the same settings, so streams don't have to allocate and free native zlib state
+ * every time one is opened and closed.
+ */
+public class DeflaterPool {
+
+    public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final ConcurrentMap<String, DeflaterPool> SHARED_POOLS = new ConcurrentHashMap<>();
+
+    private final int level;
+    private final int strategy;
+    private final boolean nowrap;
+    private final BlockingQueue<Deflater> idle;
+
+    public DeflaterPool(final int level, final int strategy, final boolean nowrap, final int maxIdle) {
+        checkArgument(level == Deflater.DEFAULT_COMPRESSION || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION),
+                "Invalid compression level!");
+        checkArgument(strategy == Deflater.DEFAULT_STRATEGY || strategy == Deflater.FILTERED || strategy == Deflater.HUFFMAN_ONLY,
+                "Invalid compression strategy!");
+        checkArgument(maxIdle > 0, "Max idle deflaters should be greater than 0!");
+        this.level = level;
+        this.strategy = strategy;
+        this.nowrap = nowrap;
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * @param level
+     *         Compression level.
+     * @param strategy
+     *         Compression strategy.
+     * @param nowrap
+     *         Whether to produce raw deflate data without zlib header and checksum.
+     * @return A pool shared by everyone asking for the same settings.
+     */
+    @Nonnull
+    public static DeflaterPool shared(final int level, final int strategy, final boolean nowrap) {
+        final String key = level + ":" + strategy + ":" + nowrap;
+        return SHARED_POOLS.computeIfAbsent(key, k -> new DeflaterPool(level, strategy, nowrap, DEFAULT_MAX_IDLE));
+    }
+
+    @Nonnull
+    public Deflater borrow() {
+        final Deflater pooled = idle.poll();
+        if (nonNull(pooled)) {
+            return pooled;
+        }
+        final Deflater deflater = new Deflater(level, nowrap);
+        deflater.setStrategy(strategy);
+        return deflater;
+    }
+
+    /**
+     * Resets the given deflater and puts it back to the pool, or frees it if the pool is already full.
+     * Don't release a deflater which failed in the middle of a stream, call {@link Deflater#end()} instead.
+     *
+     * @param deflater
+     *         The deflater borrowed from this pool.
+     */
+    public void release(final Deflater deflater) {
+        if (isNull(deflater)) {
+            return;
+        }
+        deflater.reset();
+        if (!idle.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getStrategy() {
+        return strategy;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.wrappers.ParallelGZipOutputStreamWrapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Gzip with pooled deflaters, configurable level and strategy. When more than one thread is asked for, blocks are
+ * compressed in parallel on the common pool, see {@link ParallelGZipOutputStreamWrapper}.
+ */
+public class GZipCodec implements CompressionCodec {
+
+    public static final String NAME = "gzip";
+
+    private final DeflaterPool pool;
+    private final ParallelGZipOutputStreamWrapper parallel;
+
+    public GZipCodec() {
+        this(new CompressionOptions());
+    }
+
+    public GZipCodec(@Nonnull final CompressionOptions options) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "Missing compression options!");
+        this.pool = DeflaterPool.shared(
+                options.getLevel().orElse(Deflater.DEFAULT_COMPRESSION), options.getStrategy().orElse(Deflater.DEFAULT_STRATEGY), true);
+        final int threads = options.getThreads().orElse(1);
+        this.parallel = threads > 1
+                ? new ParallelGZipOutputStreamWrapper(ForkJoinPool.commonPool(), ParallelGZipOutputStreamWrapper.DEFAULT_BLOCK_SIZE, threads, pool, true)
+                : null;
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Nonnull
+    @Override
+    public String getFileExtension() {
+        return ".gz";
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream wrap(@Nonnull final OutputStream outputStream) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(outputStream), "Missing output stream!");
+        if (isNull(parallel)) {
+            return new PooledGZipOutputStream(outputStream, pool);
+        }
+        return parallel.wrap(outputStream);
+    }
+
+}
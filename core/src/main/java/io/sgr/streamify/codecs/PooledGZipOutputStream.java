@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Same output as {@link java.util.zip.GZIPOutputStream}, but with a {@link Deflater} borrowed from a {@link DeflaterPool}
+ * and handed back once the stream is closed.
+ */
+class PooledGZipOutputStream extends DeflaterOutputStream {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final DeflaterPool pool;
+    private final CRC32 crc = new CRC32();
+
+    private boolean closed;
+
+    PooledGZipOutputStream(@Nonnull final OutputStream out, @Nonnull final DeflaterPool pool) throws IOException {
+        super(out, pool.borrow(), BUFFER_SIZE);
+        this.pool = pool;
+        try {
+            out.write(HEADER);
+        } catch (IOException e) {
+            def.end();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+        super.write(b, off, len);
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (def.finished()) {
+            return;
+        }
+        super.finish();
+        final long size = def.getBytesRead();
+        final byte[] trailer = new byte[8];
+        writeIntLE(trailer, 0, crc.getValue());
+        writeIntLE(trailer, 4, size);
+        out.write(trailer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean finished = false;
+        try {
+            finish();
+            finished = true;
+        } finally {
+            try {
+                out.close();
+            } finally {
+                if (finished) {
+                    pool.release(def);
+                } else {
+                    def.end();
+                }
+            }
+        }
+    }
+
+    private static void writeIntLE(final byte[] buf, final int offset, final long value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >> 8);
+        buf[offset + 2] = (byte) (value >> 16);
+        buf[offset + 3] = (byte) (value >> 24);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.concurrent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.Objects.isNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Virtual threads, when the runtime has them (Java 21 and later), looked up reflectively since this library is built
+ * for Java 8. A task blocked on a pipe or a socket in a virtual thread only holds a small heap object instead of a
+ * platform thread and its stack, so thousands of exports can be in flight at once.
+ * <p>
+ * Use them for the request body writers of a channel, e.g. {@code WebDavUploadChannel#setExecutor}, and for the
+ * prefetching producers of {@link io.sgr.streamify.jdbc.StreamingOptions#setPrefetchExecutor}.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Method NAME = findMethod(findClass("java.lang.Thread$Builder"), "name", String.class, long.class);
+    private static final Method FACTORY = findMethod(findClass("java.lang.Thread$Builder"), "factory");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return Whether virtual threads are available, they are a preview feature before Java 21.
+     */
+    public static boolean isSupported() {
+        return newThreadFactory("streamify-probe-").isPresent();
+    }
+
+    /**
+     * @param namePrefix
+     *         Threads are named by the prefix followed by a sequence number, e.g. {@code streamify-upload-}.
+     * @return A factory of virtual threads, or nothing if virtual threads are not available.
+     */
+    @Nonnull
+    public static Optional<ThreadFactory> newThreadFactory(@Nonnull final String namePrefix) {
+        checkArgument(!isNullOrEmpty(namePrefix), "Missing thread name prefix!");
+        if (isNull(OF_VIRTUAL) || isNull(NAME) || isNull(FACTORY)) {
+            return Optional.empty();
+        }
+        try {
+            final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+            return Optional.of((ThreadFactory) FACTORY.invoke(builder));
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            // Still a preview feature which hasn't been enabled.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param namePrefix
+     *         Threads are named by the prefix followed by a sequence number.
+     * @return An executor which starts a new virtual thread for every task, or nothing if virtual threads are not
+     *         available. It should be shut down once no longer needed.
+     */
+    @Nonnull
+    public static Optional<ExecutorService> newThreadPerTaskExecutor(@Nonnull final String namePrefix) {
+        if (isNull(NEW_THREAD_PER_TASK_EXECUTOR)) {
+            return Optional.empty();
+        }
+        return newThreadFactory(namePrefix).map(factory -> {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Failed to create virtual thread executor!", e);
+            }
+        });
+    }
+
+    private static Class<?> findClass(final String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(final Class<?> type, final String name, final Class<?>... parameterTypes) {
+        if (isNull(type)) {
+            return null;
+        }
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.jdbc.exceptions.UnableToCloseResourceException;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of cursors opened by partitions of a stream, so whatever is still open can be closed with the stream.
+ */
+class CursorRegistry implements Runnable {
+
+    private final Set<StreamingHelper.UncheckedCloseable> open = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed;
+
+    void register(final StreamingHelper.UncheckedCloseable closeable) {
+        open.add(closeable);
+        if (closed) {
+            // The stream has been closed while this cursor was being opened.
+            release(closeable);
+            throw new IllegalStateException("Stream already closed!");
+        }
+    }
+
+    void release(final StreamingHelper.UncheckedCloseable closeable) {
+        if (open.remove(closeable)) {
+            closeable.run();
+        }
+    }
+
+    @Override
+    public void run() {
+        closed = true;
+        UnableToCloseResourceException failure = null;
+        for (StreamingHelper.UncheckedCloseable closeable : open) {
+            try {
+                release(closeable);
+            } catch (UnableToCloseResourceException e) {
+                if (isNull(failure)) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (nonNull(failure)) {
+            throw failure;
+        }
+    }
+
+}
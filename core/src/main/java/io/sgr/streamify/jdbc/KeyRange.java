@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A half-open range of keys, {@code [from, to)}, which sets both bounds as parameters of a query like
+ * {@code SELECT ... WHERE id >= ? AND id < ?}.
+ */
+public class KeyRange implements PreparedStatementSetter {
+
+    private final long from;
+    private final long to;
+    private final int parameterIndex;
+
+    public KeyRange(final long from, final long to) {
+        this(from, to, 1);
+    }
+
+    /**
+     * @param from
+     *         Lower bound, inclusive.
+     * @param to
+     *         Upper bound, exclusive.
+     * @param parameterIndex
+     *         Index of the parameter to set the lower bound to, the upper bound is set to the next one.
+     */
+    public KeyRange(final long from, final long to, final int parameterIndex) {
+        checkArgument(from <= to, "Lower bound should not be greater than upper bound!");
+        checkArgument(parameterIndex > 0, "Parameter index should be greater than 0!");
+        this.from = from;
+        this.to = to;
+        this.parameterIndex = parameterIndex;
+    }
+
+    /**
+     * Splits {@code [from, to)} into at most the given number of ranges of about the same size.
+     *
+     * @param from
+     *         Lower bound, inclusive.
+     * @param to
+     *         Upper bound, exclusive.
+     * @param partitions
+     *         Number of ranges.
+     * @return Non-empty ranges in ascending order.
+     */
+    @Nonnull
+    public static List<KeyRange> split(final long from, final long to, final int partitions) {
+        checkArgument(from <= to, "Lower bound should not be greater than upper bound!");
+        checkArgument(partitions > 0, "Number of partitions should be greater than 0!");
+        final long size = Math.subtractExact(to, from);
+        final long step = size / partitions;
+        final long remainder = size % partitions;
+        final List<KeyRange> ranges = new ArrayList<>(partitions);
+        long lower = from;
+        for (int i = 0; i < partitions && lower < to; i++) {
+            final long upper = lower + step + (i < remainder ? 1 : 0);
+            ranges.add(new KeyRange(lower, upper));
+            lower = upper;
+        }
+        return ranges;
+    }
+
+    @Override
+    public void setValues(@Nonnull final PreparedStatement ps) throws SQLException {
+        ps.setLong(parameterIndex, from);
+        ps.setLong(parameterIndex + 1, to);
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+}
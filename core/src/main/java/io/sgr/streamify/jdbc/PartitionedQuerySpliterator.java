@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.jdbc.exceptions.StreamElementProcessingException;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+/**
+ * Streams a list of query partitions, splitting hands out half of the partitions nobody has started on yet.
+ */
+class PartitionedQuerySpliterator<T> implements Spliterator<T> {
+
+    private final DataSource dataSource;
+    private final String sql;
+    private final List<? extends PreparedStatementSetter> partitions;
+    private final RowConverter<T> converter;
+    private final StreamingOptions options;
+    private final CursorRegistry registry;
+    private final int end;
+    private final RowCounter rowCounter;
+
+    private int next;
+    private StreamingHelper.Cursor current;
+    private StreamingHelper.UncheckedCloseable currentCloseable;
+
+    PartitionedQuerySpliterator(
+            final DataSource dataSource, final String sql, final List<? extends PreparedStatementSetter> partitions,
+            final RowConverter<T> converter, final StreamingOptions options, final CursorRegistry registry) {
+        this(dataSource, sql, partitions, converter, options, registry, 0, partitions.size());
+    }
+
+    private PartitionedQuerySpliterator(
+            final DataSource dataSource, final String sql, final List<? extends PreparedStatementSetter> partitions,
+            final RowConverter<T> converter, final StreamingOptions options, final CursorRegistry registry,
+            final int next, final int end) {
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.partitions = partitions;
+        this.converter = converter;
+        this.options = options;
+        this.registry = registry;
+        this.next = next;
+        this.end = end;
+        this.rowCounter = options.getMetrics().map(RowCounter::new).orElse(null);
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        try {
+            while (true) {
+                if (isNull(current)) {
+                    if (next >= end) {
+                        return false;
+                    }
+                    current = StreamingHelper.openCursor(dataSource, sql, partitions.get(next++), options);
+                    currentCloseable = flushingRows(current.closeable);
+                    registry.register(currentCloseable);
+                }
+                if (current.resultSet.next()) {
+                    action.accept(converter.read(current.resultSet));
+                    if (nonNull(rowCounter)) {
+                        rowCounter.add(1);
+                    }
+                    return true;
+                }
+                final StreamingHelper.UncheckedCloseable drained = currentCloseable;
+                current = null;
+                currentCloseable = null;
+                registry.release(drained);
+            }
+        } catch (SQLException e) {
+            throw new StreamElementProcessingException(e);
+        }
+    }
+
+    /**
+     * Reports rows counted so far whenever the partition gets closed, whether it has been drained, or the stream got
+     * closed before, e.g. after a short-circuiting operation. Each split is advanced by a single thread, and the stream
+     * is closed once it's done with them, so the counter is never touched concurrently.
+     */
+    private StreamingHelper.UncheckedCloseable flushingRows(final StreamingHelper.UncheckedCloseable closeable) {
+        if (isNull(rowCounter)) {
+            return closeable;
+        }
+        return () -> {
+            try {
+                rowCounter.run();
+            } finally {
+                closeable.close();
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        // Only whole partitions can be handed out, and the prefix has to be one nobody has started on.
+        if (nonNull(current) || end - next < 2) {
+            return null;
+        }
+        final int mid = next + (end - next) / 2;
+        final Spliterator<T> prefix = new PartitionedQuerySpliterator<>(dataSource, sql, partitions, converter, options, registry, next, mid);
+        next = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED;
+    }
+
+}
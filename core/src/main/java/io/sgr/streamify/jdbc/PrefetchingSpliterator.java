@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc;
+
+import static java.util.Objects.isNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.sgr.streamify.jdbc.exceptions.StreamElementProcessingException;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Reads and converts rows on another thread into a bounded queue of batches, while the consumer works on the batches
+ * already read. {@link #stop()} has to be called before the result set is closed, it waits for the reading thread to
+ * leave the result set alone.
+ */
+class PrefetchingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("streamify-prefetch-%d").build();
+    private static final Object END = new Object();
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final ResultSet rs;
+    private final RowConverter<T> converter;
+    private final int batchSize;
+    private final BlockingQueue<Object> queue;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile boolean cancelled;
+    private Iterator<T> current;
+    private boolean finished;
+
+    PrefetchingSpliterator(final ResultSet rs, final RowConverter<T> converter, final int batchSize, final int batches) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.rs = rs;
+        this.converter = converter;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(batches);
+    }
+
+    void start(final Executor executor) {
+        final Runnable task = this::produce;
+        if (isNull(executor)) {
+            THREAD_FACTORY.newThread(task).start();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    void stop() {
+        cancelled = true;
+        // Make room in case the reading thread is waiting to queue a batch.
+        queue.clear();
+        if (started.compareAndSet(false, true)) {
+            // The executor never ran the reading task, e.g. it's saturated or discarded it, and now it never will.
+            return;
+        }
+        Uninterruptibles.awaitUninterruptibly(done);
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        while (isNull(current) || !current.hasNext()) {
+            if (finished) {
+                return false;
+            }
+            final Object next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StreamElementProcessingException(e);
+            }
+            if (next == END) {
+                finished = true;
+                return false;
+            }
+            if (next instanceof Failure) {
+                finished = true;
+                throw ((Failure) next).rethrow();
+            }
+            @SuppressWarnings("unchecked")
+            final List<T> batch = (List<T>) next;
+            current = batch.iterator();
+        }
+        action.accept(current.next());
+        return true;
+    }
+
+    private void produce() {
+        if (!started.compareAndSet(false, true)) {
+            // Already stopped.
+            return;
+        }
+        try {
+            List<T> batch = new ArrayList<>(batchSize);
+            while (!cancelled && rs.next()) {
+                batch.add(converter.read(rs));
+                if (batch.size() == batchSize) {
+                    put(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                put(batch);
+            }
+            put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offerQuietly(new Failure(e));
+        } catch (Throwable e) {
+            offerQuietly(new Failure(e));
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private void put(final Object item) throws InterruptedException {
+        while (!cancelled) {
+            if (queue.offer(item, OFFER_TIMEOUT_MILLIS, MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    private void offerQuietly(final Object item) {
+        try {
+            put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Failure {
+
+        private final Throwable cause;
+
+        private Failure(final Throwable cause) {
+            this.cause = cause;
+        }
+
+        private RuntimeException rethrow() {
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                return (RuntimeException) cause;
+            }
+            return new StreamElementProcessingException(cause);
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc;
+
+import io.sgr.streamify.metrics.StreamingMetrics;
+
+/**
+ * Counts rows read by a single thread and reports them to {@link StreamingMetrics#recordRows(long)} in batches, the
+ * rest is reported when run.
+ */
+final class RowCounter implements Runnable {
+
+    static final int REPORT_THRESHOLD = 1024;
+
+    private final StreamingMetrics metrics;
+
+    private long unreported;
+
+    RowCounter(final StreamingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void add(final int rows) {
+        unreported += rows;
+        if (unreported >= REPORT_THRESHOLD) {
+            run();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (unreported > 0) {
+            metrics.recordRows(unreported);
+            unreported = 0;
+        }
+    }
+
+}
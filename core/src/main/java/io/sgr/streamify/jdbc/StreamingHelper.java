@@ -19,17 +19,34 @@ package io.sgr.streamify.jdbc;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
+import io.sgr.streamify.Abortable;
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.jdbc.cursors.CursorStrategies;
+import io.sgr.streamify.jdbc.cursors.CursorStrategy;
 import io.sgr.streamify.jdbc.exceptions.StreamElementProcessingException;
 import io.sgr.streamify.jdbc.exceptions.UnableToCloseResourceException;
+import io.sgr.streamify.jdbc.rows.ColumnBatch;
+import io.sgr.streamify.jdbc.rows.ColumnLayout;
+import io.sgr.streamify.jdbc.rows.RowBuffer;
+import io.sgr.streamify.jdbc.serializers.CsvSerializer;
+import io.sgr.streamify.jdbc.serializers.JsonLinesSerializer;
+import io.sgr.streamify.jdbc.serializers.ResultSetSerializer;
+import io.sgr.streamify.metrics.StreamingMetrics;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.function.Consumer;
@@ -42,18 +59,354 @@ import javax.sql.DataSource;
 
 public class StreamingHelper {
 
-    @SuppressFBWarnings(value = "OBL_UNSATISFIED_OBLIGATION", justification = "I know what I'm doing")
     @Nonnull
     public static <T> Stream<T> queryToStream(
             @Nonnull final DataSource dataSource,
             @Nonnull final String sql, @Nullable PreparedStatementSetter pss,
             @Nonnull final RowConverter<T> converter)
             throws SQLException {
+        return queryToStream(dataSource, sql, pss, converter, new StreamingOptions());
+    }
+
+    /**
+     * Runs the query with a cursor set up by {@link StreamingOptions#getCursorStrategy()}, or by one detected from the
+     * driver, and streams the rows as they are fetched. Resources are closed when the returned stream is closed.
+     * <p>
+     * With {@link StreamingOptions#isPrefetch()} rows are read and converted on another thread ahead of the consumer,
+     * failures there surface to the consumer as {@link StreamElementProcessingException} just the same.
+     *
+     * @param dataSource
+     *         Where to get the connection from.
+     * @param sql
+     *         The query.
+     * @param pss
+     *         Sets parameters of the query, if any.
+     * @param converter
+     *         Converts each row.
+     * @param options
+     *         Streaming options.
+     * @param <T>
+     *         Type of stream elements.
+     * @return The stream of converted rows, which must be closed.
+     * @throws SQLException
+     *         If failed to run the query.
+     */
+    @Nonnull
+    public static <T> Stream<T> queryToStream(
+            @Nonnull final DataSource dataSource,
+            @Nonnull final String sql, @Nullable PreparedStatementSetter pss,
+            @Nonnull final RowConverter<T> converter, @Nonnull final StreamingOptions options)
+            throws SQLException {
         //noinspection ConstantConditions
         checkArgument(nonNull(dataSource), "DataSource should not be null!");
         checkArgument(!isNullOrEmpty(sql), "SQL should not be null or empty string!");
         //noinspection ConstantConditions
         checkArgument(nonNull(converter), "RowConverter should not be null!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "StreamingOptions should not be null!");
+        final Cursor cursor = openCursor(dataSource, sql, pss, options);
+        final ResultSet rs = cursor.resultSet;
+        if (options.isPrefetch()) {
+            final PrefetchingSpliterator<T> spliterator = new PrefetchingSpliterator<>(rs, converter,
+                    options.getPrefetchBatchSize().orElse(StreamingOptions.DEFAULT_PREFETCH_BATCH_SIZE),
+                    options.getPrefetchBatches().orElse(StreamingOptions.DEFAULT_PREFETCH_BATCHES));
+            try {
+                spliterator.start(options.getPrefetchExecutor().orElse(null));
+            } catch (RuntimeException e) {
+                try {
+                    cursor.closeable.run();
+                } catch (RuntimeException ex) {
+                    e.addSuppressed(ex);
+                }
+                throw e;
+            }
+            // The reading thread has to be stopped before the result set gets closed.
+            return countRows(StreamSupport.stream(spliterator, false).onClose(spliterator::stop).onClose(cursor.closeable), options);
+        }
+        return countRows(StreamSupport
+                .stream(new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+                    @Override
+                    public boolean tryAdvance(final Consumer<? super T> action) {
+                        try {
+                            if (rs.next()) {
+                                action.accept(converter.read(rs));
+                                return true;
+                            }
+                            return false;
+                        } catch (SQLException e) {
+                            throw new StreamElementProcessingException(e);
+                        }
+                    }
+                }, false)
+                .onClose(cursor.closeable), options);
+    }
+
+    /**
+     * Runs the same query once per partition, each on its own connection, and streams the rows of all partitions in
+     * parallel. Partitions are handed out by {@link Spliterator#trySplit()}, and only opened when a thread starts
+     * consuming them, so at most as many connections as threads working on the stream are in use at any time. A
+     * partition's resources are closed as soon as it has been drained, the rest are closed with the stream.
+     *
+     * @param dataSource
+     *         Where to get the connections from.
+     * @param sql
+     *         The query, with parameters to select a single partition, e.g. {@code WHERE id >= ? AND id < ?}.
+     * @param partitions
+     *         Sets parameters of the query for each partition, see {@link KeyRange#split(long, long, int)}.
+     * @param converter
+     *         Converts each row.
+     * @param options
+     *         Streaming options, applied to every partition.
+     * @param <T>
+     *         Type of stream elements.
+     * @return The parallel stream of converted rows, which must be closed.
+     */
+    @Nonnull
+    public static <T> Stream<T> queryToParallelStream(
+            @Nonnull final DataSource dataSource,
+            @Nonnull final String sql, @Nonnull final List<? extends PreparedStatementSetter> partitions,
+            @Nonnull final RowConverter<T> converter, @Nonnull final StreamingOptions options) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(dataSource), "DataSource should not be null!");
+        checkArgument(!isNullOrEmpty(sql), "SQL should not be null or empty string!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(partitions), "Partitions should not be null!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(converter), "RowConverter should not be null!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "StreamingOptions should not be null!");
+        final CursorRegistry registry = new CursorRegistry();
+        final PartitionedQuerySpliterator<T> spliterator =
+                new PartitionedQuerySpliterator<>(dataSource, sql, new ArrayList<>(partitions), converter, options, registry);
+        return StreamSupport.stream(spliterator, true).onClose(registry);
+    }
+
+    /**
+     * Streams the rows without converting them into objects: every element is the same {@link RowBuffer}, refilled in
+     * place as the cursor moves on, so it must be consumed before asking for the next one, and must not be collected,
+     * sorted or processed in parallel. {@link StreamingOptions#isPrefetch()} is ignored since there is only one row to
+     * fill.
+     *
+     * @param dataSource
+     *         Where to get the connection from.
+     * @param sql
+     *         The query.
+     * @param pss
+     *         Sets parameters of the query, if any.
+     * @param options
+     *         Streaming options.
+     * @return The stream of the reused row, which must be closed.
+     * @throws SQLException
+     *         If failed to run the query.
+     */
+    @Nonnull
+    public static Stream<RowBuffer> queryToRowStream(
+            @Nonnull final DataSource dataSource,
+            @Nonnull final String sql, @Nullable PreparedStatementSetter pss,
+            @Nonnull final StreamingOptions options)
+            throws SQLException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(dataSource), "DataSource should not be null!");
+        checkArgument(!isNullOrEmpty(sql), "SQL should not be null or empty string!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "StreamingOptions should not be null!");
+        final Cursor cursor = openCursor(dataSource, sql, pss, options);
+        final ResultSet rs = cursor.resultSet;
+        final RowBuffer row = new RowBuffer(readLayout(cursor));
+        return countRows(StreamSupport
+                .stream(new Spliterators.AbstractSpliterator<RowBuffer>(Long.MAX_VALUE, Spliterator.ORDERED) {
+                    @Override
+                    public boolean tryAdvance(final Consumer<? super RowBuffer> action) {
+                        try {
+                            if (rs.next()) {
+                                row.fill(rs);
+                                action.accept(row);
+                                return true;
+                            }
+                            return false;
+                        } catch (SQLException e) {
+                            throw new StreamElementProcessingException(e);
+                        }
+                    }
+                }, false)
+                .onClose(cursor.closeable), options);
+    }
+
+    /**
+     * Streams the rows in batches held column by column in primitive arrays. Like
+     * {@link #queryToRowStream(DataSource, String, PreparedStatementSetter, StreamingOptions)}, every element is the
+     * same {@link ColumnBatch} refilled in place, the last one may hold less than {@code batchSize} rows.
+     *
+     * @param dataSource
+     *         Where to get the connection from.
+     * @param sql
+     *         The query.
+     * @param pss
+     *         Sets parameters of the query, if any.
+     * @param batchSize
+     *         Maximum number of rows per batch.
+     * @param options
+     *         Streaming options.
+     * @return The stream of the reused batch, which must be closed.
+     * @throws SQLException
+     *         If failed to run the query.
+     */
+    @Nonnull
+    public static Stream<ColumnBatch> queryToBatchStream(
+            @Nonnull final DataSource dataSource,
+            @Nonnull final String sql, @Nullable PreparedStatementSetter pss,
+            final int batchSize, @Nonnull final StreamingOptions options)
+            throws SQLException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(dataSource), "DataSource should not be null!");
+        checkArgument(!isNullOrEmpty(sql), "SQL should not be null or empty string!");
+        checkArgument(batchSize > 0, "Batch size should be greater than 0!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "StreamingOptions should not be null!");
+        final Cursor cursor = openCursor(dataSource, sql, pss, options);
+        final ResultSet rs = cursor.resultSet;
+        final ColumnBatch batch = new ColumnBatch(readLayout(cursor), batchSize);
+        final Stream<ColumnBatch> stream = StreamSupport
+                .stream(new Spliterators.AbstractSpliterator<ColumnBatch>(Long.MAX_VALUE, Spliterator.ORDERED) {
+                    @Override
+                    public boolean tryAdvance(final Consumer<? super ColumnBatch> action) {
+                        try {
+                            batch.clear();
+                            while (rs.next()) {
+                                if (batch.add(rs)) {
+                                    break;
+                                }
+                            }
+                        } catch (SQLException e) {
+                            throw new StreamElementProcessingException(e);
+                        }
+                        if (batch.size() == 0) {
+                            return false;
+                        }
+                        action.accept(batch);
+                        return true;
+                    }
+                }, false)
+                .onClose(cursor.closeable);
+        final StreamingMetrics metrics = options.getMetrics().orElse(null);
+        if (isNull(metrics)) {
+            return stream;
+        }
+        final RowCounter counter = new RowCounter(metrics);
+        return stream.peek(ignored -> counter.add(batch.size())).onClose(counter);
+    }
+
+    /**
+     * Runs the query and writes all the rows to the channel in one go, encoded straight from the result set into bytes
+     * by the serializer, e.g. {@link JsonLinesSerializer} or {@link CsvSerializer}.
+     * <p>
+     * <b>If reading or writing the rows fails half way, the stream of the channel is aborted instead of closed</b>, so
+     * the partial export doesn't show up under its final name, as long as the stream is {@link Abortable}, e.g. of
+     * {@code WebDavUploadChannel} or {@link io.sgr.streamify.channels.FileSystemStreamingChannel}. Channels decorating
+     * others, e.g. fan-out, rolling, scheduling or metered ones, pass the abort on to the streams they write to. Streams
+     * of other channels can only be closed, which may well publish the partial export as if it was complete.
+     *
+     * @param dataSource
+     *         Where to get the connection from.
+     * @param sql
+     *         The query.
+     * @param pss
+     *         Sets parameters of the query, if any.
+     * @param serializer
+     *         Encodes the rows.
+     * @param channel
+     *         Where to write the rows to.
+     * @param request
+     *         The streaming request to open the channel with.
+     * @param identifier
+     *         The identifier to open the channel with.
+     * @param options
+     *         Streaming options.
+     * @return Number of rows written.
+     * @throws SQLException
+     *         If failed to run the query or to read the rows.
+     * @throws IOException
+     *         If failed to write to the channel.
+     */
+    @SuppressFBWarnings(value = "OS_OPEN_STREAM_EXCEPTION_PATH", justification = "The stream is aborted instead of closed on failures.")
+    public static long queryToChannel(
+            @Nonnull final DataSource dataSource,
+            @Nonnull final String sql, @Nullable PreparedStatementSetter pss,
+            @Nonnull final ResultSetSerializer serializer,
+            @Nonnull final StreamingChannel channel, @Nonnull final StreamingRequest request, @Nonnull final String identifier,
+            @Nonnull final StreamingOptions options)
+            throws SQLException, IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(dataSource), "DataSource should not be null!");
+        checkArgument(!isNullOrEmpty(sql), "SQL should not be null or empty string!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(serializer), "ResultSetSerializer should not be null!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(channel), "StreamingChannel should not be null!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(request), "StreamingRequest should not be null!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "StreamingOptions should not be null!");
+        final Cursor cursor = openCursor(dataSource, sql, pss, options);
+        try {
+            final OutputStream out = channel.open(request, identifier);
+            final long rows;
+            try {
+                rows = serializer.serialize(cursor.resultSet, out);
+            } catch (SQLException | IOException | RuntimeException e) {
+                abort(out, e);
+                throw e;
+            }
+            out.close();
+            options.getMetrics().ifPresent(metrics -> metrics.recordRows(rows));
+            return rows;
+        } finally {
+            cursor.closeable.run();
+        }
+    }
+
+    /**
+     * Gives up on a stream which only got part of the content, without completing it the way closing would.
+     */
+    private static void abort(@Nonnull final OutputStream out, @Nonnull final Exception e) {
+        try {
+            if (out instanceof Abortable) {
+                ((Abortable) out).abort();
+            } else {
+                out.close();
+            }
+        } catch (IOException | RuntimeException ex) {
+            e.addSuppressed(ex);
+        }
+    }
+
+    private static <T> Stream<T> countRows(final Stream<T> stream, final StreamingOptions options) {
+        final StreamingMetrics metrics = options.getMetrics().orElse(null);
+        if (isNull(metrics)) {
+            return stream;
+        }
+        final RowCounter counter = new RowCounter(metrics);
+        return stream.peek(ignored -> counter.add(1)).onClose(counter);
+    }
+
+    private static ColumnLayout readLayout(final Cursor cursor) throws SQLException {
+        try {
+            return ColumnLayout.of(cursor.resultSet.getMetaData());
+        } catch (SQLException | RuntimeException e) {
+            try {
+                cursor.closeable.run();
+            } catch (RuntimeException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+    }
+
+    @SuppressFBWarnings(value = "OBL_UNSATISFIED_OBLIGATION", justification = "I know what I'm doing")
+    @Nonnull
+    static Cursor openCursor(
+            @Nonnull final DataSource dataSource, @Nonnull final String sql, @Nullable final PreparedStatementSetter pss,
+            @Nonnull final StreamingOptions options) throws SQLException {
         UncheckedCloseable closeable = null;
         try {
             // Wrap resources so we can close them later after all elements been processed not right after function returns!
@@ -64,25 +417,13 @@ public class StreamingHelper {
                 pss.setValues(ps);
             }
             closeable = closeable.nest(ps);
-            ps.setFetchSize(Integer.MIN_VALUE);
+            final CursorStrategy strategy = options.getCursorStrategy().orElse(null);
+            final AutoCloseable cursor = (nonNull(strategy) ? strategy : CursorStrategies.detect(conn))
+                    .apply(conn, ps, options.getFetchSize().orElse(StreamingOptions.DEFAULT_FETCH_SIZE));
+            closeable = closeable.nest(cursor);
             final ResultSet rs = ps.executeQuery();
             closeable = closeable.nest(rs);
-            return StreamSupport
-                    .stream(new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
-                        @Override
-                        public boolean tryAdvance(final Consumer<? super T> action) {
-                            try {
-                                if (rs.next()) {
-                                    action.accept(converter.read(rs));
-                                    return true;
-                                }
-                                return false;
-                            } catch (SQLException e) {
-                                throw new StreamElementProcessingException(e);
-                            }
-                        }
-                    }, false)
-                    .onClose(closeable);
+            return new Cursor(rs, closeable);
         } catch (SQLException e) {
             try {
                 if (nonNull(closeable)) {
@@ -95,7 +436,19 @@ public class StreamingHelper {
         }
     }
 
-    private interface UncheckedCloseable extends Runnable, AutoCloseable {
+    static final class Cursor {
+
+        final ResultSet resultSet;
+        final UncheckedCloseable closeable;
+
+        private Cursor(final ResultSet resultSet, final UncheckedCloseable closeable) {
+            this.resultSet = resultSet;
+            this.closeable = closeable;
+        }
+
+    }
+
+    interface UncheckedCloseable extends Runnable, AutoCloseable {
 
         static UncheckedCloseable wrap(final AutoCloseable closeable) {
             return closeable::close;
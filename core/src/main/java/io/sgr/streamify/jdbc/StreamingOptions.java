@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+
+import io.sgr.streamify.jdbc.cursors.CursorStrategy;
+import io.sgr.streamify.metrics.StreamingMetrics;
+
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+/**
+ * Tuning knobs of {@link StreamingHelper}.
+ */
+public class StreamingOptions {
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    public static final int DEFAULT_PREFETCH_BATCH_SIZE = 256;
+    public static final int DEFAULT_PREFETCH_BATCHES = 4;
+
+    private Integer fetchSize;
+    private CursorStrategy cursorStrategy;
+    private boolean prefetch;
+    private Executor prefetchExecutor;
+    private Integer prefetchBatchSize;
+    private Integer prefetchBatches;
+    private StreamingMetrics metrics;
+
+    /**
+     * @return Rows fetched per round trip, larger values mean fewer round trips but more memory held by the driver.
+     */
+    public Optional<Integer> getFetchSize() {
+        return Optional.ofNullable(fetchSize);
+    }
+
+    public StreamingOptions setFetchSize(final Integer fetchSize) {
+        checkArgument(isNull(fetchSize) || fetchSize > 0, "Fetch size should be greater than 0!");
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * @return How to set up a streaming cursor, detected from the connection if not set.
+     */
+    public Optional<CursorStrategy> getCursorStrategy() {
+        return Optional.ofNullable(cursorStrategy);
+    }
+
+    public StreamingOptions setCursorStrategy(final CursorStrategy cursorStrategy) {
+        this.cursorStrategy = cursorStrategy;
+        return this;
+    }
+
+    /**
+     * @return Whether rows are read and converted ahead of the consumer on another thread, so database round trips
+     *         overlap with whatever the consumer does with the rows.
+     */
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    public StreamingOptions setPrefetch(final boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    /**
+     * @return Executor to run the prefetching task on, a dedicated daemon thread per stream if not set. The task
+     *         occupies its thread until the stream is drained or closed, mostly blocked on the database or on the
+     *         consumer, which makes it a good fit for virtual threads, see
+     *         {@link io.sgr.streamify.concurrent.VirtualThreads#newThreadPerTaskExecutor(String)}.
+     */
+    public Optional<Executor> getPrefetchExecutor() {
+        return Optional.ofNullable(prefetchExecutor);
+    }
+
+    public StreamingOptions setPrefetchExecutor(final Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+        return this;
+    }
+
+    public Optional<Integer> getPrefetchBatchSize() {
+        return Optional.ofNullable(prefetchBatchSize);
+    }
+
+    public StreamingOptions setPrefetchBatchSize(final Integer prefetchBatchSize) {
+        checkArgument(isNull(prefetchBatchSize) || prefetchBatchSize > 0, "Prefetch batch size should be greater than 0!");
+        this.prefetchBatchSize = prefetchBatchSize;
+        return this;
+    }
+
+    /**
+     * @return Most batches read ahead of the consumer, the prefetching thread waits once they are all queued.
+     */
+    public Optional<Integer> getPrefetchBatches() {
+        return Optional.ofNullable(prefetchBatches);
+    }
+
+    public StreamingOptions setPrefetchBatches(final Integer prefetchBatches) {
+        checkArgument(isNull(prefetchBatches) || prefetchBatches > 0, "Prefetch batches should be greater than 0!");
+        this.prefetchBatches = prefetchBatches;
+        return this;
+    }
+
+    /**
+     * @return Where to report rows read to, nowhere if not set.
+     */
+    public Optional<StreamingMetrics> getMetrics() {
+        return Optional.ofNullable(metrics);
+    }
+
+    public StreamingOptions setMetrics(final StreamingMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+}
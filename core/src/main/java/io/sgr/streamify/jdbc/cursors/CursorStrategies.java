@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.cursors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+
+public final class CursorStrategies {
+
+    private static final CursorStrategy GENERIC = new GenericCursorStrategy();
+    private static final CursorStrategy MYSQL = new MySqlCursorStrategy();
+    private static final CursorStrategy POSTGRESQL = new PostgreSqlCursorStrategy();
+
+    private CursorStrategies() {
+    }
+
+    /**
+     * Picks a strategy by the product name the driver reports, falls back to {@link GenericCursorStrategy}.
+     *
+     * @param conn
+     *         The connection to detect with.
+     * @return The strategy.
+     * @throws SQLException
+     *         If failed to read database metadata.
+     */
+    @Nonnull
+    public static CursorStrategy detect(@Nonnull final Connection conn) throws SQLException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(conn), "Missing connection!");
+        final DatabaseMetaData metaData = conn.getMetaData();
+        final String product = isNull(metaData) ? null : metaData.getDatabaseProductName();
+        if (isNull(product)) {
+            return GENERIC;
+        }
+        final String normalized = product.toLowerCase(Locale.ROOT);
+        if (normalized.contains("mysql") || normalized.contains("mariadb")) {
+            return MYSQL;
+        }
+        if (normalized.contains("postgresql")) {
+            return POSTGRESQL;
+        }
+        return GENERIC;
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.cursors;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Sets up a statement so its result set is fetched in batches while being iterated, instead of being materialized in
+ * memory as a whole, which is what most drivers do by default.
+ */
+public interface CursorStrategy {
+
+    /**
+     * Prepares the connection and statement, called right before the query is executed.
+     *
+     * @param conn
+     *         The connection the statement belongs to.
+     * @param ps
+     *         The statement to be executed.
+     * @param fetchSize
+     *         Rows to fetch per round trip.
+     * @return Something to restore the connection with once the result set has been closed, will be called before the
+     *         connection is closed.
+     * @throws SQLException
+     *         If failed to set up the cursor.
+     */
+    @Nonnull
+    AutoCloseable apply(@Nonnull Connection conn, @Nonnull PreparedStatement ps, int fetchSize) throws SQLException;
+
+}
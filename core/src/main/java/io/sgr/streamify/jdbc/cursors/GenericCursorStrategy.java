@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.cursors;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Relies on a positive fetch size only, which is enough for Oracle, H2, SQL Server and most other drivers.
+ */
+public class GenericCursorStrategy implements CursorStrategy {
+
+    @Nonnull
+    @Override
+    public AutoCloseable apply(@Nonnull final Connection conn, @Nonnull final PreparedStatement ps, final int fetchSize) throws SQLException {
+        ps.setFetchSize(fetchSize);
+        return () -> {
+        };
+    }
+
+}
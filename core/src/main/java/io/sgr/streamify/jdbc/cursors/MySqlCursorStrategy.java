@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.cursors;
+
+import static java.util.Objects.nonNull;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+
+/**
+ * MySQL and MariaDB drivers only use a server side cursor with a positive fetch size when the connection has been opened
+ * with {@code useCursorFetch=true}. Otherwise rows are streamed one by one by setting the fetch size to
+ * {@link Integer#MIN_VALUE}, in which case the configured fetch size is ignored.
+ */
+public class MySqlCursorStrategy implements CursorStrategy {
+
+    private static final String USE_CURSOR_FETCH = "usecursorfetch=true";
+
+    @Nonnull
+    @Override
+    public AutoCloseable apply(@Nonnull final Connection conn, @Nonnull final PreparedStatement ps, final int fetchSize) throws SQLException {
+        ps.setFetchSize(isCursorFetchEnabled(conn) ? fetchSize : Integer.MIN_VALUE);
+        return () -> {
+        };
+    }
+
+    private static boolean isCursorFetchEnabled(@Nonnull final Connection conn) throws SQLException {
+        final DatabaseMetaData metaData = conn.getMetaData();
+        final String url = nonNull(metaData) ? metaData.getURL() : null;
+        return nonNull(url) && url.toLowerCase(Locale.ROOT).contains(USE_CURSOR_FETCH);
+    }
+
+}
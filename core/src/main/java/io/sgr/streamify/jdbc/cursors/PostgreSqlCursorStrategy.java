@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.cursors;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The PostgreSQL driver ignores the fetch size and reads the whole result set unless auto-commit is off, so it's turned
+ * off for the life of the stream and turned back on afterwards.
+ */
+public class PostgreSqlCursorStrategy implements CursorStrategy {
+
+    @Nonnull
+    @Override
+    public AutoCloseable apply(@Nonnull final Connection conn, @Nonnull final PreparedStatement ps, final int fetchSize) throws SQLException {
+        ps.setFetchSize(fetchSize);
+        if (!conn.getAutoCommit()) {
+            return () -> {
+            };
+        }
+        conn.setAutoCommit(false);
+        return () -> {
+            // Nothing been modified, just end the transaction before handing the connection back.
+            try {
+                conn.rollback();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.rows;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Up to {@link #getCapacity()} rows held column by column in primitive arrays, refilled in place batch after batch.
+ * Like {@link RowBuffer}, don't hold on to it. Columns are numbered from 1 and rows from 0.
+ */
+public class ColumnBatch {
+
+    private final ColumnLayout layout;
+    private final int capacity;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final Object[][] objects;
+    private final boolean[][] nulls;
+
+    private int size;
+
+    public ColumnBatch(@Nonnull final ColumnLayout layout, final int capacity) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(layout), "Missing column layout!");
+        checkArgument(capacity > 0, "Capacity should be greater than 0!");
+        this.layout = layout;
+        this.capacity = capacity;
+        final int count = layout.getColumnCount();
+        this.longs = new long[count][];
+        this.doubles = new double[count][];
+        this.objects = new Object[count][];
+        this.nulls = new boolean[count][capacity];
+        for (int i = 0; i < count; i++) {
+            switch (layout.getColumnKind(i + 1)) {
+                case LONG:
+                case BOOLEAN:
+                    longs[i] = new long[capacity];
+                    break;
+                case DOUBLE:
+                    doubles[i] = new double[capacity];
+                    break;
+                default:
+                    objects[i] = new Object[capacity];
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Empties the batch, values of object columns are released.
+     */
+    public void clear() {
+        for (Object[] column : objects) {
+            if (nonNull(column)) {
+                Arrays.fill(column, 0, size, null);
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Appends the current row of the result set.
+     *
+     * @param rs
+     *         The result set positioned on a row.
+     * @return {@code true} if the batch is full after this row.
+     * @throws SQLException
+     *         If failed to read any column.
+     */
+    public boolean add(@Nonnull final ResultSet rs) throws SQLException {
+        checkArgument(size < capacity, "Batch is full!");
+        final int row = size;
+        for (int i = 0; i < nulls.length; i++) {
+            switch (layout.getColumnKind(i + 1)) {
+                case LONG:
+                    longs[i][row] = rs.getLong(i + 1);
+                    break;
+                case DOUBLE:
+                    doubles[i][row] = rs.getDouble(i + 1);
+                    break;
+                case BOOLEAN:
+                    longs[i][row] = rs.getBoolean(i + 1) ? 1 : 0;
+                    break;
+                default:
+                    objects[i][row] = rs.getObject(i + 1);
+                    break;
+            }
+            nulls[i][row] = rs.wasNull();
+        }
+        size++;
+        return size == capacity;
+    }
+
+    @Nonnull
+    public ColumnLayout getLayout() {
+        return layout;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(final int column, final int row) {
+        return nulls[column - 1][row];
+    }
+
+    /**
+     * @param column
+     *         A {@link ColumnKind#LONG} or {@link ColumnKind#BOOLEAN} column.
+     * @return Values of the column, only the first {@link #size()} are valid. The array is owned by this batch.
+     */
+    @Nonnull
+    public long[] getLongs(final int column) {
+        return checkColumn(longs[column - 1], column);
+    }
+
+    /**
+     * @param column
+     *         A {@link ColumnKind#DOUBLE} column.
+     * @return Values of the column, only the first {@link #size()} are valid. The array is owned by this batch.
+     */
+    @Nonnull
+    public double[] getDoubles(final int column) {
+        return checkColumn(doubles[column - 1], column);
+    }
+
+    /**
+     * @param column
+     *         A {@link ColumnKind#OBJECT} column.
+     * @return Values of the column, only the first {@link #size()} are valid. The array is owned by this batch.
+     */
+    @Nonnull
+    public Object[] getObjects(final int column) {
+        return checkColumn(objects[column - 1], column);
+    }
+
+    @Nullable
+    public Object getObject(final int column, final int row) {
+        if (isNull(column, row)) {
+            return null;
+        }
+        switch (layout.getColumnKind(column)) {
+            case LONG:
+                return longs[column - 1][row];
+            case DOUBLE:
+                return doubles[column - 1][row];
+            case BOOLEAN:
+                return longs[column - 1][row] != 0;
+            default:
+                return objects[column - 1][row];
+        }
+    }
+
+    private <A> A checkColumn(final A values, final int column) {
+        checkArgument(nonNull(values), "Column %s is held as %s!", column, layout.getColumnKind(column));
+        return values;
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.rows;
+
+import java.sql.Types;
+
+import javax.annotation.Nonnull;
+
+/**
+ * How a column is held by {@link RowBuffer} and {@link ColumnBatch}: integral and boolean columns in {@code long}s,
+ * floating point ones in {@code double}s, so reading them doesn't box anything, everything else as objects.
+ */
+public enum ColumnKind {
+
+    LONG, DOUBLE, BOOLEAN, OBJECT;
+
+    @Nonnull
+    public static ColumnKind of(final int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            default:
+                // Including DECIMAL and NUMERIC, which shouldn't lose precision.
+                return OBJECT;
+        }
+    }
+
+}
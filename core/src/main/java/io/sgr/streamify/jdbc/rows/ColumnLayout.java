@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.rows;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Names and kinds of the columns of a result set, shared by {@link RowBuffer} and {@link ColumnBatch}.
+ */
+public class ColumnLayout {
+
+    private final String[] names;
+    private final ColumnKind[] kinds;
+
+    private ColumnLayout(final String[] names, final ColumnKind[] kinds) {
+        this.names = names;
+        this.kinds = kinds;
+    }
+
+    @Nonnull
+    public static ColumnLayout of(@Nonnull final ResultSetMetaData metaData) throws SQLException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(metaData), "Missing result set metadata!");
+        final int count = metaData.getColumnCount();
+        final String[] names = new String[count];
+        final ColumnKind[] kinds = new ColumnKind[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = metaData.getColumnLabel(i + 1);
+            kinds[i] = ColumnKind.of(metaData.getColumnType(i + 1));
+        }
+        return new ColumnLayout(names, kinds);
+    }
+
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    /**
+     * @param column
+     *         The first column is 1, the second is 2, just like {@link ResultSet}.
+     * @return Label of the column.
+     */
+    public String getColumnName(final int column) {
+        return names[column - 1];
+    }
+
+    @Nonnull
+    public ColumnKind getColumnKind(final int column) {
+        return kinds[column - 1];
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.rows;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A single row which is refilled from the result set in place for every row, so streaming rows through it allocates
+ * nothing but what the driver allocates for non-primitive values. Don't hold on to it, its content changes as soon as
+ * the next row is read. Columns are numbered from 1, just like {@link ResultSet}.
+ */
+public class RowBuffer {
+
+    private final ColumnLayout layout;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+    private final boolean[] nulls;
+
+    public RowBuffer(@Nonnull final ColumnLayout layout) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(layout), "Missing column layout!");
+        this.layout = layout;
+        final int count = layout.getColumnCount();
+        this.longs = new long[count];
+        this.doubles = new double[count];
+        this.objects = new Object[count];
+        this.nulls = new boolean[count];
+    }
+
+    /**
+     * Reads the current row of the result set.
+     *
+     * @param rs
+     *         The result set positioned on a row.
+     * @throws SQLException
+     *         If failed to read any column.
+     */
+    public void fill(@Nonnull final ResultSet rs) throws SQLException {
+        for (int i = 0; i < nulls.length; i++) {
+            switch (layout.getColumnKind(i + 1)) {
+                case LONG:
+                    longs[i] = rs.getLong(i + 1);
+                    break;
+                case DOUBLE:
+                    doubles[i] = rs.getDouble(i + 1);
+                    break;
+                case BOOLEAN:
+                    longs[i] = rs.getBoolean(i + 1) ? 1 : 0;
+                    break;
+                default:
+                    objects[i] = rs.getObject(i + 1);
+                    break;
+            }
+            nulls[i] = rs.wasNull();
+        }
+    }
+
+    @Nonnull
+    public ColumnLayout getLayout() {
+        return layout;
+    }
+
+    public int getColumnCount() {
+        return nulls.length;
+    }
+
+    public boolean isNull(final int column) {
+        return nulls[column - 1];
+    }
+
+    /**
+     * @param column
+     *         A {@link ColumnKind#LONG}, {@link ColumnKind#BOOLEAN} or {@link ColumnKind#DOUBLE} column, the latter
+     *         truncated.
+     * @return Value of the column, 0 if null.
+     */
+    public long getLong(final int column) {
+        final ColumnKind kind = layout.getColumnKind(column);
+        checkArgument(kind != ColumnKind.OBJECT, "Column %s is held as %s!", column, kind);
+        return kind == ColumnKind.DOUBLE ? (long) doubles[column - 1] : longs[column - 1];
+    }
+
+    /**
+     * @param column
+     *         A {@link ColumnKind#DOUBLE} or {@link ColumnKind#LONG} column.
+     * @return Value of the column, 0 if null.
+     */
+    public double getDouble(final int column) {
+        final ColumnKind kind = layout.getColumnKind(column);
+        checkArgument(kind == ColumnKind.DOUBLE || kind == ColumnKind.LONG, "Column %s is held as %s!", column, kind);
+        return kind == ColumnKind.DOUBLE ? doubles[column - 1] : longs[column - 1];
+    }
+
+    /**
+     * @param column
+     *         A {@link ColumnKind#BOOLEAN} or {@link ColumnKind#LONG} column, the latter {@code true} unless 0.
+     * @return Value of the column, {@code false} if null.
+     */
+    public boolean getBoolean(final int column) {
+        final ColumnKind kind = layout.getColumnKind(column);
+        checkArgument(kind == ColumnKind.BOOLEAN || kind == ColumnKind.LONG, "Column %s is held as %s!", column, kind);
+        return longs[column - 1] != 0;
+    }
+
+    /**
+     * @param column
+     *         The column.
+     * @return Value of the column, boxed if the column is held as a primitive.
+     */
+    @Nullable
+    public Object getObject(final int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        switch (layout.getColumnKind(column)) {
+            case LONG:
+                return longs[column - 1];
+            case DOUBLE:
+                return doubles[column - 1];
+            case BOOLEAN:
+                return longs[column - 1] != 0;
+            default:
+                return objects[column - 1];
+        }
+    }
+
+}
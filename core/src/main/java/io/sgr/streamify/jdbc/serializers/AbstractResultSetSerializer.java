@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.serializers;
+
+import static java.util.Objects.isNull;
+
+import io.sgr.streamify.jdbc.rows.ColumnKind;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Base64;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Picks a {@link ColumnWriter} for every column up front from the result set metadata, then encodes row after row into
+ * a single reused {@link ByteBuilder}, handing it to the output stream whenever it grows beyond the flush threshold.
+ */
+abstract class AbstractResultSetSerializer implements ResultSetSerializer {
+
+    static final int DEFAULT_FLUSH_THRESHOLD = 64 * 1024;
+
+    @Override
+    public long serialize(@Nonnull final ResultSet rs, @Nonnull final OutputStream out) throws SQLException, IOException {
+        final ResultSetMetaData metaData = rs.getMetaData();
+        final int count = metaData.getColumnCount();
+        final ColumnWriter[] writers = new ColumnWriter[count];
+        for (int i = 0; i < count; i++) {
+            writers[i] = createColumnWriter(metaData.getColumnType(i + 1));
+        }
+        final String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = metaData.getColumnLabel(i + 1);
+        }
+        final ByteBuilder buffer = new ByteBuilder(DEFAULT_FLUSH_THRESHOLD + DEFAULT_FLUSH_THRESHOLD / 4);
+        final RowEncoder encoder = newRowEncoder(names, buffer);
+        encoder.writeHeader();
+        long rows = 0;
+        while (rs.next()) {
+            encoder.writeRow(rs, writers);
+            rows++;
+            if (buffer.size() >= DEFAULT_FLUSH_THRESHOLD) {
+                buffer.writeTo(out);
+            }
+        }
+        buffer.writeTo(out);
+        out.flush();
+        return rows;
+    }
+
+    @Nonnull
+    abstract RowEncoder newRowEncoder(@Nonnull String[] names, @Nonnull ByteBuilder buffer);
+
+    @Nonnull
+    ColumnWriter createColumnWriter(final int sqlType) {
+        switch (sqlType) {
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return (rs, column, out) -> {
+                    final BigDecimal value = rs.getBigDecimal(column);
+                    if (isNull(value)) {
+                        writeNull(out);
+                    } else {
+                        out.writeAscii(value.toPlainString());
+                    }
+                };
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return (rs, column, out) -> {
+                    final byte[] value = rs.getBytes(column);
+                    if (isNull(value)) {
+                        writeNull(out);
+                    } else {
+                        writeString(out, Base64.getEncoder().encodeToString(value));
+                    }
+                };
+            default:
+                break;
+        }
+        switch (ColumnKind.of(sqlType)) {
+            case LONG:
+                return (rs, column, out) -> {
+                    final long value = rs.getLong(column);
+                    if (rs.wasNull()) {
+                        writeNull(out);
+                    } else {
+                        out.writeLong(value);
+                    }
+                };
+            case DOUBLE:
+                return (rs, column, out) -> {
+                    final double value = rs.getDouble(column);
+                    if (rs.wasNull()) {
+                        writeNull(out);
+                    } else {
+                        writeDouble(out, value);
+                    }
+                };
+            case BOOLEAN:
+                return (rs, column, out) -> {
+                    final boolean value = rs.getBoolean(column);
+                    if (rs.wasNull()) {
+                        writeNull(out);
+                    } else {
+                        out.writeAscii(value ? "true" : "false");
+                    }
+                };
+            default:
+                return (rs, column, out) -> {
+                    final String value = rs.getString(column);
+                    if (isNull(value)) {
+                        writeNull(out);
+                    } else {
+                        writeString(out, value);
+                    }
+                };
+        }
+    }
+
+    abstract void writeNull(@Nonnull ByteBuilder out);
+
+    abstract void writeString(@Nonnull ByteBuilder out, @Nonnull String value);
+
+    void writeDouble(@Nonnull final ByteBuilder out, final double value) {
+        out.writeAscii(Double.toString(value));
+    }
+
+    interface ColumnWriter {
+
+        void write(@Nonnull ResultSet rs, int column, @Nonnull ByteBuilder out) throws SQLException;
+
+    }
+
+    interface RowEncoder {
+
+        void writeHeader();
+
+        void writeRow(@Nonnull ResultSet rs, @Nonnull ColumnWriter[] writers) throws SQLException;
+
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.serializers;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A growable byte array which rows are encoded into, reused for the whole result set.
+ */
+final class ByteBuilder {
+
+    private static final byte[] MIN_LONG = "-9223372036854775808".getBytes(US_ASCII);
+    private static final byte REPLACEMENT = '?';
+
+    private byte[] bytes;
+    private int size;
+
+    ByteBuilder(final int capacity) {
+        this.bytes = new byte[capacity];
+    }
+
+    void write(final int b) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) b;
+    }
+
+    void write(@Nonnull final byte[] b) {
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, bytes, size, b.length);
+        size += b.length;
+    }
+
+    /**
+     * Writes the decimal digits of the value without going through a {@link String}.
+     */
+    void writeLong(final long value) {
+        if (value == Long.MIN_VALUE) {
+            write(MIN_LONG);
+            return;
+        }
+        long remaining = Math.abs(value);
+        int digits = 1;
+        for (long bound = 10; digits < 19 && remaining >= bound; bound *= 10) {
+            digits++;
+        }
+        final int length = value < 0 ? digits + 1 : digits;
+        ensureCapacity(length);
+        int position = size + length;
+        do {
+            bytes[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        if (value < 0) {
+            bytes[size] = '-';
+        }
+        size += length;
+    }
+
+    /**
+     * Writes characters which are known to be ASCII, e.g. formatted numbers.
+     */
+    void writeAscii(@Nonnull final CharSequence s) {
+        final int length = s.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            bytes[size++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     * Encodes characters from {@code from} (inclusive) to {@code to} (exclusive) as UTF-8, unpaired surrogates become
+     * {@code '?'} just like {@link String#getBytes(java.nio.charset.Charset)} does.
+     */
+    void writeUtf8(@Nonnull final CharSequence s, final int from, final int to) {
+        // Worst case is 3 bytes per char, a surrogate pair takes 4 bytes for 2 chars.
+        ensureCapacity((to - from) * 3);
+        for (int i = from; i < to; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes[size++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[size++] = (byte) (0xC0 | c >> 6);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                bytes[size++] = (byte) (0xE0 | c >> 12);
+                bytes[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(s.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                bytes[size++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[size++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                bytes[size++] = REPLACEMENT;
+            }
+        }
+    }
+
+    @Nonnull
+    byte[] toByteArray() {
+        final byte[] copy = Arrays.copyOf(bytes, size);
+        size = 0;
+        return copy;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void writeTo(@Nonnull final OutputStream out) throws IOException {
+        if (size > 0) {
+            out.write(bytes, 0, size);
+            size = 0;
+        }
+    }
+
+    private void ensureCapacity(final int length) {
+        if (bytes.length - size < length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+        }
+    }
+
+}
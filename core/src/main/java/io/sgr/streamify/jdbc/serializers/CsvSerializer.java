@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.serializers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Writes rows as RFC 4180 CSV: records end with CRLF, and fields containing the delimiter, a double quote, CR or LF are
+ * enclosed in double quotes with double quotes doubled. Column labels make up the header record unless it's disabled.
+ * Nulls are written as empty fields and binary columns as Base64.
+ */
+public class CsvSerializer extends AbstractResultSetSerializer {
+
+    public static final char DEFAULT_DELIMITER = ',';
+
+    private char delimiter = DEFAULT_DELIMITER;
+    private boolean header = true;
+
+    @Nonnull
+    @Override
+    RowEncoder newRowEncoder(@Nonnull final String[] names, @Nonnull final ByteBuilder buffer) {
+        final char delimiter = this.delimiter;
+        final boolean header = this.header;
+        return new RowEncoder() {
+            @Override
+            public void writeHeader() {
+                if (!header) {
+                    return;
+                }
+                for (int i = 0; i < names.length; i++) {
+                    if (i > 0) {
+                        buffer.write(delimiter);
+                    }
+                    writeString(buffer, names[i], delimiter);
+                }
+                writeLineSeparator(buffer);
+            }
+
+            @Override
+            public void writeRow(@Nonnull final ResultSet rs, @Nonnull final ColumnWriter[] writers) throws SQLException {
+                for (int i = 0; i < writers.length; i++) {
+                    if (i > 0) {
+                        buffer.write(delimiter);
+                    }
+                    writers[i].write(rs, i + 1, buffer);
+                }
+                writeLineSeparator(buffer);
+            }
+        };
+    }
+
+    @Override
+    void writeNull(@Nonnull final ByteBuilder out) {
+        // Empty field.
+    }
+
+    @Override
+    void writeString(@Nonnull final ByteBuilder out, @Nonnull final String value) {
+        writeString(out, value, delimiter);
+    }
+
+    private static void writeString(@Nonnull final ByteBuilder out, @Nonnull final String value, final char delimiter) {
+        final int length = value.length();
+        boolean quote = false;
+        for (int i = 0; i < length && !quote; i++) {
+            final char c = value.charAt(i);
+            quote = c == delimiter || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            out.writeUtf8(value, 0, length);
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) == '"') {
+                // Write up to and including the quote, then start the next run with the same quote to double it.
+                out.writeUtf8(value, start, i + 1);
+                start = i;
+            }
+        }
+        out.writeUtf8(value, start, length);
+        out.write('"');
+    }
+
+    private static void writeLineSeparator(@Nonnull final ByteBuilder out) {
+        out.write('\r');
+        out.write('\n');
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * @param delimiter
+     *         An ASCII character other than a double quote, CR or LF.
+     * @return This serializer.
+     */
+    public CsvSerializer setDelimiter(final char delimiter) {
+        checkArgument(delimiter < 0x80 && delimiter != '"' && delimiter != '\r' && delimiter != '\n', "Invalid delimiter '%s'!", delimiter);
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    public boolean isHeader() {
+        return header;
+    }
+
+    public CsvSerializer setHeader(final boolean header) {
+        this.header = header;
+        return this;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.serializers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Writes every row as a JSON object on a line of its own, keyed by column labels. Integral, floating point and decimal
+ * columns become JSON numbers, booleans become JSON booleans, binary columns become Base64 strings, and everything else
+ * is written as the string the driver returns. Non-finite floating point values are written as strings.
+ */
+public class JsonLinesSerializer extends AbstractResultSetSerializer {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(UTF_8);
+    private static final byte[] NULL = "null".getBytes(UTF_8);
+
+    @Nonnull
+    @Override
+    RowEncoder newRowEncoder(@Nonnull final String[] names, @Nonnull final ByteBuilder buffer) {
+        // Keys never change, so encode them once, along with the punctuation in front of them.
+        final byte[][] prefixes = new byte[names.length][];
+        final ByteBuilder key = new ByteBuilder(64);
+        for (int i = 0; i < names.length; i++) {
+            key.write(i == 0 ? '{' : ',');
+            writeString(key, names[i]);
+            key.write(':');
+            prefixes[i] = key.toByteArray();
+        }
+        return new RowEncoder() {
+            @Override
+            public void writeHeader() {
+                // No header.
+            }
+
+            @Override
+            public void writeRow(@Nonnull final ResultSet rs, @Nonnull final ColumnWriter[] writers) throws SQLException {
+                if (writers.length == 0) {
+                    buffer.write('{');
+                }
+                for (int i = 0; i < writers.length; i++) {
+                    buffer.write(prefixes[i]);
+                    writers[i].write(rs, i + 1, buffer);
+                }
+                buffer.write('}');
+                buffer.write('\n');
+            }
+        };
+    }
+
+    @Override
+    void writeNull(@Nonnull final ByteBuilder out) {
+        out.write(NULL);
+    }
+
+    @Override
+    void writeString(@Nonnull final ByteBuilder out, @Nonnull final String value) {
+        out.write('"');
+        int start = 0;
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.writeUtf8(value, start, i);
+            start = i + 1;
+            out.write('\\');
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.write(c);
+                    break;
+                case '\n':
+                    out.write('n');
+                    break;
+                case '\r':
+                    out.write('r');
+                    break;
+                case '\t':
+                    out.write('t');
+                    break;
+                default:
+                    out.write('u');
+                    out.write(HEX[c >> 12 & 0xF]);
+                    out.write(HEX[c >> 8 & 0xF]);
+                    out.write(HEX[c >> 4 & 0xF]);
+                    out.write(HEX[c & 0xF]);
+                    break;
+            }
+        }
+        out.writeUtf8(value, start, length);
+        out.write('"');
+    }
+
+    @Override
+    void writeDouble(@Nonnull final ByteBuilder out, final double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeString(out, Double.toString(value));
+        } else {
+            super.writeDouble(out, value);
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.serializers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Encodes rows of a result set straight into bytes.
+ */
+public interface ResultSetSerializer {
+
+    /**
+     * Writes all the remaining rows of the result set. Bytes are handed to the output stream in large chunks, so it
+     * doesn't need to be buffered.
+     *
+     * @param rs
+     *         The result set, not yet positioned on any row.
+     * @param out
+     *         Where to write to, which is flushed but not closed.
+     * @return Number of rows written.
+     * @throws SQLException
+     *         If failed to read the result set.
+     * @throws IOException
+     *         If failed to write.
+     */
+    long serialize(@Nonnull ResultSet rs, @Nonnull OutputStream out) throws SQLException, IOException;
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.buffers.ChunkConsumer;
+import io.sgr.streamify.buffers.ChunkSource;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Measures the consumer side of a pipe: time from {@code openedAtNanos} until the first chunk was consumed, reported
+ * as time to first byte, and bytes consumed, reported as the given stage. Like the source it wraps, it should only be
+ * used by one thread at a time.
+ */
+public class MeteredChunkSource implements ChunkSource {
+
+    private final ChunkSource delegate;
+    private final StreamingMetrics metrics;
+    private final String stage;
+    private final long openedAtNanos;
+
+    private boolean started;
+    private long unreported;
+
+    public MeteredChunkSource(
+            @Nonnull final ChunkSource delegate, @Nonnull final StreamingMetrics metrics, @Nonnull final String stage, final long openedAtNanos) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(delegate), "Missing chunk source to measure!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(metrics), "Missing metrics!");
+        checkArgument(!isNullOrEmpty(stage), "Missing stage name!");
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.stage = stage;
+        this.openedAtNanos = openedAtNanos;
+    }
+
+    @Override
+    public boolean readChunk(@Nonnull final ChunkConsumer consumer) throws IOException {
+        return delegate.readChunk((chunk, offset, length) -> {
+            consumer.accept(chunk, offset, length);
+            if (!started) {
+                started = true;
+                metrics.recordTimeToFirstByte(System.nanoTime() - openedAtNanos);
+            }
+            unreported += length;
+            if (unreported >= MeteredOutputStream.REPORT_THRESHOLD) {
+                report();
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            report();
+        }
+    }
+
+    private void report() {
+        if (unreported > 0) {
+            metrics.recordBytes(stage, unreported);
+            unreported = 0;
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.Abortable;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Counts bytes written through it and reports them to {@link StreamingMetrics#recordBytes(String, long)} in batches,
+ * so the metrics aren't touched on every write.
+ */
+public class MeteredOutputStream extends FilterOutputStream implements Abortable {
+
+    static final int REPORT_THRESHOLD = 1024 * 1024;
+
+    private final StreamingMetrics metrics;
+    private final String stage;
+
+    private long count;
+    private long unreported;
+    private boolean closed;
+
+    public MeteredOutputStream(@Nonnull final OutputStream out, @Nonnull final StreamingMetrics metrics, @Nonnull final String stage) {
+        super(out);
+        //noinspection ConstantConditions
+        checkArgument(nonNull(out), "Missing output stream!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(metrics), "Missing metrics!");
+        checkArgument(!isNullOrEmpty(stage), "Missing stage name!");
+        this.metrics = metrics;
+        this.stage = stage;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        out.write(b);
+        counted(1);
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        checkPositionIndexes(off, off + len, b.length);
+        out.write(b, off, len);
+        counted(len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+        } finally {
+            report();
+        }
+    }
+
+    /**
+     * Aborts the underlying stream if it's {@link Abortable}, otherwise leaves it open.
+     */
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        report();
+        if (out instanceof Abortable) {
+            ((Abortable) out).abort();
+        }
+    }
+
+    /**
+     * @return Total bytes written through this stream.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private void counted(final int bytes) {
+        count += bytes;
+        unreported += bytes;
+        if (unreported >= REPORT_THRESHOLD) {
+            report();
+        }
+    }
+
+    private void report() {
+        if (unreported > 0) {
+            metrics.recordBytes(stage, unreported);
+            unreported = 0;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.OutputStreamWrapper;
+import io.sgr.streamify.codecs.CompressionCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Measures bytes going into and coming out of another wrapper, reported as {@code <name>.in} and {@code <name>.out}
+ * stages, along with the compression ratio once the stream is closed.
+ */
+public class MeteredOutputStreamWrapper implements OutputStreamWrapper {
+
+    private final OutputStreamWrapper delegate;
+    private final StreamingMetrics metrics;
+    private final String name;
+
+    public MeteredOutputStreamWrapper(@Nonnull final OutputStreamWrapper delegate, @Nonnull final StreamingMetrics metrics, @Nonnull final String name) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(delegate), "Missing wrapper to measure!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(metrics), "Missing metrics!");
+        checkArgument(!isNullOrEmpty(name), "Missing wrapper name!");
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.name = name;
+    }
+
+    /**
+     * @param wrapper
+     *         The wrapper to measure, named after the codec if it's a {@link CompressionCodec}.
+     * @param metrics
+     *         Where to report to.
+     * @return The wrapper as is if metrics are {@link StreamingMetrics#NOOP}, otherwise a measuring one.
+     */
+    @Nonnull
+    public static OutputStreamWrapper of(@Nonnull final OutputStreamWrapper wrapper, @Nonnull final StreamingMetrics metrics) {
+        if (metrics == StreamingMetrics.NOOP) {
+            return wrapper;
+        }
+        final String name = wrapper instanceof CompressionCodec ? ((CompressionCodec) wrapper).getName() : wrapper.getClass().getSimpleName();
+        return new MeteredOutputStreamWrapper(wrapper, metrics, name);
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream wrap(@Nonnull final OutputStream outputStream) throws IOException {
+        final MeteredOutputStream compressed = new MeteredOutputStream(outputStream, metrics, name + ".out");
+        return new MeteredOutputStream(delegate.wrap(compressed), metrics, name + ".in") {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    super.close();
+                } finally {
+                    metrics.recordCompression(name, getCount(), compressed.getCount());
+                }
+            }
+        };
+    }
+
+}
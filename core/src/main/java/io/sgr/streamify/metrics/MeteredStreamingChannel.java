@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Measures bytes written to any channel as the {@code channel} stage, for channels which don't report metrics of
+ * their own.
+ */
+public class MeteredStreamingChannel implements StreamingChannel {
+
+    public static final String STAGE = "channel";
+
+    private final StreamingChannel delegate;
+    private final StreamingMetrics metrics;
+
+    public MeteredStreamingChannel(@Nonnull final StreamingChannel delegate, @Nonnull final StreamingMetrics metrics) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(delegate), "Missing channel to measure!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(metrics), "Missing metrics!");
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream open(@Nonnull final StreamingRequest request, @Nonnull final String identifier) throws IOException {
+        return new MeteredOutputStream(delegate.open(request, identifier), metrics, STAGE);
+    }
+
+}
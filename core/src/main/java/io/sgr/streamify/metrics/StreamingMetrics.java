@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.metrics;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives measurements from channels, wrappers and JDBC streaming, so the slowest stage of an export can be spotted.
+ * Every method does nothing by default, implement the ones of interest. Implementations must be thread-safe and
+ * cheap, they are called from producer, compression and network threads alike.
+ */
+public interface StreamingMetrics {
+
+    StreamingMetrics NOOP = new StreamingMetrics() {
+    };
+
+    /**
+     * @param stage
+     *         Where the bytes went through, e.g. {@code gzip.in}, {@code gzip.out} or {@code upload}.
+     * @param bytes
+     *         Number of bytes since the last call for the same stage.
+     */
+    default void recordBytes(@Nonnull String stage, long bytes) {
+    }
+
+    /**
+     * @param rows
+     *         Number of rows read from a result set since the last call.
+     */
+    default void recordRows(long rows) {
+    }
+
+    /**
+     * @param nanos
+     *         Time the producer of a stream spent waiting for the consumer, e.g. for an upload to drain the buffer.
+     */
+    default void recordProducerBlocked(long nanos) {
+    }
+
+    /**
+     * @param nanos
+     *         Time from opening a stream until its first byte was sent.
+     */
+    default void recordTimeToFirstByte(long nanos) {
+    }
+
+    /**
+     * @param method
+     *         The HTTP method, or whatever the request is called by the channel.
+     * @param nanos
+     *         Time from starting the request until its response was received.
+     * @param success
+     *         Whether the request succeeded.
+     */
+    default void recordRequest(@Nonnull String method, long nanos, boolean success) {
+    }
+
+    /**
+     * @param codec
+     *         Name of the codec, see {@link io.sgr.streamify.codecs.CompressionCodec#getName()}.
+     * @param bytesIn
+     *         Bytes written into the codec.
+     * @param bytesOut
+     *         Bytes the codec produced for them.
+     */
+    default void recordCompression(@Nonnull String codec, long bytesIn, long bytesOut) {
+    }
+
+    /**
+     * @param codec
+     *         Name of the codec which picked the level, see {@link io.sgr.streamify.codecs.CompressionCodec#getName()}.
+     * @param level
+     *         Compression level picked for a block by an adaptive codec, {@code 0} meaning stored uncompressed.
+     * @param bytesIn
+     *         Bytes of the block.
+     */
+    default void recordCompressionLevel(@Nonnull String codec, int level, long bytesIn) {
+    }
+
+    /**
+     * @param nanos
+     *         Time a stream waited to be admitted by a scheduler, see
+     *         {@link io.sgr.streamify.channels.SchedulingStreamingChannel}.
+     */
+    default void recordAdmissionWait(long nanos) {
+    }
+
+    /**
+     * @param depth
+     *         Number of streams waiting to be admitted by a scheduler, reported whenever it changes.
+     */
+    default void recordQueueDepth(int depth) {
+    }
+
+}
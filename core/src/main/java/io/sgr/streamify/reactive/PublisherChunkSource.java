@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.reactive;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.buffers.ChunkConsumer;
+import io.sgr.streamify.buffers.ChunkSource;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Bridges a publisher of buffers to a consumer which reads chunk by chunk, e.g. an HTTP request body. At most
+ * {@code prefetch} buffers are requested ahead of the reader, and more are only requested as the reader consumes them,
+ * in batches of half the prefetch, so a slow reader slows the publisher down instead of buffering without bound.
+ */
+public class PublisherChunkSource implements ChunkSource, Subscriber<ByteBuffer> {
+
+    public static final int DEFAULT_PREFETCH = 16;
+
+    private static final Object COMPLETE = new Object();
+    private static final Subscription CANCELLED = new Subscription() {
+        @Override
+        public void request(final long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final int prefetch;
+    private final int replenishThreshold;
+    private final BlockingQueue<Object> queue;
+    private final AtomicReference<Subscription> subscription = new AtomicReference<>();
+
+    private byte[] scratch;
+    private int consumed;
+    private boolean done;
+
+    public PublisherChunkSource() {
+        this(DEFAULT_PREFETCH);
+    }
+
+    public PublisherChunkSource(final int prefetch) {
+        checkArgument(prefetch > 0, "Prefetch should be greater than 0!");
+        this.prefetch = prefetch;
+        this.replenishThreshold = Math.max(1, prefetch / 2);
+        // Room for the terminal signal on top of the buffers requested.
+        this.queue = new ArrayBlockingQueue<>(prefetch + 1);
+    }
+
+    @Override
+    public void onSubscribe(@Nonnull final Subscription s) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(s), "Missing subscription!");
+        if (!subscription.compareAndSet(null, s)) {
+            // Either subscribed twice or already closed.
+            s.cancel();
+            return;
+        }
+        s.request(prefetch);
+    }
+
+    @Override
+    public void onNext(@Nonnull final ByteBuffer buffer) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(buffer), "Missing buffer!");
+        if (!queue.offer(buffer)) {
+            onError(new IllegalStateException("Publisher sent more buffers than requested!"));
+        }
+    }
+
+    @Override
+    public void onError(@Nonnull final Throwable t) {
+        final Subscription current = subscription.getAndSet(CANCELLED);
+        if (nonNull(current) && current != CANCELLED) {
+            current.cancel();
+        }
+        queue.clear();
+        queue.offer(new Failure(t));
+    }
+
+    @Override
+    public void onComplete() {
+        queue.offer(COMPLETE);
+    }
+
+    /**
+     * Waits for the next buffer from the publisher. Buffers backed by an array are handed over without being copied.
+     */
+    @Override
+    public boolean readChunk(@Nonnull final ChunkConsumer consumer) throws IOException {
+        if (done) {
+            return false;
+        }
+        final Object next;
+        try {
+            next = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for content!");
+        }
+        if (next == COMPLETE) {
+            done = true;
+            return false;
+        }
+        if (next instanceof Failure) {
+            done = true;
+            throw new IOException("Failed to produce content!", ((Failure) next).cause);
+        }
+        final ByteBuffer buffer = (ByteBuffer) next;
+        final int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            consumer.accept(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        } else {
+            if (isNull(scratch) || scratch.length < length) {
+                scratch = new byte[length];
+            }
+            buffer.duplicate().get(scratch, 0, length);
+            consumer.accept(scratch, 0, length);
+        }
+        if (++consumed >= replenishThreshold) {
+            subscription.get().request(consumed);
+            consumed = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the subscription, the publisher won't be asked for more, and a reader waiting for content fails. Safe to
+     * call from any thread.
+     */
+    @Override
+    public void close() {
+        final Subscription current = subscription.getAndSet(CANCELLED);
+        if (nonNull(current)) {
+            current.cancel();
+        }
+        // Buffers already queued are dropped, so the failure always finds room and wakes the reader up.
+        queue.clear();
+        queue.offer(new Failure(new IOException("Source closed!")));
+    }
+
+    private static final class Failure {
+
+        private final Throwable cause;
+
+        private Failure(final Throwable cause) {
+            this.cause = cause;
+        }
+
+    }
+
+}
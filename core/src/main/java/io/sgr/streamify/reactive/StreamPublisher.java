@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.reactive;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Publishes elements of a stream, e.g. one from {@link io.sgr.streamify.jdbc.StreamingHelper}, encoded as buffers.
+ * <p>
+ * The stream is only pulled on the given executor while there is outstanding demand, so a thread is only taken when the
+ * subscriber is ready for more, and given back as soon as the demand has been met. The stream is closed once drained,
+ * failed or cancelled. Only a single subscriber is allowed.
+ *
+ * @param <T>
+ *         Type of stream elements.
+ */
+public class StreamPublisher<T> implements Publisher<ByteBuffer> {
+
+    private final Stream<T> stream;
+    private final Function<? super T, ByteBuffer> encoder;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public StreamPublisher(@Nonnull final Stream<T> stream, @Nonnull final Function<? super T, ByteBuffer> encoder, @Nonnull final Executor executor) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(stream), "Missing stream to publish!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(encoder), "Missing encoder!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(executor), "Missing executor!");
+        this.stream = stream;
+        this.encoder = encoder;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(@Nonnull final Subscriber<? super ByteBuffer> subscriber) {
+        requireNonNull(subscriber, "Missing subscriber!");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(final long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Only a single subscriber is allowed!"));
+            return;
+        }
+        subscriber.onSubscribe(new StreamSubscription(subscriber));
+    }
+
+    private final class StreamSubscription implements Subscription, Runnable {
+
+        private final Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private Iterator<T> iterator;
+        private boolean terminated;
+
+        private StreamSubscription(final Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Demand should be greater than 0, got " + n + "!");
+            } else {
+                // Capped at Long.MAX_VALUE, which means unbounded.
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            // Only one drain at a time, whoever bumps the counter from zero starts it, the others just leave a note.
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException e) {
+                    terminated = true;
+                    fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (terminated) {
+                return;
+            }
+            if (cancelled) {
+                terminated = true;
+                // Nobody is listening any more, so there is no one to tell if closing failed.
+                closeStream();
+                return;
+            }
+            if (nonNull(invalidRequest)) {
+                terminated = true;
+                fail(invalidRequest);
+                return;
+            }
+            try {
+                if (isNull(iterator)) {
+                    iterator = stream.iterator();
+                }
+                long emitted = 0;
+                final long requested = demand.get();
+                while (emitted < requested && !cancelled) {
+                    if (!iterator.hasNext()) {
+                        terminated = true;
+                        final RuntimeException e = closeStream();
+                        if (isNull(e)) {
+                            subscriber.onComplete();
+                        } else {
+                            subscriber.onError(e);
+                        }
+                        return;
+                    }
+                    subscriber.onNext(encoder.apply(iterator.next()));
+                    emitted++;
+                }
+                if (requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+            } catch (RuntimeException e) {
+                terminated = true;
+                fail(e);
+            }
+        }
+
+        private void fail(final Throwable e) {
+            final RuntimeException suppressed = closeStream();
+            if (nonNull(suppressed)) {
+                e.addSuppressed(suppressed);
+            }
+            subscriber.onError(e);
+        }
+
+        private RuntimeException closeStream() {
+            try {
+                stream.close();
+                return null;
+            } catch (RuntimeException e) {
+                return e;
+            }
+        }
+
+    }
+
+}
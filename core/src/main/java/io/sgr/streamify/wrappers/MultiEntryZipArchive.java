@@ -0,0 +1,484 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.wrappers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.buffers.ChunkedPipe;
+import io.sgr.streamify.codecs.DeflaterPool;
+
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Writes a ZIP archive of several entries in a single pass, e.g. to bundle the results of several queries into one
+ * upload.
+ * <p>
+ * Entries can be opened one after another, or at once and written concurrently from different threads. Each entry is
+ * compressed on the thread writing it into a bounded buffer of its own, and entries are copied into the archive on a
+ * separate thread in the order they have been opened, so an entry can only get {@code entryBufferSize} compressed
+ * bytes ahead of the entries opened before it, and writing it blocks beyond that until they have been closed.
+ * <p>
+ * Since sizes and checksums are only known once an entry is done, they follow the entry in a data descriptor. ZIP64
+ * records are written where sizes, offsets or the number of entries don't fit the classic format.
+ */
+public class MultiEntryZipArchive implements Closeable {
+
+    public static final int DEFAULT_ENTRY_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("streamify-zip-%d").build();
+    private static final Object END = new Object();
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+
+    private final CountingOutputStream out;
+    private final DeflaterPool deflaterPool;
+    private final int entryBufferSize;
+    private final BlockingQueue<Object> pending = new LinkedBlockingQueue<>();
+    private final Set<String> names = new HashSet<>();
+    private final Set<Entry> open = new HashSet<>();
+    private final List<CentralRecord> written = new ArrayList<>();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private boolean closed;
+
+    public MultiEntryZipArchive(@Nonnull final OutputStream out) {
+        this(out, null, DeflaterPool.shared(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, true), DEFAULT_ENTRY_BUFFER_SIZE);
+    }
+
+    /**
+     * @param out
+     *         Where the archive goes, closed along with the archive.
+     * @param executor
+     *         Where entries are copied into the archive, a dedicated daemon thread if {@code null}. The task occupies
+     *         its thread until the archive is closed.
+     * @param deflaterPool
+     *         Where to borrow deflaters from, must produce raw deflate data.
+     * @param entryBufferSize
+     *         Most compressed bytes buffered per entry while waiting to be copied into the archive.
+     */
+    public MultiEntryZipArchive(
+            @Nonnull final OutputStream out, final Executor executor, @Nonnull final DeflaterPool deflaterPool, final int entryBufferSize) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(out), "Missing output stream!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(deflaterPool), "Missing deflater pool!");
+        checkArgument(entryBufferSize > 0, "Entry buffer size should be greater than 0!");
+        this.out = new CountingOutputStream(out);
+        this.deflaterPool = deflaterPool;
+        this.entryBufferSize = entryBufferSize;
+        final Runnable task = this::writeArchive;
+        if (isNull(executor)) {
+            THREAD_FACTORY.newThread(task).start();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Opens a new entry, which is safe to call from any thread. The returned stream should only be written by one
+     * thread at a time, and the entry is complete once it has been closed.
+     *
+     * @param name
+     *         Name of the entry, unique within the archive.
+     * @return Stream to write the content of the entry to.
+     * @throws IOException
+     *         If the archive has been closed or failed.
+     */
+    @Nonnull
+    public synchronized OutputStream openEntry(@Nonnull final String name) throws IOException {
+        checkArgument(!isNullOrEmpty(name), "Missing entry name!");
+        if (closed) {
+            throw new IOException("Archive closed!");
+        }
+        if (done.isDone()) {
+            throw new IOException("Archive failed!", failureOf(done));
+        }
+        checkArgument(names.add(name), "Duplicate entry '%s'!", name);
+        final Entry entry = new Entry(name, new ChunkedPipe(entryBufferSize, Math.min(ChunkedPipe.DEFAULT_CHUNK_SIZE, entryBufferSize)));
+        open.add(entry);
+        pending.add(entry);
+        return new EntryOutputStream(entry, deflaterPool.borrow());
+    }
+
+    /**
+     * Waits for every entry to be copied into the archive, then writes the central directory and closes the underlying
+     * stream. All entries should have been closed before.
+     */
+    @Override
+    public void close() throws IOException {
+        final List<Entry> unfinished = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            unfinished.addAll(open);
+        }
+        try {
+            if (!unfinished.isEmpty()) {
+                // Otherwise waiting for them would never end.
+                unfinished.forEach(entry -> entry.pipe.source().close());
+                throw new IOException(String.format("Entry '%s' has not been closed!", unfinished.get(0).name));
+            }
+            pending.add(END);
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while finishing archive!");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to write archive!", e.getCause());
+        } finally {
+            pending.add(END);
+            out.close();
+        }
+    }
+
+    private void writeArchive() {
+        try {
+            while (true) {
+                final Object next = pending.take();
+                if (next == END) {
+                    break;
+                }
+                writeEntry((Entry) next);
+            }
+            writeCentralDirectory();
+            out.flush();
+            done.complete(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void fail(final Throwable e) {
+        done.completeExceptionally(e);
+        // Release writers blocked on entries which are never going to be copied.
+        final List<Object> remaining = new ArrayList<>();
+        pending.drainTo(remaining);
+        remaining.stream().filter(Entry.class::isInstance).map(Entry.class::cast).forEach(entry -> entry.pipe.source().close());
+    }
+
+    private synchronized void closed(final Entry entry) {
+        open.remove(entry);
+    }
+
+    private void writeEntry(final Entry entry) throws IOException {
+        final long offset = out.getCount();
+        final byte[] name = entry.name.getBytes(UTF_8);
+        final ByteBuffer header = newBuffer(30 + name.length);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) VERSION_DEFAULT);
+        header.putShort((short) (FLAG_DATA_DESCRIPTOR | FLAG_UTF8));
+        header.putShort((short) Deflater.DEFLATED);
+        header.putInt(entry.dosTime);
+        // Checksum and sizes follow the content in a data descriptor.
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(0);
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        header.put(name);
+        out.write(header.array());
+        try {
+            //noinspection StatementWithEmptyBody
+            while (entry.pipe.source().readChunk(out::write)) {
+                // Keep copying
+            }
+        } finally {
+            entry.pipe.source().close();
+        }
+        if (!entry.completed) {
+            throw new IOException(String.format("Entry '%s' failed!", entry.name));
+        }
+        final boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+        final ByteBuffer descriptor = newBuffer(zip64 ? 24 : 16);
+        descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE);
+        descriptor.putInt((int) entry.crc);
+        if (zip64) {
+            descriptor.putLong(entry.compressedSize);
+            descriptor.putLong(entry.size);
+        } else {
+            descriptor.putInt((int) entry.compressedSize);
+            descriptor.putInt((int) entry.size);
+        }
+        out.write(descriptor.array());
+        written.add(new CentralRecord(entry, offset));
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        final long start = out.getCount();
+        for (CentralRecord record : written) {
+            final byte[] name = record.name.getBytes(UTF_8);
+            final ByteBuffer extra = newBuffer(28);
+            // Through Buffer, so it links against Java 8 where ByteBuffer doesn't override position(int).
+            ((Buffer) extra).position(4);
+            if (record.size >= ZIP64_MAGIC) {
+                extra.putLong(record.size);
+            }
+            if (record.compressedSize >= ZIP64_MAGIC) {
+                extra.putLong(record.compressedSize);
+            }
+            if (record.offset >= ZIP64_MAGIC) {
+                extra.putLong(record.offset);
+            }
+            final int extraLength = extra.position() > 4 ? extra.position() : 0;
+            extra.putShort(0, (short) ZIP64_EXTRA_ID);
+            extra.putShort(2, (short) (extraLength - 4));
+            final int version = extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFAULT;
+            final ByteBuffer header = newBuffer(46 + name.length + extraLength);
+            header.putInt(CENTRAL_HEADER_SIGNATURE);
+            header.putShort((short) version);
+            header.putShort((short) version);
+            header.putShort((short) (FLAG_DATA_DESCRIPTOR | FLAG_UTF8));
+            header.putShort((short) Deflater.DEFLATED);
+            header.putInt(record.dosTime);
+            header.putInt((int) record.crc);
+            header.putInt((int) Math.min(record.compressedSize, ZIP64_MAGIC));
+            header.putInt((int) Math.min(record.size, ZIP64_MAGIC));
+            header.putShort((short) name.length);
+            header.putShort((short) extraLength);
+            // Comment length, disk number, internal and external attributes.
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putInt(0);
+            header.putInt((int) Math.min(record.offset, ZIP64_MAGIC));
+            header.put(name);
+            header.put(extra.array(), 0, extraLength);
+            out.write(header.array());
+        }
+        final long end = out.getCount();
+        final long size = end - start;
+        final int count = written.size();
+        if (count >= ZIP64_MAGIC_COUNT || size >= ZIP64_MAGIC || start >= ZIP64_MAGIC) {
+            final ByteBuffer zip64End = newBuffer(56 + 20);
+            zip64End.putInt(ZIP64_END_SIGNATURE);
+            zip64End.putLong(44);
+            zip64End.putShort((short) VERSION_ZIP64);
+            zip64End.putShort((short) VERSION_ZIP64);
+            zip64End.putInt(0);
+            zip64End.putInt(0);
+            zip64End.putLong(count);
+            zip64End.putLong(count);
+            zip64End.putLong(size);
+            zip64End.putLong(start);
+            zip64End.putInt(ZIP64_LOCATOR_SIGNATURE);
+            zip64End.putInt(0);
+            zip64End.putLong(end);
+            zip64End.putInt(1);
+            out.write(zip64End.array());
+        }
+        final ByteBuffer trailer = newBuffer(22);
+        trailer.putInt(END_SIGNATURE);
+        trailer.putShort((short) 0);
+        trailer.putShort((short) 0);
+        trailer.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        trailer.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        trailer.putInt((int) Math.min(size, ZIP64_MAGIC));
+        trailer.putInt((int) Math.min(start, ZIP64_MAGIC));
+        trailer.putShort((short) 0);
+        out.write(trailer.array());
+    }
+
+    private static ByteBuffer newBuffer(final int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static Throwable failureOf(final CompletableFuture<?> future) {
+        try {
+            future.getNow(null);
+            return null;
+        } catch (RuntimeException e) {
+            return nonNull(e.getCause()) ? e.getCause() : e;
+        }
+    }
+
+    private static int toDosTime(final LocalDateTime time) {
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    private static final class Entry {
+
+        private final String name;
+        private final ChunkedPipe pipe;
+        private final int dosTime = toDosTime(LocalDateTime.now());
+
+        private volatile boolean completed;
+        private long crc;
+        private long size;
+        private long compressedSize;
+
+        private Entry(final String name, final ChunkedPipe pipe) {
+            this.name = name;
+            this.pipe = pipe;
+        }
+
+    }
+
+    /**
+     * What the central directory needs to know about an entry, without holding on to its buffers.
+     */
+    private static final class CentralRecord {
+
+        private final String name;
+        private final int dosTime;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final long offset;
+
+        private CentralRecord(final Entry entry, final long offset) {
+            this.name = entry.name;
+            this.dosTime = entry.dosTime;
+            this.crc = entry.crc;
+            this.size = entry.size;
+            this.compressedSize = entry.compressedSize;
+            this.offset = offset;
+        }
+
+    }
+
+    private final class EntryOutputStream extends OutputStream {
+
+        private final Entry entry;
+        private final Deflater deflater;
+        private final OutputStream sink;
+        private final CRC32 crc = new CRC32();
+        private final byte[] buffer = new byte[DEFLATE_BUFFER_SIZE];
+        private final byte[] single = new byte[1];
+
+        private long size;
+        private boolean closed;
+
+        private EntryOutputStream(final Entry entry, final Deflater deflater) {
+            this.entry = entry;
+            this.deflater = deflater;
+            this.sink = entry.pipe.sink();
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+            if (closed) {
+                throw new IOException("Entry closed!");
+            }
+            checkPositionIndexes(off, off + len, b.length);
+            if (len == 0) {
+                return;
+            }
+            crc.update(b, off, len);
+            size += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            boolean completed = false;
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                entry.crc = crc.getValue();
+                entry.size = size;
+                entry.compressedSize = deflater.getBytesWritten();
+                // Published to the archive's thread by closing the sink below.
+                entry.completed = true;
+                completed = true;
+            } finally {
+                if (completed) {
+                    deflaterPool.release(deflater);
+                } else {
+                    deflater.end();
+                }
+                closed(entry);
+                sink.close();
+            }
+        }
+
+        private void deflate() throws IOException {
+            final int count = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+            if (count > 0) {
+                sink.write(buffer, 0, count);
+            }
+        }
+
+    }
+
+}
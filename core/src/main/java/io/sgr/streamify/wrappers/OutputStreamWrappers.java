@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.wrappers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.OutputStreamWrapper;
+import io.sgr.streamify.metrics.MeteredOutputStreamWrapper;
+import io.sgr.streamify.metrics.StreamingMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Builds the pipeline of wrappers a channel applies to its stream.
+ * <p>
+ * Wrappers are stacked directly on top of each other, with no buffering in between: deflaters and the like keep
+ * buffers of their own, and channels write into pipes which hand bytes over in chunks anyway. The only buffer is the
+ * one in front of the pipeline, owned by it, which turns small writes, e.g. a row at a time, into calls big enough to
+ * amortise the per-call cost of every stage below.
+ */
+public final class OutputStreamWrappers {
+
+    public static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private OutputStreamWrappers() {
+    }
+
+    /**
+     * @param out
+     *         Stream of the channel, where the output of the pipeline goes.
+     * @param wrappers
+     *         Wrappers to apply, the first one being closest to the destination, see
+     *         {@link io.sgr.streamify.StreamingRequest#getWrappers()}.
+     * @param bufferSize
+     *         Size of the buffer in front of the pipeline, typically the buffer size of the request, capped at
+     *         {@value #MAX_BUFFER_SIZE} bytes.
+     * @param metrics
+     *         Where to report bytes going into and coming out of each wrapper.
+     * @return The stream to write to, which closes the whole pipeline, or the given one as is if there are no wrappers.
+     *         It's {@link io.sgr.streamify.Abortable}, aborting the given stream if that one is.
+     * @throws IOException
+     *         If any wrapper failed to wrap, in which case the stream of the channel has not been closed.
+     */
+    @Nonnull
+    public static OutputStream apply(
+            @Nonnull final OutputStream out, final Collection<? extends OutputStreamWrapper> wrappers, final int bufferSize,
+            @Nonnull final StreamingMetrics metrics) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(out), "Missing output stream!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(metrics), "Missing metrics!");
+        if (isNull(wrappers) || wrappers.isEmpty()) {
+            return out;
+        }
+        OutputStream outputStream = out;
+        for (OutputStreamWrapper wrapper : wrappers) {
+            outputStream = MeteredOutputStreamWrapper.of(wrapper, metrics).wrap(outputStream);
+        }
+        return new UnsynchronizedBufferedOutputStream(outputStream, out, Math.max(1, Math.min(bufferSize, MAX_BUFFER_SIZE)));
+    }
+
+}
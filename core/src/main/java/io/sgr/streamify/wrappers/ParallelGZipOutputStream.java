@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.wrappers;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.codecs.DeflaterPool;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnull;
+
+class ParallelGZipOutputStream extends OutputStream {
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b,  // Magic number
+            Deflater.DEFLATED,  // Compression method
+            0,                  // Flags
+            0, 0, 0, 0,         // Modification time
+            0,                  // Extra flags
+            (byte) 0xff         // Operating system: unknown
+    };
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int blockSize;
+    private final int maxInFlightBlocks;
+    private final DeflaterPool deflaterPool;
+    private final boolean primeDictionary;
+
+    private final CRC32 crc = new CRC32();
+    private final Deque<Future<CompressedBlock>> inFlight = new ArrayDeque<>();
+    private final Deque<byte[]> freeBlocks = new ArrayDeque<>();
+
+    private byte[] block;
+    private int position;
+    private byte[] dictionary;
+    private long totalIn;
+    private boolean closed;
+
+    ParallelGZipOutputStream(
+            @Nonnull final OutputStream out, @Nonnull final ExecutorService executor, final int blockSize, final int maxInFlightBlocks,
+            @Nonnull final DeflaterPool deflaterPool, final boolean primeDictionary) throws IOException {
+        this.out = out;
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.maxInFlightBlocks = maxInFlightBlocks;
+        this.deflaterPool = deflaterPool;
+        this.primeDictionary = primeDictionary;
+        this.block = new byte[blockSize];
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        block[position++] = (byte) b;
+        if (position == blockSize) {
+            submit(false);
+        }
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        checkPositionIndexes(off, off + len, b.length);
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            final int count = Math.min(remaining, blockSize - position);
+            System.arraycopy(b, offset, block, position, count);
+            position += count;
+            offset += count;
+            remaining -= count;
+            if (position == blockSize) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Compresses whatever has been written so far as a block of its own and waits for all blocks to be written out, so
+     * frequent flushing costs both ratio and parallelism.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (position > 0) {
+            submit(false);
+        }
+        while (!inFlight.isEmpty()) {
+            writeOldest();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submit(true);
+            while (!inFlight.isEmpty()) {
+                writeOldest();
+            }
+            writeTrailer();
+        } catch (IOException | RuntimeException e) {
+            inFlight.forEach(future -> future.cancel(true));
+            inFlight.clear();
+            throw e;
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+    }
+
+    private void submit(final boolean last) throws IOException {
+        final byte[] input = block;
+        final int length = position;
+        crc.update(input, 0, length);
+        totalIn += length;
+        final byte[] preset = primeDictionary ? dictionary : null;
+        if (primeDictionary && !last) {
+            dictionary = nextDictionary(dictionary, input, length);
+        }
+        inFlight.addLast(executor.submit(() -> compress(input, length, preset, last)));
+        block = isNull(freeBlocks.peek()) ? new byte[blockSize] : freeBlocks.pop();
+        position = 0;
+        // Write out whatever is ready without waiting, then make sure we don't go beyond the in-flight limit.
+        while (!inFlight.isEmpty() && inFlight.peekFirst().isDone()) {
+            writeOldest();
+        }
+        while (inFlight.size() >= maxInFlightBlocks) {
+            writeOldest();
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        final CompressedBlock compressed;
+        try {
+            compressed = inFlight.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compression!");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress block!", e.getCause());
+        }
+        out.write(compressed.output, 0, compressed.length);
+        if (compressed.input.length == blockSize) {
+            freeBlocks.push(compressed.input);
+        }
+    }
+
+    private void writeTrailer() throws IOException {
+        final byte[] trailer = new byte[8];
+        writeIntLE(trailer, 0, crc.getValue());
+        writeIntLE(trailer, 4, totalIn);
+        out.write(trailer);
+    }
+
+    private CompressedBlock compress(final byte[] input, final int length, final byte[] preset, final boolean last) {
+        final Deflater deflater = deflaterPool.borrow();
+        boolean completed = false;
+        try {
+            if (nonNull(preset)) {
+                deflater.setDictionary(preset);
+            }
+            deflater.setInput(input, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            // A sync flush leaves non-final blocks byte aligned, so they can simply be concatenated into one deflate stream.
+            final int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+            byte[] output = new byte[length + (length >> 3) + 64];
+            int size = 0;
+            while (true) {
+                size += deflater.deflate(output, size, output.length - size, flush);
+                // Pending strategy changes are applied by the first call, which may return before consuming all the input.
+                if (last ? deflater.finished() : size < output.length && deflater.needsInput()) {
+                    break;
+                }
+                if (size == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+            }
+            completed = true;
+            return new CompressedBlock(input, output, size);
+        } finally {
+            if (completed) {
+                deflaterPool.release(deflater);
+            } else {
+                deflater.end();
+            }
+        }
+    }
+
+    private static byte[] nextDictionary(final byte[] previous, final byte[] input, final int length) {
+        if (length >= DICTIONARY_SIZE || isNull(previous)) {
+            final int size = Math.min(length, DICTIONARY_SIZE);
+            return Arrays.copyOfRange(input, length - size, length);
+        }
+        final int keep = Math.min(previous.length, DICTIONARY_SIZE - length);
+        final byte[] dictionary = new byte[keep + length];
+        System.arraycopy(previous, previous.length - keep, dictionary, 0, keep);
+        System.arraycopy(input, 0, dictionary, keep, length);
+        return dictionary;
+    }
+
+    private static void writeIntLE(final byte[] buf, final int offset, final long value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >> 8);
+        buf[offset + 2] = (byte) (value >> 16);
+        buf[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static final class CompressedBlock {
+
+        private final byte[] input;
+        private final byte[] output;
+        private final int length;
+
+        private CompressedBlock(final byte[] input, final byte[] output, final int length) {
+            this.input = input;
+            this.output = output;
+            this.length = length;
+        }
+
+    }
+
+}
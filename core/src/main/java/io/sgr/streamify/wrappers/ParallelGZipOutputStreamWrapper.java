@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.wrappers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.OutputStreamWrapper;
+import io.sgr.streamify.codecs.DeflaterPool;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A drop-in replacement of {@link GZipOutputStreamWrapper} which compresses independent blocks on a pool of threads, the
+ * same way pigz does, and still produces a single standard gzip member.
+ * <p>
+ * When dictionary priming is enabled, each block is compressed with the last 32K of the previous block as preset
+ * dictionary, which gets the ratio very close to a single threaded stream at no extra cost in parallelism.
+ * At most {@code maxInFlightBlocks} blocks are being compressed or waiting to be written at any time, which bounds the
+ * memory used by each stream to roughly twice {@code blockSize * maxInFlightBlocks}.
+ */
+public class ParallelGZipOutputStreamWrapper implements OutputStreamWrapper, Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final long IDLE_SECONDS = 60;
+
+    private final ExecutorService executor;
+    private final int blockSize;
+    private final int maxInFlightBlocks;
+    private final DeflaterPool deflaterPool;
+    private final boolean primeDictionary;
+    private final boolean ownedExecutor;
+
+    /**
+     * Compresses blocks on a pool of its own with as many threads as processors, see
+     * {@link #ParallelGZipOutputStreamWrapper(int)}.
+     */
+    public ParallelGZipOutputStreamWrapper() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Compresses blocks on a pool of its own, so the work doesn't compete with whatever else runs on the
+     * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}. Idle threads of the pool go away by
+     * themselves, {@link #close()} shuts it down right away.
+     *
+     * @param threads
+     *         Number of threads compressing blocks, twice as many blocks can be in flight per stream.
+     */
+    public ParallelGZipOutputStreamWrapper(final int threads) {
+        this(newCompressionPool(threads), DEFAULT_BLOCK_SIZE, threads * 2,
+                DeflaterPool.shared(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, true), true, true);
+    }
+
+    public ParallelGZipOutputStreamWrapper(
+            @Nonnull final ExecutorService executor, final int blockSize, final int maxInFlightBlocks, final int level,
+            final boolean primeDictionary) {
+        this(executor, blockSize, maxInFlightBlocks, DeflaterPool.shared(level, Deflater.DEFAULT_STRATEGY, true), primeDictionary);
+    }
+
+    /**
+     * @param executor
+     *         Where blocks get compressed.
+     * @param blockSize
+     *         Size of each independently compressed block.
+     * @param maxInFlightBlocks
+     *         Max number of blocks being compressed or waiting to be written per stream.
+     * @param deflaterPool
+     *         Where to borrow deflaters from, must produce raw deflate data.
+     * @param primeDictionary
+     *         Whether to use the tail of previous block as dictionary of the next one.
+     */
+    public ParallelGZipOutputStreamWrapper(
+            @Nonnull final ExecutorService executor, final int blockSize, final int maxInFlightBlocks, @Nonnull final DeflaterPool deflaterPool,
+            final boolean primeDictionary) {
+        this(executor, blockSize, maxInFlightBlocks, deflaterPool, primeDictionary, false);
+    }
+
+    private ParallelGZipOutputStreamWrapper(
+            @Nonnull final ExecutorService executor, final int blockSize, final int maxInFlightBlocks, @Nonnull final DeflaterPool deflaterPool,
+            final boolean primeDictionary, final boolean ownedExecutor) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(executor), "Missing executor!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(deflaterPool), "Missing deflater pool!");
+        checkArgument(blockSize > 0, "Block size should be greater than 0!");
+        checkArgument(maxInFlightBlocks > 0, "Max in-flight blocks should be greater than 0!");
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.maxInFlightBlocks = maxInFlightBlocks;
+        this.deflaterPool = deflaterPool;
+        this.primeDictionary = primeDictionary;
+        this.ownedExecutor = ownedExecutor;
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream wrap(@Nonnull final OutputStream outputStream) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(outputStream), "Missing output stream!");
+        return new ParallelGZipOutputStream(outputStream, executor, blockSize, maxInFlightBlocks, deflaterPool, primeDictionary);
+    }
+
+    /**
+     * Shuts down the pool created by this wrapper, if any, streams still open fail on their next block. An executor
+     * given by the caller is left alone.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService newCompressionPool(final int threads) {
+        checkArgument(threads > 0, "Number of threads should be greater than 0!");
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("streamify-gzip-%d").setDaemon(true).build());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+}
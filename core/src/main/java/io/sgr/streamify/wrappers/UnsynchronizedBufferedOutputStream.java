@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.wrappers;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import io.sgr.streamify.Abortable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Same as {@link java.io.BufferedOutputStream}, without taking a lock on every write, since a stream of a channel is
+ * only written by one thread at a time.
+ */
+class UnsynchronizedBufferedOutputStream extends OutputStream implements Abortable {
+
+    private final OutputStream out;
+    private final OutputStream destination;
+    private final byte[] buffer;
+
+    private int position;
+    private boolean closed;
+
+    /**
+     * @param out
+     *         The outermost wrapper.
+     * @param destination
+     *         Stream of the channel under all wrappers, aborted along with this one if it's {@link Abortable}.
+     */
+    UnsynchronizedBufferedOutputStream(@Nonnull final OutputStream out, @Nonnull final OutputStream destination, final int bufferSize) {
+        this.out = out;
+        this.destination = destination;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        checkPositionIndexes(off, off + len, b.length);
+        if (len >= buffer.length) {
+            // Nothing to gain from copying, hand it over as is.
+            drain();
+            out.write(b, off, len);
+            return;
+        }
+        if (len > buffer.length - position) {
+            drain();
+        }
+        System.arraycopy(b, off, buffer, position, len);
+        position += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Aborts the stream of the channel without closing any wrapper, which would only complete the content.
+     */
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        position = 0;
+        if (destination instanceof Abortable) {
+            ((Abortable) destination).abort();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.buffers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ChunkedPipeTest {
+
+    @Test
+    public void testTransferInOrder() throws Exception {
+        final byte[] bytes = generateRandomBytes(5 * 1024 * 1024);
+        final ChunkedPipe pipe = new ChunkedPipe(64 * 1024, 4 * 1024);
+        final CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            final Random random = new Random();
+            try (OutputStream out = pipe.sink()) {
+                int offset = 0;
+                while (offset < bytes.length) {
+                    if (random.nextInt(10) == 0) {
+                        out.write(bytes[offset++]);
+                        continue;
+                    }
+                    final int len = Math.min(bytes.length - offset, random.nextInt(70000));
+                    out.write(bytes, offset, len);
+                    offset += len;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        final ByteArrayOutputStream received = new ByteArrayOutputStream(bytes.length);
+        final InputStream in = pipe.source();
+        final byte[] buf = new byte[3000];
+        int len;
+        while ((len = in.read(buf)) != -1) {
+            received.write(buf, 0, len);
+        }
+        producer.get(10, TimeUnit.SECONDS);
+        assertArrayEquals(bytes, received.toByteArray());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testProducerBlocksWhenFull() throws Exception {
+        final ChunkedPipe pipe = new ChunkedPipe(8, 4);
+        assertEquals(8, pipe.getCapacity());
+        pipe.sink().write(new byte[8]);
+        final Thread producer = new Thread(() -> {
+            try {
+                pipe.sink().write(1);
+                pipe.sink().close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        assertEquals(8, pipe.source().read(new byte[8]) + pipe.source().read(new byte[8]));
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        assertEquals(1, pipe.source().read());
+        assertEquals(-1, pipe.source().read());
+    }
+
+    @Test
+    public void testClosingSourceReleasesProducer() throws Exception {
+        final ChunkedPipe pipe = new ChunkedPipe(8, 4);
+        final CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            try {
+                pipe.sink().write(new byte[100]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        pipe.source().close();
+        try {
+            producer.get(10, TimeUnit.SECONDS);
+            fail("Expecting producer to fail once the source been closed!");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UncheckedIOException);
+        }
+    }
+
+    private static byte[] generateRandomBytes(final int size) {
+        final byte[] bytes = new byte[size];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+
+}
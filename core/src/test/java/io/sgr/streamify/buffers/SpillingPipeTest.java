@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.buffers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class SpillingPipeTest {
+
+    @Test
+    public void testTransferInOrder() throws Exception {
+        final byte[] bytes = generateRandomBytes(5 * 1024 * 1024);
+        final SpillingPipe pipe = new SpillingPipe(16 * 1024, 4 * 1024, new SpillOptions(100 * 1000));
+        final CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            final Random random = new Random();
+            try (OutputStream out = pipe.sink()) {
+                int offset = 0;
+                while (offset < bytes.length) {
+                    if (random.nextInt(10) == 0) {
+                        out.write(bytes[offset++]);
+                        continue;
+                    }
+                    final int len = Math.min(bytes.length - offset, random.nextInt(70000));
+                    out.write(bytes, offset, len);
+                    offset += len;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        final ByteArrayOutputStream received = new ByteArrayOutputStream(bytes.length);
+        final InputStream in = pipe.source();
+        final byte[] buf = new byte[3000];
+        final Random random = new Random();
+        int len;
+        do {
+            if (random.nextInt(3) == 0) {
+                len = pipe.source().readChunk(received::write) ? 0 : -1;
+            } else if ((len = in.read(buf)) > 0) {
+                received.write(buf, 0, len);
+            }
+        } while (len != -1);
+        producer.get(10, TimeUnit.SECONDS);
+        assertArrayEquals(bytes, received.toByteArray());
+        assertTrue(pipe.getSpilledBytes() > 0);
+        in.close();
+    }
+
+    @Test
+    public void testProducerSpillsInsteadOfBlocking() throws Exception {
+        final SpillingPipe pipe = new SpillingPipe(8, 4, new SpillOptions(16));
+        final byte[] bytes = generateRandomBytes(20);
+        pipe.sink().write(bytes);
+        pipe.sink().close();
+        assertEquals(16, pipe.getSpilledBytes());
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int b;
+        while ((b = pipe.source().read()) != -1) {
+            received.write(b);
+        }
+        assertArrayEquals(bytes, received.toByteArray());
+        pipe.source().close();
+    }
+
+    @Test
+    public void testProducerBlocksWhenDiskFull() throws Exception {
+        final SpillingPipe pipe = new SpillingPipe(8, 4, new SpillOptions(8));
+        pipe.sink().write(new byte[12]);
+        final Thread producer = new Thread(() -> {
+            try {
+                pipe.sink().write(new byte[4]);
+                pipe.sink().close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        assertEquals(4, pipe.source().read(new byte[8]));
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        assertEquals(12, pipe.source().read(new byte[4]) + pipe.source().read(new byte[4]) + pipe.source().read(new byte[4]));
+        assertEquals(-1, pipe.source().read());
+        pipe.source().close();
+    }
+
+    @Test
+    public void testCloseWhileReadingSpilledSegment() throws Exception {
+        final Path directory = Files.createTempDirectory("streamify-spill-test-");
+        try {
+            final SpillingPipe pipe = new SpillingPipe(8, 4, new SpillOptions(16).setDirectory(directory));
+            pipe.sink().write(generateRandomBytes(20));
+            pipe.sink().close();
+            assertEquals(8, pipe.source().read(new byte[8]) + pipe.source().read(new byte[8]));
+            pipe.source().read();
+            pipe.source().close();
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(0, files.count());
+            }
+            try {
+                pipe.source().read();
+                fail("Expecting IOException here!");
+            } catch (IOException e) {
+                assertEquals("Pipe closed!", e.getMessage());
+            }
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static byte[] generateRandomBytes(final int size) {
+        final byte[] bytes = new byte[size];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+
+}
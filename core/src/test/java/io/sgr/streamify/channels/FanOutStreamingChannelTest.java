@@ -0,0 +1,266 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.sgr.streamify.Abortable;
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+public class FanOutStreamingChannelTest {
+
+    private static final StreamingRequest REQUEST = new StreamingRequest() {
+        @Nonnull
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Nonnull
+        @Override
+        public String getContentType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public Optional<Integer> getBufferSize() {
+            return Optional.empty();
+        }
+    };
+
+    @Test
+    public void testReplicateToAllDestinations() throws IOException {
+        final byte[] bytes = generateRandomBytes(1024 * 1024 + 17);
+        final ByteArrayOutputStream[] received = {new ByteArrayOutputStream(), new ByteArrayOutputStream(), new ByteArrayOutputStream()};
+        final FanOutStreamingChannel channel = new FanOutStreamingChannel(Arrays.asList(
+                (request, identifier) -> received[0], (request, identifier) -> received[1], (request, identifier) -> received[2]
+        )).setCapacity(64 * 1024).setChunkSize(4 * 1024);
+        try (FanOutOutputStream out = channel.open(REQUEST, "test.bin")) {
+            out.write(bytes[0]);
+            for (int offset = 1; offset < bytes.length; offset += 3000) {
+                out.write(bytes, offset, Math.min(3000, bytes.length - offset));
+            }
+        }
+        for (ByteArrayOutputStream destination : received) {
+            assertArrayEquals(bytes, destination.toByteArray());
+        }
+    }
+
+    @Test
+    public void testBlockFailsOnFailedDestination() throws IOException {
+        final ByteArrayOutputStream healthy = new ByteArrayOutputStream();
+        final FanOutStreamingChannel channel = new FanOutStreamingChannel(Arrays.asList(
+                (request, identifier) -> healthy, failingAfter(8 * 1024)
+        )).setCapacity(16 * 1024).setChunkSize(1024);
+        final FanOutOutputStream out = channel.open(REQUEST, "test.bin");
+        try {
+            out.write(new byte[1024 * 1024]);
+            fail("Expecting writes to fail once a destination has failed!");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("#1"));
+        }
+        try {
+            out.close();
+            fail("Expecting close to fail as well!");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testAbortHealthyDestinationsWhenOneFails() throws IOException, InterruptedException {
+        final AbortableOutputStream[] healthy = {new AbortableOutputStream(), new AbortableOutputStream()};
+        final FanOutStreamingChannel channel = new FanOutStreamingChannel(Arrays.asList(
+                (request, identifier) -> healthy[0], failingAfter(8 * 1024), (request, identifier) -> healthy[1]
+        )).setPolicy(ReplicaPolicy.FAIL).setCapacity(16 * 1024).setChunkSize(1024);
+        try (FanOutOutputStream out = channel.open(REQUEST, "test.bin")) {
+            out.write(new byte[1024 * 1024]);
+            fail("Expecting writes to fail once a destination has failed!");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("#1"));
+        }
+        for (AbortableOutputStream destination : healthy) {
+            assertTrue(destination.finished.await(10, TimeUnit.SECONDS));
+            assertTrue(destination.aborted);
+            assertFalse(destination.closed);
+        }
+    }
+
+    @Test
+    public void testAbort() throws IOException, InterruptedException {
+        final AbortableOutputStream[] received = {new AbortableOutputStream(), new AbortableOutputStream()};
+        final FanOutStreamingChannel channel = new FanOutStreamingChannel(Arrays.asList(
+                (request, identifier) -> received[0], (request, identifier) -> received[1]
+        )).setCapacity(16 * 1024).setChunkSize(1024);
+        final FanOutOutputStream out = channel.open(REQUEST, "test.bin");
+        out.write(generateRandomBytes(64 * 1024));
+        out.abort();
+        out.close();
+        for (AbortableOutputStream destination : received) {
+            assertTrue(destination.finished.await(10, TimeUnit.SECONDS));
+            assertTrue(destination.aborted);
+            assertFalse(destination.closed);
+        }
+    }
+
+    @Test
+    public void testDropFailedDestination() throws IOException {
+        final byte[] bytes = generateRandomBytes(256 * 1024);
+        final ByteArrayOutputStream healthy = new ByteArrayOutputStream();
+        final FanOutStreamingChannel channel = new FanOutStreamingChannel(Arrays.asList(
+                failingAfter(8 * 1024), (request, identifier) -> healthy
+        )).setPolicy(ReplicaPolicy.DROP).setCapacity(16 * 1024).setChunkSize(1024);
+        final FanOutOutputStream out = channel.open(REQUEST, "test.bin");
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        assertArrayEquals(bytes, healthy.toByteArray());
+        assertEquals(1, out.getDropped().size());
+        assertTrue(out.getDropped().containsKey(0));
+    }
+
+    @Test
+    public void testDropStalledDestination() throws IOException {
+        final byte[] bytes = generateRandomBytes(256 * 1024);
+        final ByteArrayOutputStream healthy = new ByteArrayOutputStream();
+        final CountDownLatch stall = new CountDownLatch(1);
+        final FanOutStreamingChannel channel = new FanOutStreamingChannel(Arrays.asList(
+                (request, identifier) -> healthy, stalling(stall)
+        )).setPolicy(ReplicaPolicy.DROP).setCapacity(16 * 1024).setChunkSize(1024).setStallTimeout(200, TimeUnit.MILLISECONDS);
+        try {
+            final FanOutOutputStream out = channel.open(REQUEST, "test.bin");
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+            assertArrayEquals(bytes, healthy.toByteArray());
+            assertTrue(out.getDropped().containsKey(1));
+        } finally {
+            stall.countDown();
+        }
+    }
+
+    @Test
+    public void testFailOnStalledDestination() throws IOException {
+        final CountDownLatch stall = new CountDownLatch(1);
+        final FanOutStreamingChannel channel = new FanOutStreamingChannel(Arrays.asList(
+                (request, identifier) -> new ByteArrayOutputStream(), stalling(stall)
+        )).setPolicy(ReplicaPolicy.FAIL).setCapacity(16 * 1024).setChunkSize(1024).setStallTimeout(200, TimeUnit.MILLISECONDS);
+        try (FanOutOutputStream out = channel.open(REQUEST, "test.bin")) {
+            out.write(new byte[256 * 1024]);
+            fail("Expecting writes to fail once a destination has stalled!");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("#1"));
+        } finally {
+            stall.countDown();
+        }
+    }
+
+    @Test
+    public void testAllDestinationsDropped() {
+        final FanOutStreamingChannel channel = new FanOutStreamingChannel(Arrays.asList(
+                failingAfter(0), failingAfter(0)
+        )).setPolicy(ReplicaPolicy.DROP).setCapacity(4 * 1024).setChunkSize(1024);
+        try (FanOutOutputStream out = channel.open(REQUEST, "test.bin")) {
+            out.write(new byte[64 * 1024]);
+            fail("Expecting writes to fail once every destination has been dropped!");
+        } catch (IOException e) {
+            assertEquals("All destinations have been dropped!", e.getMessage());
+        }
+    }
+
+    private static StreamingChannel failingAfter(final int limit) {
+        return (request, identifier) -> new FilterOutputStream(new ByteArrayOutputStream()) {
+            private int count;
+
+            @Override
+            public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+                count += len;
+                if (count > limit) {
+                    throw new IOException("Connection reset!");
+                }
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    private static StreamingChannel stalling(final CountDownLatch stall) {
+        return (request, identifier) -> new OutputStream() {
+            @Override
+            public void write(final int b) {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(@Nonnull final byte[] b, final int off, final int len) {
+                try {
+                    stall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private static class AbortableOutputStream extends ByteArrayOutputStream implements Abortable {
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean aborted;
+        private volatile boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+            finished.countDown();
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+            finished.countDown();
+        }
+    }
+
+    private static byte[] generateRandomBytes(final int size) {
+        final byte[] bytes = new byte[size];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.sgr.streamify.OutputStreamWrapper;
+import io.sgr.streamify.StreamingRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+public class FileSystemStreamingChannelTest {
+
+    private static final StreamingRequest REQUEST = new StreamingRequest() {
+        @Nonnull
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Nonnull
+        @Override
+        public String getContentType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public Optional<Integer> getBufferSize() {
+            return Optional.empty();
+        }
+    };
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("streamify-test-");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        final List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testWriteThroughBuffer() throws IOException {
+        final FileSystemStreamingChannel channel = new FileSystemStreamingChannel(directory).setBufferSize(4096).setPreallocateBytes(10L * 1024 * 1024);
+        assertRoundTrip(channel, "exports/a/export.bin");
+    }
+
+    @Test
+    public void testWriteThroughMappedRegions() throws IOException {
+        final FileSystemStreamingChannel channel = new FileSystemStreamingChannel(directory).setMemoryMapped(true).setMappedRegionSize(64 * 1024)
+                .setSync(true);
+        assertRoundTrip(channel, "export.bin");
+    }
+
+    @Test
+    public void testNothingVisibleUntilClosed() throws IOException {
+        final FileSystemStreamingChannel channel = new FileSystemStreamingChannel(directory);
+        final Path target = channel.resolve("export.bin");
+        try (OutputStream out = channel.open(REQUEST, "export.bin")) {
+            out.write(new byte[100]);
+            out.flush();
+            assertFalse(Files.exists(target));
+        }
+        assertEquals(100, Files.size(target));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    public void testEmptyContent() throws IOException {
+        final FileSystemStreamingChannel channel = new FileSystemStreamingChannel(directory).setMemoryMapped(true);
+        channel.open(REQUEST, "empty.bin").close();
+        assertEquals(0, Files.size(channel.resolve("empty.bin")));
+    }
+
+    @Test
+    public void testRejectIdentifierOutsideBaseDirectory() throws IOException {
+        final FileSystemStreamingChannel channel = new FileSystemStreamingChannel(directory);
+        assertEquals(directory.resolve("a/b.bin").toAbsolutePath().normalize(), channel.resolve("/a/b.bin"));
+        try {
+            channel.open(REQUEST, "../escaped.bin");
+            fail("Expecting identifiers outside of the base directory to be rejected!");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("../escaped.bin"));
+        }
+    }
+
+    @Test
+    public void testNothingLeftWhenWrappingFails() throws IOException {
+        final StreamingRequest request = new StreamingRequest() {
+            @Nonnull
+            @Override
+            public String getId() {
+                return "test";
+            }
+
+            @Nonnull
+            @Override
+            public String getContentType() {
+                return "application/octet-stream";
+            }
+
+            @Override
+            public Optional<Integer> getBufferSize() {
+                return Optional.empty();
+            }
+
+            @Nonnull
+            @Override
+            public List<OutputStreamWrapper> getWrappers() {
+                return Collections.singletonList(out -> {
+                    throw new IOException("Something was wrong!");
+                });
+            }
+        };
+        final FileSystemStreamingChannel channel = new FileSystemStreamingChannel(directory);
+        try {
+            channel.open(request, "export.bin").close();
+            fail("Expecting IOException here!");
+        } catch (IOException e) {
+            assertEquals("Something was wrong!", e.getMessage());
+        }
+        assertEquals(0, countFiles());
+    }
+
+    private void assertRoundTrip(final FileSystemStreamingChannel channel, final String identifier) throws IOException {
+        final byte[] bytes = new byte[1024 * 1024 + 17];
+        new Random().nextBytes(bytes);
+        try (OutputStream out = channel.open(REQUEST, identifier)) {
+            out.write(bytes[0]);
+            out.write(bytes, 1, 100);
+            out.write(bytes, 101, 200000);
+            for (int offset = 200101; offset < bytes.length; offset += 3000) {
+                out.write(bytes, offset, Math.min(3000, bytes.length - offset));
+            }
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(channel.resolve(identifier)));
+        assertEquals(1, countFiles());
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).count();
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.sgr.streamify.Abortable;
+import io.sgr.streamify.StreamingChannel;
+import io.sgr.streamify.StreamingRequest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import javax.annotation.Nonnull;
+
+public class RollingStreamingChannelTest {
+
+    private static final StreamingRequest REQUEST = new StreamingRequest() {
+        @Nonnull
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Nonnull
+        @Override
+        public String getContentType() {
+            return "application/x-jsonlines";
+        }
+
+        @Override
+        public Optional<Integer> getBufferSize() {
+            return Optional.empty();
+        }
+    };
+
+    private final Map<String, ByteArrayOutputStream> written = new ConcurrentHashMap<>();
+    private final StreamingChannel destination = (request, identifier) -> {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        written.put(identifier, out);
+        return out;
+    };
+
+    @Test
+    public void testPartIdentifier() {
+        final RollingStreamingChannel channel = new RollingStreamingChannel(destination);
+        assertEquals("export-00000.jsonl", channel.getPartIdentifier("export.jsonl", 0));
+        assertEquals("dir.v2/export-00003", channel.getPartIdentifier("dir.v2/export", 3));
+        assertEquals(".hidden-00001", channel.getPartIdentifier(".hidden", 1));
+        channel.setSequenceFormat(".part%d");
+        assertEquals("export.part12.csv", channel.getPartIdentifier("export.csv", 12));
+    }
+
+    @Test
+    public void testRollByRecords() throws IOException {
+        final RollingStreamingChannel channel = new RollingStreamingChannel(destination).setMaxPartRecords(3L).setMaxPartBytes(null);
+        final RollingOutputStream out = channel.open(REQUEST, "export.jsonl");
+        try {
+            out.write("1\n2\n3\n4\n".getBytes(UTF_8));
+            out.write('5');
+            out.write('\n');
+            out.write("6\n7\n8\n9\n10".getBytes(UTF_8));
+        } finally {
+            out.close();
+        }
+        assertEquals(Arrays.asList("export-00000.jsonl", "export-00001.jsonl", "export-00002.jsonl", "export-00003.jsonl"), out.getParts());
+        assertEquals("1\n2\n3\n", read("export-00000.jsonl"));
+        assertEquals("4\n5\n6\n", read("export-00001.jsonl"));
+        assertEquals("7\n8\n9\n", read("export-00002.jsonl"));
+        assertEquals("10", read("export-00003.jsonl"));
+    }
+
+    @Test
+    public void testRollBySizeAtRecordBoundary() throws IOException {
+        final RollingStreamingChannel channel = new RollingStreamingChannel(destination).setMaxPartBytes(25L).setParallelism(1);
+        final RollingOutputStream out = channel.open(REQUEST, "export.jsonl");
+        try {
+            for (int i = 0; i < 7; i++) {
+                out.write(String.format("record-%02d\n", i).getBytes(UTF_8));
+            }
+        } finally {
+            out.close();
+        }
+        assertEquals(3, out.getParts().size());
+        assertEquals("record-00\nrecord-01\nrecord-02\n", read("export-00000.jsonl"));
+        assertEquals("record-03\nrecord-04\nrecord-05\n", read("export-00001.jsonl"));
+        assertEquals("record-06\n", read("export-00002.jsonl"));
+    }
+
+    @Test
+    public void testNeverSplitRecord() throws IOException {
+        final RollingStreamingChannel channel = new RollingStreamingChannel(destination).setMaxPartBytes(4L);
+        final byte[] record = new byte[1024];
+        Arrays.fill(record, (byte) 'x');
+        final RollingOutputStream out = channel.open(REQUEST, "export.jsonl");
+        try {
+            out.write(record);
+            out.write(record);
+        } finally {
+            out.close();
+        }
+        assertEquals(Collections.singletonList("export-00000.jsonl"), out.getParts());
+        assertEquals(2048, written.get("export-00000.jsonl").size());
+    }
+
+    @Test
+    public void testEmptyStream() throws IOException {
+        final RollingOutputStream out = new RollingStreamingChannel(destination).open(REQUEST, "export.jsonl");
+        out.close();
+        assertEquals(Collections.singletonList("export-00000.jsonl"), out.getParts());
+        assertEquals("", read("export-00000.jsonl"));
+    }
+
+    @Test
+    public void testFailedPartClose() throws IOException {
+        final StreamingChannel failing = (request, identifier) -> new OutputStream() {
+            @Override
+            public void write(final int b) {
+                // Discard
+            }
+
+            @Override
+            public void close() throws IOException {
+                throw new IOException("Upload failed!");
+            }
+        };
+        final RollingOutputStream out = new RollingStreamingChannel(failing).setMaxPartRecords(1L).open(REQUEST, "export.jsonl");
+        try {
+            // Depending on timing, the failure surfaces when the next part is opened or once everything is closed.
+            out.write("1\n2\n".getBytes(UTF_8));
+            out.close();
+            fail("Expecting the stream to fail when a part fails to close!");
+        } catch (IOException e) {
+            assertEquals("Upload failed!", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testAbortPartOnWriteFailure() {
+        final Map<String, AbortableOutputStream> opened = new ConcurrentHashMap<>();
+        final StreamingChannel failing = (request, identifier) -> {
+            final AbortableOutputStream out = new AbortableOutputStream(opened.isEmpty() ? Integer.MAX_VALUE : 2);
+            opened.put(identifier, out);
+            return out;
+        };
+        final RollingStreamingChannel channel = new RollingStreamingChannel(failing).setMaxPartRecords(2L).setParallelism(1);
+        try (RollingOutputStream out = channel.open(REQUEST, "export.jsonl")) {
+            out.write("1\n2\n3\n4\n".getBytes(UTF_8));
+            fail("Expecting writes to fail once a part has failed!");
+        } catch (IOException e) {
+            assertEquals("Connection reset!", e.getMessage());
+        }
+        assertTrue(opened.get("export-00000.jsonl").closed);
+        assertTrue(opened.get("export-00001.jsonl").aborted);
+        assertFalse(opened.get("export-00001.jsonl").closed);
+        assertEquals(2, opened.size());
+    }
+
+    @Test
+    public void testAbortPartsStillClosing() throws IOException {
+        final CountDownLatch closing = new CountDownLatch(1);
+        final Map<String, AbortableOutputStream> opened = new ConcurrentHashMap<>();
+        final StreamingChannel stalling = (request, identifier) -> {
+            final AbortableOutputStream out = new AbortableOutputStream(Integer.MAX_VALUE) {
+                @Override
+                public void close() {
+                    try {
+                        closing.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    super.close();
+                }
+            };
+            opened.put(identifier, out);
+            return out;
+        };
+        final RollingOutputStream out = new RollingStreamingChannel(stalling).setMaxPartRecords(1L).open(REQUEST, "export.jsonl");
+        try {
+            out.write("1\n2".getBytes(UTF_8));
+            out.abort();
+            assertTrue(opened.get("export-00000.jsonl").aborted);
+            assertTrue(opened.get("export-00001.jsonl").aborted);
+            assertFalse(opened.get("export-00001.jsonl").closed);
+            try {
+                out.write('\n');
+                fail("Expecting writes to fail once aborted!");
+            } catch (IOException e) {
+                assertEquals("Stream closed!", e.getMessage());
+            }
+            out.close();
+            assertEquals(2, out.getParts().size());
+        } finally {
+            closing.countDown();
+        }
+    }
+
+    private String read(final String identifier) {
+        return new String(written.get(identifier).toByteArray(), UTF_8);
+    }
+
+    private static class AbortableOutputStream extends OutputStream implements Abortable {
+        private final int limit;
+        private int count;
+        private volatile boolean aborted;
+        private volatile boolean closed;
+
+        private AbortableOutputStream(final int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+            count += len;
+            if (count > limit) {
+                throw new IOException("Connection reset!");
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.channels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.metrics.StreamingMetrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+public class SchedulingStreamingChannelTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<String> opened = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrencyLimited() throws Exception {
+        final SchedulingStreamingChannel channel = newChannel().setMaxConcurrentStreams(1);
+        final OutputStream first = channel.open(request(0, null), "first");
+        final Future<OutputStream> second = executor.submit(() -> channel.open(request(0, null), "second"));
+        awaitQueueDepth(channel, 1);
+        assertEquals(1, channel.getActiveStreams());
+        first.close();
+        second.get(10, TimeUnit.SECONDS).close();
+        assertEquals(0, channel.getActiveStreams());
+        assertEquals(0, channel.getQueueDepth());
+    }
+
+    @Test
+    public void testHigherPriorityAdmittedFirst() throws Exception {
+        final SchedulingStreamingChannel channel = newChannel().setMaxConcurrentStreams(1);
+        final OutputStream running = channel.open(request(0, null), "running");
+        final Future<OutputStream> bulk = executor.submit(() -> channel.open(request(0, null), "bulk"));
+        awaitQueueDepth(channel, 1);
+        final Future<OutputStream> urgent = executor.submit(() -> channel.open(request(10, null), "urgent"));
+        awaitQueueDepth(channel, 2);
+        running.close();
+        urgent.get(10, TimeUnit.SECONDS).close();
+        bulk.get(10, TimeUnit.SECONDS).close();
+        assertEquals("running,urgent,bulk", String.join(",", opened));
+    }
+
+    @Test
+    public void testMemoryBudget() throws Exception {
+        final SchedulingStreamingChannel channel = newChannel().setMemoryBudget(3L * 1024 * 1024);
+        final OutputStream first = channel.open(request(0, 2 * 1024 * 1024), "first");
+        assertEquals(2L * 1024 * 1024, channel.getReservedBytes());
+        final Future<OutputStream> second = executor.submit(() -> channel.open(request(0, 2 * 1024 * 1024), "second"));
+        awaitQueueDepth(channel, 1);
+        first.close();
+        second.get(10, TimeUnit.SECONDS).close();
+        // Larger than the whole budget, admitted once nothing else is running.
+        channel.open(request(0, 8 * 1024 * 1024), "huge").close();
+        assertEquals(0, channel.getReservedBytes());
+    }
+
+    @Test
+    public void testTimedOutWaiting() throws IOException {
+        final AtomicLong waited = new AtomicLong();
+        final SchedulingStreamingChannel channel = newChannel().setMaxConcurrentStreams(1).setMaxWait(50L, TimeUnit.MILLISECONDS)
+                .setMetrics(new StreamingMetrics() {
+                    @Override
+                    public void recordAdmissionWait(final long nanos) {
+                        waited.set(nanos);
+                    }
+                });
+        try (OutputStream ignored = channel.open(request(0, null), "first")) {
+            channel.open(request(0, null), "second");
+            fail("Expecting opening to time out!");
+        } catch (InterruptedIOException e) {
+            // Expected
+        }
+        assertTrue(waited.get() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, channel.getQueueDepth());
+        assertEquals(0, channel.getActiveStreams());
+    }
+
+    @Test
+    public void testReleasedWhenOpeningFailed() throws IOException {
+        final SchedulingStreamingChannel channel = new SchedulingStreamingChannel((request, identifier) -> {
+            throw new IOException("Destination unavailable!");
+        }).setMaxConcurrentStreams(1);
+        for (int i = 0; i < 2; i++) {
+            try {
+                channel.open(request(0, null), "test");
+                fail("Expecting opening to fail!");
+            } catch (IOException e) {
+                assertEquals("Destination unavailable!", e.getMessage());
+            }
+        }
+        assertEquals(0, channel.getActiveStreams());
+    }
+
+    private SchedulingStreamingChannel newChannel() {
+        return new SchedulingStreamingChannel((request, identifier) -> {
+            opened.add(identifier);
+            return new ByteArrayOutputStream();
+        });
+    }
+
+    private static void awaitQueueDepth(final SchedulingStreamingChannel channel, final int depth) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (channel.getQueueDepth() < depth) {
+            assertTrue("Expecting streams to be waiting!", System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+
+    private static StreamingRequest request(final int priority, final Integer bufferSize) {
+        return new StreamingRequest() {
+            @Nonnull
+            @Override
+            public String getId() {
+                return "test";
+            }
+
+            @Nonnull
+            @Override
+            public String getContentType() {
+                return "application/octet-stream";
+            }
+
+            @Override
+            public Optional<Integer> getBufferSize() {
+                return Optional.ofNullable(bufferSize);
+            }
+
+            @Override
+            public Optional<Integer> getPriority() {
+                return Optional.of(priority);
+            }
+        };
+    }
+
+}
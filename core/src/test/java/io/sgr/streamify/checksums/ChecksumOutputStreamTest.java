@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.checksums;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Optional;
+
+public class ChecksumOutputStreamTest {
+
+    @Test
+    public void testChecksums() throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final ChecksumOutputStream out = new ChecksumOutputStream(bos, EnumSet.allOf(ChecksumAlgorithm.class));
+        out.write('1');
+        out.write("23456789".getBytes(US_ASCII));
+        assertTrue(out.getChecksums().isEmpty());
+        out.close();
+        assertArrayEquals("123456789".getBytes(US_ASCII), bos.toByteArray());
+        assertEquals(9, out.getCount());
+        // Check values of both algorithms.
+        assertEquals(Optional.of("e3069283"), out.getHexChecksum(ChecksumAlgorithm.CRC32C));
+        assertEquals(Optional.of("15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225"), out.getHexChecksum(ChecksumAlgorithm.SHA256));
+    }
+
+    @Test
+    public void testEmptyContent() throws IOException {
+        final ChecksumOutputStream out = new ChecksumOutputStream(new ByteArrayOutputStream(), EnumSet.of(ChecksumAlgorithm.SHA256));
+        out.close();
+        assertEquals(Optional.of("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855"), out.getHexChecksum(ChecksumAlgorithm.SHA256));
+        assertFalse(out.getHexChecksum(ChecksumAlgorithm.CRC32C).isPresent());
+    }
+
+}
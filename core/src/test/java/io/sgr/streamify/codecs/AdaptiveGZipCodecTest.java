@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+import io.sgr.streamify.metrics.StreamingMetrics;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nonnull;
+
+public class AdaptiveGZipCodecTest {
+
+    private static final int BLOCK_SIZE = 16 * 1024;
+
+    @Test
+    public void testAdaptiveGZipCodec() throws IOException {
+        final byte[] bytes = generateText(10 * BLOCK_SIZE + 123);
+        final CompressionCodec codec = CompressionCodecs.forName("gzip-adaptive", new CompressionOptions());
+        assertEquals(AdaptiveGZipCodec.NAME, codec.getName());
+        assertEquals(".gz", codec.getFileExtension());
+        final byte[] compressed = compress(codec, bytes);
+        assertTrue(compressed.length < bytes.length);
+        assertArrayEquals(bytes, decompress(compressed));
+        assertArrayEquals(new byte[0], decompress(compress(codec, new byte[0])));
+    }
+
+    @Test
+    public void testIncompressibleBlocksStored() throws IOException {
+        final byte[] bytes = new byte[40 * BLOCK_SIZE];
+        new Random(42).nextBytes(bytes);
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final CompressionCodec codec = new AdaptiveGZipCodec(Deflater.BEST_SPEED, BLOCK_SIZE, metrics);
+        assertArrayEquals(bytes, decompress(compress(codec, bytes)));
+        assertEquals(40, metrics.levels.size());
+        assertEquals(Deflater.BEST_SPEED, (int) metrics.levels.get(0));
+        // One compressed block to find out, then stored ones until the next probe.
+        for (int i = 1; i <= AdaptiveGZipOutputStream.STORED_BLOCKS_BEFORE_PROBE; i++) {
+            assertEquals(Deflater.NO_COMPRESSION, (int) metrics.levels.get(i));
+        }
+        assertTrue(metrics.levels.get(AdaptiveGZipOutputStream.STORED_BLOCKS_BEFORE_PROBE + 1) > Deflater.NO_COMPRESSION);
+    }
+
+    @Test
+    public void testSlowDownstreamRaisesLevel() throws IOException {
+        final byte[] bytes = generateText(8 * BLOCK_SIZE);
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final CompressionCodec codec = new AdaptiveGZipCodec(Deflater.BEST_SPEED, BLOCK_SIZE, metrics);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (
+                OutputStream outputStream = codec.wrap(new FilterOutputStream(bos) {
+                    @Override
+                    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(50);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        out.write(b, off, len);
+                    }
+                })
+        ) {
+            outputStream.write(bytes);
+        }
+        assertArrayEquals(bytes, decompress(bos.toByteArray()));
+        assertEquals(Deflater.BEST_SPEED, (int) metrics.levels.get(0));
+        assertEquals(Deflater.BEST_SPEED + 7, (int) metrics.levels.get(metrics.levels.size() - 1));
+    }
+
+    @Test
+    public void testNextLevel() {
+        assertEquals(5, AdaptiveGZipOutputStream.nextLevel(6, 100, 200, 100));
+        assertEquals(7, AdaptiveGZipOutputStream.nextLevel(6, 100, 100, 300));
+        assertEquals(6, AdaptiveGZipOutputStream.nextLevel(6, 100, 100, 150));
+        assertEquals(Deflater.BEST_SPEED, AdaptiveGZipOutputStream.nextLevel(Deflater.BEST_SPEED, 100, 200, 100));
+        assertEquals(Deflater.BEST_COMPRESSION, AdaptiveGZipOutputStream.nextLevel(Deflater.BEST_COMPRESSION, 100, 100, 300));
+    }
+
+    private static byte[] compress(final CompressionCodec codec, final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length);
+        try (
+                OutputStream outputStream = codec.wrap(bos)
+        ) {
+            outputStream.write(bytes);
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] decompress(final byte[] bytes) throws IOException {
+        try (
+                InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))
+        ) {
+            return ByteStreams.toByteArray(inputStream);
+        }
+    }
+
+    private static byte[] generateText(final int size) {
+        final Random random = new Random(7);
+        final StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            sb.append("row-").append(random.nextInt(1000)).append(",value-").append(random.nextInt(100)).append('\n');
+        }
+        return sb.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class RecordingMetrics implements StreamingMetrics {
+
+        private final List<Integer> levels = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void recordCompressionLevel(@Nonnull final String codec, final int level, final long bytesIn) {
+            assertEquals(AdaptiveGZipCodec.NAME, codec);
+            levels.add(level);
+        }
+
+    }
+
+}
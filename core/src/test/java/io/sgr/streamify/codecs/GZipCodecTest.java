@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.codecs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+public class GZipCodecTest {
+
+    @Test
+    public void testGZipCodec() throws IOException {
+        final byte[] bytes = generateLargeBytes();
+        for (int level : new int[]{Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION}) {
+            final CompressionCodec codec = CompressionCodecs.forName("GZIP", new CompressionOptions().setLevel(level));
+            assertEquals(GZipCodec.NAME, codec.getName());
+            assertEquals(".gz", codec.getFileExtension());
+            final byte[] compressed = compress(codec, bytes);
+            if (level != Deflater.NO_COMPRESSION) {
+                assertTrue(compressed.length < bytes.length);
+            }
+            assertArrayEquals(bytes, decompress(compressed));
+        }
+    }
+
+    @Test
+    public void testParallelGZipCodec() throws IOException {
+        final byte[] bytes = generateLargeBytes();
+        final CompressionCodec codec = new GZipCodec(new CompressionOptions().setThreads(4).setStrategy(Deflater.FILTERED));
+        assertArrayEquals(bytes, decompress(compress(codec, bytes)));
+    }
+
+    @Test
+    public void testDeflatersBeenReused() {
+        final DeflaterPool pool = new DeflaterPool(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY, true, 1);
+        final Deflater deflater = pool.borrow();
+        pool.release(deflater);
+        assertSame(deflater, pool.borrow());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownCodec() {
+        CompressionCodecs.forName("no-such-codec", new CompressionOptions());
+    }
+
+    private static byte[] compress(final CompressionCodec codec, final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length);
+        try (
+                OutputStream outputStream = codec.wrap(bos)
+        ) {
+            outputStream.write(bytes);
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] decompress(final byte[] bytes) throws IOException {
+        try (
+                InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))
+        ) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    private static byte[] generateLargeBytes() {
+        StringBuilder rawText = new StringBuilder();
+        int round = 10000;
+        while (round > 0) {
+            rawText.append(UUID.randomUUID().toString());
+            --round;
+        }
+        return rawText.toString().getBytes();
+    }
+
+}
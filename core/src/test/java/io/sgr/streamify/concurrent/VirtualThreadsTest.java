@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void testExecutorOnlyWhenSupported() throws Exception {
+        final Optional<ExecutorService> executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        assertEquals(VirtualThreads.isSupported(), executor.isPresent());
+        assertEquals(VirtualThreads.isSupported(), VirtualThreads.newThreadFactory("test-").isPresent());
+        if (!executor.isPresent()) {
+            return;
+        }
+        try {
+            final Thread thread = executor.get().submit(Thread::currentThread).get(10, TimeUnit.SECONDS);
+            assertTrue(thread.getName().startsWith("test-"));
+            assertNotSame(Thread.currentThread(), thread);
+        } finally {
+            executor.get().shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingNamePrefix() {
+        VirtualThreads.newThreadFactory("");
+    }
+
+}
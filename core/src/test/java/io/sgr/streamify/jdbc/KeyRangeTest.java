@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class KeyRangeTest {
+
+    @Test
+    public void testSplit() {
+        final List<KeyRange> ranges = KeyRange.split(0, 10, 3);
+        assertEquals(3, ranges.size());
+        assertEquals(0, ranges.get(0).getFrom());
+        assertEquals(4, ranges.get(0).getTo());
+        assertEquals(4, ranges.get(1).getFrom());
+        assertEquals(7, ranges.get(1).getTo());
+        assertEquals(7, ranges.get(2).getFrom());
+        assertEquals(10, ranges.get(2).getTo());
+    }
+
+    @Test
+    public void testSplitIntoMoreThanKeys() {
+        final List<KeyRange> ranges = KeyRange.split(5, 7, 4);
+        assertEquals(2, ranges.size());
+        assertEquals(5, ranges.get(0).getFrom());
+        assertEquals(7, ranges.get(1).getTo());
+        assertEquals(0, KeyRange.split(5, 5, 4).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        KeyRange.split(10, 0, 2);
+    }
+
+}
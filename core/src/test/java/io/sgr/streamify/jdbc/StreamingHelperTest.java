@@ -17,25 +17,54 @@
 
 package io.sgr.streamify.jdbc;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.sgr.streamify.Abortable;
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.channels.FanOutStreamingChannel;
+import io.sgr.streamify.channels.RollingStreamingChannel;
+import io.sgr.streamify.channels.SchedulingStreamingChannel;
 import io.sgr.streamify.jdbc.exceptions.StreamElementProcessingException;
+import io.sgr.streamify.jdbc.rows.ColumnBatch;
+import io.sgr.streamify.jdbc.rows.RowBuffer;
+import io.sgr.streamify.metrics.MeteredStreamingChannel;
+import io.sgr.streamify.metrics.StreamingMetrics;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
@@ -53,6 +82,10 @@ public class StreamingHelperTest {
     private PreparedStatement ps;
     @Mock
     private ResultSet rs;
+    @Mock
+    private ResultSet anotherRs;
+    @Mock
+    private ResultSetMetaData metaData;
 
     @Test
     public void testIfResourcesBeenClosed() throws SQLException {
@@ -72,6 +105,7 @@ public class StreamingHelperTest {
             assertTrue(stream.allMatch(idValue::equals));
         }
 
+        verify(ps, times(1)).setFetchSize(StreamingOptions.DEFAULT_FETCH_SIZE);
         verify(rs, times(1)).close();
         verify(ps, times(1)).close();
         verify(connection, times(1)).close();
@@ -170,6 +204,310 @@ public class StreamingHelperTest {
         verify(connection, times(1)).close();
     }
 
+    @Test
+    public void testPrefetch() throws SQLException {
+        final String sql = "SELECT col FROM some_table";
+        final String columnName = "col";
+
+        when(dataSource.getConnection()).thenReturn(connection);
+        //noinspection MagicConstant
+        when(connection.prepareStatement(eq(sql), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, true, false);
+        when(rs.getString(eq(columnName))).thenReturn("a", "b", "c");
+        final StreamingOptions options = new StreamingOptions().setPrefetch(true).setPrefetchBatchSize(2).setPrefetchBatches(1);
+        try (
+                Stream<String> stream = StreamingHelper.queryToStream(dataSource, sql, null, rs -> rs.getString(columnName), options)
+        ) {
+            assertEquals("abc", stream.collect(Collectors.joining()));
+        }
+
+        verify(rs, times(1)).close();
+        verify(ps, times(1)).close();
+        verify(connection, times(1)).close();
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseWhenPrefetchNeverStarted() throws SQLException {
+        final String sql = "SELECT col FROM some_table";
+
+        when(dataSource.getConnection()).thenReturn(connection);
+        //noinspection MagicConstant
+        when(connection.prepareStatement(eq(sql), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        // Like a saturated pool which discards what it can't run.
+        final StreamingOptions options = new StreamingOptions().setPrefetch(true).setPrefetchExecutor(task -> {
+        });
+        StreamingHelper.queryToStream(dataSource, sql, null, rs -> rs.getString(1), options).close();
+
+        verify(rs, times(1)).close();
+        verify(ps, times(1)).close();
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void testExceptionWhenPrefetching() throws SQLException {
+        final String sql = "SELECT col FROM some_table";
+
+        when(dataSource.getConnection()).thenReturn(connection);
+        //noinspection MagicConstant
+        when(connection.prepareStatement(eq(sql), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenThrow(new SQLException("Something was wrong!"));
+        try (
+                Stream<String> stream = StreamingHelper.queryToStream(dataSource, sql, null, rs -> rs.getString(1), new StreamingOptions().setPrefetch(true))
+        ) {
+            //noinspection ResultOfMethodCallIgnored
+            stream.count();
+            fail("Expecting StreamElementProcessingException here!");
+        } catch (StreamElementProcessingException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+
+        verify(rs, times(1)).close();
+        verify(ps, times(1)).close();
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void testPartitionedStream() throws SQLException {
+        final String sql = "SELECT col FROM some_table WHERE id >= ? AND id < ?";
+        final String columnName = "col";
+
+        when(dataSource.getConnection()).thenReturn(connection);
+        //noinspection MagicConstant
+        when(connection.prepareStatement(eq(sql), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs, anotherRs);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getString(eq(columnName))).thenReturn("a");
+        when(anotherRs.next()).thenReturn(true, false);
+        when(anotherRs.getString(eq(columnName))).thenReturn("b");
+        try (
+                Stream<String> stream = StreamingHelper.queryToParallelStream(
+                        dataSource, sql, KeyRange.split(0, 100, 2), rs -> rs.getString(columnName), new StreamingOptions())
+        ) {
+            assertTrue(stream.isParallel());
+            assertEquals("aab", stream.sorted().collect(Collectors.joining()));
+        }
+
+        verify(ps, times(2)).setLong(eq(1), anyLong());
+        verify(ps, times(2)).setLong(eq(2), anyLong());
+        verify(rs, times(1)).close();
+        verify(anotherRs, times(1)).close();
+        verify(ps, times(2)).close();
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    public void testParallelStreamReportsRowsWhenCutShort() throws SQLException {
+        final String sql = "SELECT col FROM some_table WHERE id >= ? AND id < ?";
+        final String columnName = "col";
+
+        when(dataSource.getConnection()).thenReturn(connection);
+        //noinspection MagicConstant
+        when(connection.prepareStatement(eq(sql), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getString(eq(columnName))).thenReturn("a");
+        final AtomicLong reported = new AtomicLong();
+        final StreamingOptions options = new StreamingOptions().setMetrics(new StreamingMetrics() {
+            @Override
+            public void recordRows(final long rows) {
+                reported.addAndGet(rows);
+            }
+        });
+        try (
+                Stream<String> stream = StreamingHelper.queryToParallelStream(
+                        dataSource, sql, KeyRange.split(0, 100, 2), rs -> rs.getString(columnName), options)
+        ) {
+            assertEquals(3, stream.sequential().limit(3).collect(Collectors.toList()).size());
+        }
+
+        assertEquals(3, reported.get());
+        verify(rs, times(1)).close();
+        verify(ps, times(1)).close();
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void testRowStream() throws SQLException {
+        final String sql = "SELECT id, name FROM some_table";
+
+        mockTwoColumnsThreeRows(sql);
+        try (
+                Stream<RowBuffer> stream = StreamingHelper.queryToRowStream(dataSource, sql, null, new StreamingOptions())
+        ) {
+            final Set<RowBuffer> rows = Collections.newSetFromMap(new IdentityHashMap<>());
+            assertEquals("1:a,2:null,3:c", stream.peek(rows::add).map(row -> row.getLong(1) + ":" + row.getObject(2)).collect(Collectors.joining(",")));
+            assertEquals(1, rows.size());
+        }
+
+        verify(rs, times(1)).close();
+        verify(ps, times(1)).close();
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void testRowStreamRejectsWrongColumnKind() throws SQLException {
+        final String sql = "SELECT id, name FROM some_table";
+
+        mockTwoColumnsThreeRows(sql);
+        try (
+                Stream<RowBuffer> stream = StreamingHelper.queryToRowStream(dataSource, sql, null, new StreamingOptions())
+        ) {
+            final RowBuffer row = stream.findFirst().orElseThrow(IllegalStateException::new);
+            assertTrue(row.getBoolean(1));
+            try {
+                row.getLong(2);
+                fail("Expecting IllegalArgumentException here!");
+            } catch (IllegalArgumentException e) {
+                assertEquals("Column 2 is held as OBJECT!", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testBatchStream() throws SQLException {
+        final String sql = "SELECT id, name FROM some_table";
+
+        mockTwoColumnsThreeRows(sql);
+        try (
+                Stream<ColumnBatch> stream = StreamingHelper.queryToBatchStream(dataSource, sql, null, 2, new StreamingOptions())
+        ) {
+            assertEquals("1:a,2:null|3:c", stream.map(batch -> {
+                final long[] ids = batch.getLongs(1);
+                final Object[] names = batch.getObjects(2);
+                final StringJoiner joiner = new StringJoiner(",");
+                for (int i = 0; i < batch.size(); i++) {
+                    joiner.add(ids[i] + ":" + (batch.isNull(2, i) ? null : names[i]));
+                }
+                return joiner.toString();
+            }).collect(Collectors.joining("|")));
+        }
+
+        verify(rs, times(1)).close();
+        verify(ps, times(1)).close();
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void testAbortChannelStreamWhenSerializingFails() throws SQLException, IOException {
+        final String sql = "SELECT col FROM some_table";
+
+        when(dataSource.getConnection()).thenReturn(connection);
+        //noinspection MagicConstant
+        when(connection.prepareStatement(eq(sql), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        final AbortableOutputStream out = new AbortableOutputStream();
+        final StreamingRequest request = new StreamingRequest() {
+            @Nonnull
+            @Override
+            public String getId() {
+                return "test";
+            }
+
+            @Nonnull
+            @Override
+            public String getContentType() {
+                return "application/x-jsonlines";
+            }
+
+            @Override
+            public Optional<Integer> getBufferSize() {
+                return Optional.empty();
+            }
+        };
+        try {
+            StreamingHelper.queryToChannel(dataSource, sql, null, (resultSet, stream) -> {
+                stream.write('x');
+                throw new SQLException("Something wrong when serializing!");
+            }, (req, identifier) -> out, request, "export.jsonl", new StreamingOptions());
+            fail("Expecting SQLException here!");
+        } catch (SQLException e) {
+            assertEquals("Something wrong when serializing!", e.getMessage());
+        }
+
+        assertTrue(out.aborted);
+        assertFalse(out.closed);
+        verify(rs, times(1)).close();
+        verify(ps, times(1)).close();
+        verify(connection, times(1)).close();
+    }
+
+    @Test
+    public void testAbortDecoratedChannelStreamsWhenSerializingFails() throws SQLException, IOException, InterruptedException {
+        final String sql = "SELECT col FROM some_table";
+
+        when(dataSource.getConnection()).thenReturn(connection);
+        //noinspection MagicConstant
+        when(connection.prepareStatement(eq(sql), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        final Collection<AbortableOutputStream> opened = new ConcurrentLinkedQueue<>();
+        final FanOutStreamingChannel replicas = new FanOutStreamingChannel(Arrays.asList((req, identifier) -> {
+            final AbortableOutputStream out = new AbortableOutputStream();
+            opened.add(out);
+            return out;
+        }, (req, identifier) -> {
+            final AbortableOutputStream out = new AbortableOutputStream();
+            opened.add(out);
+            return out;
+        }));
+        final MeteredStreamingChannel channel = new MeteredStreamingChannel(
+                new SchedulingStreamingChannel(new RollingStreamingChannel(replicas).setMaxPartRecords(1000L)), StreamingMetrics.NOOP);
+        final StreamingRequest request = new StreamingRequest() {
+            @Nonnull
+            @Override
+            public String getId() {
+                return "test";
+            }
+
+            @Nonnull
+            @Override
+            public String getContentType() {
+                return "application/x-jsonlines";
+            }
+
+            @Override
+            public Optional<Integer> getBufferSize() {
+                return Optional.empty();
+            }
+        };
+        try {
+            StreamingHelper.queryToChannel(dataSource, sql, null, (resultSet, stream) -> {
+                stream.write("{}\n{}\n".getBytes(UTF_8));
+                throw new SQLException("Something wrong when serializing!");
+            }, channel, request, "export.jsonl", new StreamingOptions());
+            fail("Expecting SQLException here!");
+        } catch (SQLException e) {
+            assertEquals("Something wrong when serializing!", e.getMessage());
+        }
+
+        assertEquals(2, opened.size());
+        for (AbortableOutputStream out : opened) {
+            assertTrue(out.finished.await(10, TimeUnit.SECONDS));
+            assertTrue(out.aborted);
+            assertFalse(out.closed);
+        }
+        verify(connection, times(1)).close();
+    }
+
+    private void mockTwoColumnsThreeRows(final String sql) throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        //noinspection MagicConstant
+        when(connection.prepareStatement(eq(sql), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY))).thenReturn(ps);
+        when(ps.executeQuery()).thenReturn(rs);
+        when(rs.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(2);
+        when(metaData.getColumnLabel(1)).thenReturn("id");
+        when(metaData.getColumnLabel(2)).thenReturn("name");
+        when(metaData.getColumnType(1)).thenReturn(Types.BIGINT);
+        when(metaData.getColumnType(2)).thenReturn(Types.VARCHAR);
+        when(rs.next()).thenReturn(true, true, true, false);
+        when(rs.getLong(1)).thenReturn(1L, 2L, 3L);
+        when(rs.getObject(2)).thenReturn("a", null, "c");
+        when(rs.wasNull()).thenReturn(false, false, false, true, false, false);
+    }
+
     private static class ExceptionOnlyRowConverter<T> implements RowConverter<T> {
         @Nullable
         @Override
@@ -178,4 +516,27 @@ public class StreamingHelperTest {
         }
     }
 
-}
\ No newline at end of file
+    private static class AbortableOutputStream extends OutputStream implements Abortable {
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean aborted;
+        private volatile boolean closed;
+
+        @Override
+        public void write(final int b) {
+            // Discard
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            finished.countDown();
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+            finished.countDown();
+        }
+    }
+
+}
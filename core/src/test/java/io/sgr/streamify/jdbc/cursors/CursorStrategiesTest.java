@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.cursors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CursorStrategiesTest {
+
+    @Mock
+    private Connection connection;
+    @Mock
+    private DatabaseMetaData metaData;
+    @Mock
+    private PreparedStatement ps;
+
+    @Test
+    public void testDetectByProductName() throws SQLException {
+        assertTrue(CursorStrategies.detect(connection) instanceof GenericCursorStrategy);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("MySQL", "MariaDB", "PostgreSQL", "H2");
+        assertTrue(CursorStrategies.detect(connection) instanceof MySqlCursorStrategy);
+        assertTrue(CursorStrategies.detect(connection) instanceof MySqlCursorStrategy);
+        assertTrue(CursorStrategies.detect(connection) instanceof PostgreSqlCursorStrategy);
+        assertTrue(CursorStrategies.detect(connection) instanceof GenericCursorStrategy);
+    }
+
+    @Test
+    public void testMySqlCursorFetch() throws Exception {
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getURL()).thenReturn("jdbc:mysql://localhost/db", "jdbc:mysql://localhost/db?useCursorFetch=true");
+        final CursorStrategy strategy = new MySqlCursorStrategy();
+        strategy.apply(connection, ps, 500).close();
+        verify(ps).setFetchSize(Integer.MIN_VALUE);
+        strategy.apply(connection, ps, 500).close();
+        verify(ps).setFetchSize(500);
+    }
+
+    @Test
+    public void testPostgreSqlRestoresAutoCommit() throws Exception {
+        when(connection.getAutoCommit()).thenReturn(true);
+        try (
+                AutoCloseable ignored = new PostgreSqlCursorStrategy().apply(connection, ps, 500)
+        ) {
+            verify(ps).setFetchSize(500);
+            verify(connection).setAutoCommit(false);
+            verify(connection, never()).setAutoCommit(true);
+        }
+        final InOrder order = inOrder(connection);
+        order.verify(connection).rollback();
+        order.verify(connection).setAutoCommit(true);
+    }
+
+    @Test
+    public void testPostgreSqlRestoresAutoCommitWhenRollbackFails() throws Exception {
+        when(connection.getAutoCommit()).thenReturn(true);
+        doThrow(new SQLException("Connection lost!")).when(connection).rollback();
+        try (
+                AutoCloseable ignored = new PostgreSqlCursorStrategy().apply(connection, ps, 500)
+        ) {
+            verify(connection).setAutoCommit(false);
+        } catch (SQLException e) {
+            assertEquals("Connection lost!", e.getMessage());
+        }
+        verify(connection).setAutoCommit(true);
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.jdbc.serializers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResultSetSerializerTest {
+
+    @Mock
+    private ResultSet rs;
+    @Mock
+    private ResultSetMetaData metaData;
+
+    @Before
+    public void setUp() throws SQLException {
+        when(rs.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(4);
+        when(metaData.getColumnLabel(1)).thenReturn("id");
+        when(metaData.getColumnLabel(2)).thenReturn("name");
+        when(metaData.getColumnLabel(3)).thenReturn("price");
+        when(metaData.getColumnLabel(4)).thenReturn("active");
+        when(metaData.getColumnType(1)).thenReturn(Types.BIGINT);
+        when(metaData.getColumnType(2)).thenReturn(Types.VARCHAR);
+        when(metaData.getColumnType(3)).thenReturn(Types.DECIMAL);
+        when(metaData.getColumnType(4)).thenReturn(Types.BOOLEAN);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getLong(1)).thenReturn(-42L, Long.MIN_VALUE);
+        when(rs.getString(2)).thenReturn("Say \"h\u00e9llo\",\n\ud83d\ude00", (String) null);
+        when(rs.getBigDecimal(3)).thenReturn(new BigDecimal("1.50"), (BigDecimal) null);
+        when(rs.getBoolean(4)).thenReturn(true, false);
+        when(rs.wasNull()).thenReturn(false, false, false, true);
+    }
+
+    @Test
+    public void testJsonLines() throws SQLException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, new JsonLinesSerializer().serialize(rs, out));
+        assertEquals("{\"id\":-42,\"name\":\"Say \\\"h\u00e9llo\\\",\\n\ud83d\ude00\",\"price\":1.50,\"active\":true}\n"
+                + "{\"id\":-9223372036854775808,\"name\":null,\"price\":null,\"active\":null}\n", new String(out.toByteArray(), UTF_8));
+    }
+
+    @Test
+    public void testCsv() throws SQLException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, new CsvSerializer().serialize(rs, out));
+        assertEquals("id,name,price,active\r\n"
+                + "-42,\"Say \"\"h\u00e9llo\"\",\n\ud83d\ude00\",1.50,true\r\n"
+                + "-9223372036854775808,,,\r\n", new String(out.toByteArray(), UTF_8));
+    }
+
+    @Test
+    public void testCsvWithoutHeader() throws SQLException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, new CsvSerializer().setDelimiter(';').setHeader(false).serialize(rs, out));
+        assertEquals("-42;\"Say \"\"h\u00e9llo\"\",\n\ud83d\ude00\";1.50;true\r\n"
+                + "-9223372036854775808;;;\r\n", new String(out.toByteArray(), UTF_8));
+    }
+
+}
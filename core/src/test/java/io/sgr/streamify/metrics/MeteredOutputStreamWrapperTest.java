@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.metrics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.sgr.streamify.codecs.GZipCodec;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+public class MeteredOutputStreamWrapperTest {
+
+    @Test
+    public void testBytesAndCompressionReported() throws IOException {
+        final Map<String, AtomicLong> bytes = new ConcurrentHashMap<>();
+        final AtomicLong compressedIn = new AtomicLong();
+        final AtomicLong compressedOut = new AtomicLong();
+        final StreamingMetrics metrics = new StreamingMetrics() {
+            @Override
+            public void recordBytes(@Nonnull final String stage, final long count) {
+                bytes.computeIfAbsent(stage, key -> new AtomicLong()).addAndGet(count);
+            }
+
+            @Override
+            public void recordCompression(@Nonnull final String codec, final long bytesIn, final long bytesOut) {
+                assertEquals("gzip", codec);
+                compressedIn.addAndGet(bytesIn);
+                compressedOut.addAndGet(bytesOut);
+            }
+        };
+        final byte[] content = new byte[3 * MeteredOutputStream.REPORT_THRESHOLD];
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        try (OutputStream out = MeteredOutputStreamWrapper.of(new GZipCodec(), metrics).wrap(received)) {
+            out.write(content);
+            out.write(1);
+        }
+        assertEquals(content.length + 1, bytes.get("gzip.in").get());
+        assertEquals(received.size(), bytes.get("gzip.out").get());
+        assertEquals(content.length + 1, compressedIn.get());
+        assertEquals(received.size(), compressedOut.get());
+        assertTrue(compressedOut.get() < compressedIn.get());
+    }
+
+    @Test
+    public void testNotMeasuredWithoutMetrics() {
+        final GZipCodec codec = new GZipCodec();
+        assertEquals(codec, MeteredOutputStreamWrapper.of(codec, StreamingMetrics.NOOP));
+    }
+
+    @Test
+    public void testCountedWithoutCompression() throws IOException {
+        final AtomicLong reported = new AtomicLong();
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final byte[] content = {1, 2, 3, 4, 5};
+        try (MeteredOutputStream out = new MeteredOutputStream(received, new StreamingMetrics() {
+            @Override
+            public void recordBytes(@Nonnull final String stage, final long count) {
+                reported.addAndGet(count);
+            }
+        }, MeteredStreamingChannel.STAGE)) {
+            out.write(content, 1, 3);
+            assertEquals(3, out.getCount());
+            assertEquals(0, reported.get());
+        }
+        assertEquals(3, reported.get());
+        assertArrayEquals(new byte[]{2, 3, 4}, received.toByteArray());
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.reactive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PublisherChunkSourceTest {
+
+    @Test
+    public void testCloseWithFullQueueFailsReader() {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final PublisherChunkSource source = new PublisherChunkSource(2);
+        source.onSubscribe(new Subscription() {
+            @Override
+            public void request(final long n) {
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+            }
+        });
+        source.onNext(ByteBuffer.allocate(1));
+        source.onNext(ByteBuffer.allocate(1));
+        source.onComplete();
+        source.close();
+        assertTrue(cancelled.get());
+        try {
+            source.readChunk((b, off, len) -> fail("Expecting no content once closed!"));
+            fail("Expecting reading to fail once closed!");
+        } catch (IOException e) {
+            assertEquals("Source closed!", e.getCause().getMessage());
+        }
+    }
+
+}
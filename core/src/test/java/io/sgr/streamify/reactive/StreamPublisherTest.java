@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.reactive;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class StreamPublisherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPublishAll() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final Stream<String> stream = IntStream.range(0, 1000).mapToObj(Integer::toString).onClose(closed::countDown);
+        final PublisherChunkSource source = new PublisherChunkSource(4);
+        new StreamPublisher<>(stream, value -> ByteBuffer.wrap((value + "\n").getBytes(UTF_8)), executor).subscribe(source);
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        //noinspection StatementWithEmptyBody
+        while (source.readChunk(received::write)) {
+            // Keep reading.
+        }
+        final String[] lines = new String(received.toByteArray(), UTF_8).split("\n");
+        assertEquals(1000, lines.length);
+        assertEquals("999", lines[999]);
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDemandBoundsProduction() throws Exception {
+        final AtomicInteger pulled = new AtomicInteger();
+        final CountDownLatch closed = new CountDownLatch(1);
+        final Stream<Integer> endless = Stream.iterate(0, i -> i + 1).peek(i -> pulled.incrementAndGet()).onClose(closed::countDown);
+        final PublisherChunkSource source = new PublisherChunkSource(4);
+        new StreamPublisher<>(endless, i -> ByteBuffer.allocate(4).putInt(0, i), executor).subscribe(source);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(source.readChunk((chunk, offset, length) -> assertEquals(4, length)));
+        }
+        // Give the publisher a chance to run ahead, it shouldn't go beyond what has been requested.
+        Thread.sleep(200);
+        assertTrue(pulled.get() <= 3 + 4);
+        source.close();
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailurePropagated() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final Stream<Integer> stream = IntStream.range(0, 10).boxed().onClose(closed::countDown);
+        final PublisherChunkSource source = new PublisherChunkSource();
+        new StreamPublisher<>(stream, i -> {
+            if (i == 5) {
+                throw new IllegalStateException("Something was wrong!");
+            }
+            return ByteBuffer.allocateDirect(1);
+        }, executor).subscribe(source);
+        try {
+            //noinspection StatementWithEmptyBody
+            while (source.readChunk((chunk, offset, length) -> assertEquals(1, length))) {
+                // Keep reading.
+            }
+            fail("Expecting IOException here!");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+    }
+
+}
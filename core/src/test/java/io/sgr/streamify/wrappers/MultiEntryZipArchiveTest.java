@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.wrappers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+public class MultiEntryZipArchiveTest {
+
+    @Test
+    public void testSequentialAndConcurrentEntries() throws Exception {
+        final Map<String, byte[]> contents = new HashMap<>();
+        contents.put("first.jsonl", generateLargeBytes(2000));
+        contents.put("second.jsonl", generateLargeBytes(50000));
+        contents.put("th\u00efrd.jsonl", generateLargeBytes(30000));
+        contents.put("empty.jsonl", new byte[0]);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (MultiEntryZipArchive archive = new MultiEntryZipArchive(bos)) {
+            try (OutputStream entry = archive.openEntry("first.jsonl")) {
+                entry.write(contents.get("first.jsonl"));
+            }
+            final OutputStream second = archive.openEntry("second.jsonl");
+            final OutputStream third = archive.openEntry("th\u00efrd.jsonl");
+            final CompletableFuture<Void> writing = CompletableFuture.runAsync(() -> {
+                try (OutputStream entry = third) {
+                    entry.write(contents.get("th\u00efrd.jsonl"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            try (OutputStream entry = second) {
+                final byte[] bytes = contents.get("second.jsonl");
+                entry.write(bytes[0]);
+                entry.write(bytes, 1, bytes.length - 1);
+            }
+            writing.get(10, TimeUnit.SECONDS);
+            archive.openEntry("empty.jsonl").close();
+        }
+        final byte[] zip = bos.toByteArray();
+
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip), UTF_8)) {
+            int count = 0;
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                assertArrayEquals(contents.get(entry.getName()), readFully(in));
+                count++;
+            }
+            assertEquals(4, count);
+        }
+        final Path file = Files.createTempFile("streamify-test-", ".zip");
+        try {
+            Files.write(file, zip);
+            try (ZipFile zipFile = new ZipFile(file.toFile(), UTF_8)) {
+                assertEquals(4, zipFile.size());
+                for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                    final ZipEntry entry = zipFile.getEntry(content.getKey());
+                    assertEquals(content.getValue().length, entry.getSize());
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        assertArrayEquals(content.getValue(), readFully(in));
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testZip64EntryCount() throws IOException {
+        final int count = 70000;
+        final Path file = Files.createTempFile("streamify-test-", ".zip");
+        try {
+            try (MultiEntryZipArchive archive = new MultiEntryZipArchive(Files.newOutputStream(file))) {
+                for (int i = 0; i < count; i++) {
+                    try (OutputStream entry = archive.openEntry(i + ".txt")) {
+                        entry.write(Integer.toString(i).getBytes(UTF_8));
+                    }
+                }
+            }
+            try (ZipFile zipFile = new ZipFile(file.toFile())) {
+                assertEquals(count, zipFile.size());
+                try (InputStream in = zipFile.getInputStream(zipFile.getEntry("69999.txt"))) {
+                    assertEquals("69999", new String(readFully(in), UTF_8));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testUnclosedEntryFailsArchive() throws IOException {
+        final MultiEntryZipArchive archive = new MultiEntryZipArchive(new ByteArrayOutputStream());
+        final OutputStream entry = archive.openEntry("unclosed.txt");
+        entry.write(1);
+        try {
+            archive.close();
+            fail("Expecting archive to fail with an entry left open!");
+        } catch (IOException e) {
+            assertEquals("Entry 'unclosed.txt' has not been closed!", e.getMessage());
+        }
+        try {
+            archive.openEntry("late.txt");
+            fail("Expecting no more entries once closed!");
+        } catch (IOException e) {
+            assertNull(e.getCause());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateEntry() throws IOException {
+        try (MultiEntryZipArchive archive = new MultiEntryZipArchive(new ByteArrayOutputStream())) {
+            archive.openEntry("same.txt").close();
+            archive.openEntry("same.txt");
+        }
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        int len;
+        while ((len = in.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] generateLargeBytes(final int round) {
+        final StringBuilder rawText = new StringBuilder();
+        for (int i = 0; i < round; i++) {
+            rawText.append(UUID.randomUUID().toString());
+        }
+        return rawText.toString().getBytes(UTF_8);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.wrappers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.io.ByteStreams;
+import io.sgr.streamify.OutputStreamWrapper;
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.codecs.CompressionCodec;
+import io.sgr.streamify.codecs.CompressionOptions;
+import io.sgr.streamify.codecs.GZipCodec;
+import io.sgr.streamify.metrics.StreamingMetrics;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nonnull;
+
+public class OutputStreamWrappersTest {
+
+    @Test
+    public void testNoWrappers() throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertSame(bos, OutputStreamWrappers.apply(bos, null, 1024, StreamingMetrics.NOOP));
+        assertSame(bos, OutputStreamWrappers.apply(bos, Collections.emptyList(), 1024, StreamingMetrics.NOOP));
+        assertSame(bos, OutputStreamWrappers.apply(bos, new TestRequest(null).getWrappers(), 1024, StreamingMetrics.NOOP));
+    }
+
+    @Test
+    public void testWrappersAppliedInOrder() throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final OutputStreamWrapper upperCase = out -> new FilterOutputStream(out) {
+            @Override
+            public void write(final int b) throws IOException {
+                out.write(Character.toUpperCase(b));
+            }
+        };
+        final OutputStreamWrapper reversed = out -> new FilterOutputStream(out) {
+            @Override
+            public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+                final byte[] copy = Arrays.copyOfRange(b, off, off + len);
+                for (int i = copy.length - 1; i >= 0; i--) {
+                    out.write(copy[i]);
+                }
+            }
+        };
+        try (OutputStream out = OutputStreamWrappers.apply(bos, Arrays.asList(upperCase, reversed), 1024, StreamingMetrics.NOOP)) {
+            out.write("abc".getBytes(UTF_8));
+        }
+        assertEquals("CBA", new String(bos.toByteArray(), UTF_8));
+    }
+
+    @Test
+    public void testSmallWritesCoalesced() throws IOException {
+        final AtomicInteger writes = new AtomicInteger();
+        final OutputStreamWrapper counting = out -> new FilterOutputStream(out) {
+            @Override
+            public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+                writes.incrementAndGet();
+                out.write(b, off, len);
+            }
+        };
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final byte[] row = "{\"id\":1}\n".getBytes(UTF_8);
+        try (OutputStream out = OutputStreamWrappers.apply(bos, Collections.singletonList(counting), 1024, StreamingMetrics.NOOP)) {
+            for (int i = 0; i < 1000; i++) {
+                out.write(row);
+            }
+            out.write('x');
+            out.write(new byte[4096]);
+        }
+        assertEquals(row.length * 1000 + 1 + 4096, bos.size());
+        assertEquals(row.length * 1000 / 1024 + 2, writes.get());
+    }
+
+    @Test
+    public void testCompressionCodecOfRequest() throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final byte[] bytes = "Hello, world!\n".getBytes(UTF_8);
+        final StreamingRequest request = new TestRequest(new GZipCodec(new CompressionOptions()));
+        try (OutputStream out = OutputStreamWrappers.apply(bos, request.getWrappers(), 1024, StreamingMetrics.NOOP)) {
+            out.write(bytes);
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            assertArrayEquals(bytes, ByteStreams.toByteArray(in));
+        }
+    }
+
+    private static final class TestRequest implements StreamingRequest {
+
+        private final CompressionCodec codec;
+
+        private TestRequest(final CompressionCodec codec) {
+            this.codec = codec;
+        }
+
+        @Nonnull
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Nonnull
+        @Override
+        public String getContentType() {
+            return "text/plain";
+        }
+
+        @Override
+        public Optional<Integer> getBufferSize() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<CompressionCodec> getCompressionCodec() {
+            return Optional.ofNullable(codec);
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.wrappers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+public class ParallelGZipOutputStreamWrapperTest {
+
+    @Test
+    public void testParallelGZip() throws IOException {
+        final byte[] bytes = generateLargeBytes();
+        final byte[] compressed = compress(new ParallelGZipOutputStreamWrapper(4), bytes);
+        assertTrue(compressed.length < bytes.length);
+        assertArrayEquals(bytes, decompress(compressed));
+    }
+
+    @Test
+    public void testParallelGZipWithSmallBlocks() throws IOException {
+        final byte[] bytes = generateLargeBytes();
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (boolean primeDictionary : new boolean[]{true, false}) {
+                final ParallelGZipOutputStreamWrapper wrapper =
+                        new ParallelGZipOutputStreamWrapper(executor, 1000, 2, Deflater.BEST_SPEED, primeDictionary);
+                assertArrayEquals(bytes, decompress(compress(wrapper, bytes)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFlushAndEmptyStream() throws IOException {
+        final ParallelGZipOutputStreamWrapper wrapper = new ParallelGZipOutputStreamWrapper(2);
+        assertArrayEquals(new byte[0], decompress(compress(wrapper, new byte[0])));
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (
+                OutputStream outputStream = wrapper.wrap(bos)
+        ) {
+            outputStream.write("some".getBytes());
+            outputStream.flush();
+            outputStream.write("thing".getBytes());
+        }
+        assertArrayEquals("something".getBytes(), decompress(bos.toByteArray()));
+    }
+
+    private static byte[] compress(final ParallelGZipOutputStreamWrapper wrapper, final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length);
+        final Random random = new Random();
+        try (
+                OutputStream outputStream = wrapper.wrap(bos)
+        ) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                final int len = Math.min(bytes.length - offset, random.nextInt(5000));
+                outputStream.write(bytes, offset, len);
+                offset += len;
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] decompress(final byte[] bytes) throws IOException {
+        try (
+                InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))
+        ) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    private static byte[] generateLargeBytes() {
+        StringBuilder rawText = new StringBuilder();
+        int round = 10000;
+        while (round > 0) {
+            rawText.append(UUID.randomUUID().toString());
+            --round;
+        }
+        return rawText.toString().getBytes();
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.codecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import io.sgr.streamify.codecs.CompressionCodec;
+import io.sgr.streamify.codecs.CompressionOptions;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * LZ4 frame format, readable by the {@code lz4} command line tool. Levels above 0 switch to the high compression
+ * compressor, which is a lot slower but still decompresses just as fast.
+ */
+public class Lz4FrameCodec implements CompressionCodec {
+
+    public static final String NAME = "lz4";
+
+    private final LZ4Compressor compressor;
+    private final LZ4FrameOutputStream.BLOCKSIZE blockSize;
+
+    public Lz4FrameCodec() {
+        this(new CompressionOptions());
+    }
+
+    public Lz4FrameCodec(@Nonnull final CompressionOptions options) {
+        this(options, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB);
+    }
+
+    public Lz4FrameCodec(@Nonnull final CompressionOptions options, @Nonnull final LZ4FrameOutputStream.BLOCKSIZE blockSize) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "Missing compression options!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(blockSize), "Missing block size!");
+        final int level = options.getLevel().orElse(0);
+        this.compressor = level > 0 ? LZ4Factory.fastestInstance().highCompressor(level) : LZ4Factory.fastestInstance().fastCompressor();
+        this.blockSize = blockSize;
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Nonnull
+    @Override
+    public String getFileExtension() {
+        return ".lz4";
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream wrap(@Nonnull final OutputStream outputStream) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(outputStream), "Missing output stream!");
+        return new LZ4FrameOutputStream(outputStream, blockSize, -1L, compressor, XXHashFactory.fastestInstance().hash32(),
+                LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE);
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.codecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdOutputStream;
+import io.sgr.streamify.codecs.CompressionCodec;
+import io.sgr.streamify.codecs.CompressionOptions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Zstandard, usually compresses better than gzip at a fraction of the CPU. When more than one thread is asked for,
+ * the native library compresses with that many worker threads of its own.
+ */
+public class ZstdCodec implements CompressionCodec {
+
+    public static final String NAME = "zstd";
+    public static final int DEFAULT_LEVEL = 3;
+
+    private final int level;
+    private final int workers;
+
+    public ZstdCodec() {
+        this(new CompressionOptions());
+    }
+
+    public ZstdCodec(@Nonnull final CompressionOptions options) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "Missing compression options!");
+        this.level = options.getLevel().orElse(DEFAULT_LEVEL);
+        checkArgument(level >= 1 && level <= Zstd.maxCompressionLevel(), "Invalid compression level!");
+        final int threads = options.getThreads().orElse(1);
+        this.workers = threads > 1 ? threads : 0;
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Nonnull
+    @Override
+    public String getFileExtension() {
+        return ".zst";
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream wrap(@Nonnull final OutputStream outputStream) throws IOException {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(outputStream), "Missing output stream!");
+        final ZstdOutputStream zstd = new ZstdOutputStream(outputStream, level);
+        if (workers > 0) {
+            zstd.setWorkers(workers);
+        }
+        return zstd;
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.codecs;
+
+import io.sgr.streamify.codecs.CompressionCodec;
+import io.sgr.streamify.codecs.CompressionCodecProvider;
+import io.sgr.streamify.codecs.CompressionOptions;
+
+import javax.annotation.Nonnull;
+
+public class ZstdCodecProvider implements CompressionCodecProvider {
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return ZstdCodec.NAME;
+    }
+
+    @Nonnull
+    @Override
+    public CompressionCodec create(@Nonnull final CompressionOptions options) {
+        return new ZstdCodec(options);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.codecs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.google.common.io.ByteStreams;
+import io.sgr.streamify.codecs.CompressionCodec;
+import io.sgr.streamify.codecs.CompressionCodecs;
+import io.sgr.streamify.codecs.CompressionOptions;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+public class FastCodecsTest {
+
+    @Test
+    public void testLz4FrameCodec() throws IOException {
+        final byte[] bytes = generateLargeBytes();
+        for (int level : new int[]{0, 9}) {
+            final CompressionCodec codec = CompressionCodecs.forName("lz4", new CompressionOptions().setLevel(level));
+            assertTrue(codec instanceof Lz4FrameCodec);
+            assertEquals(".lz4", codec.getFileExtension());
+            final byte[] compressed = compress(codec, bytes);
+            assertTrue(compressed.length < bytes.length);
+            try (
+                    InputStream in = new LZ4FrameInputStream(new ByteArrayInputStream(compressed))
+            ) {
+                assertArrayEquals(bytes, ByteStreams.toByteArray(in));
+            }
+        }
+    }
+
+    @Test
+    public void testZstdCodec() throws IOException {
+        final byte[] bytes = generateLargeBytes();
+        for (Integer threads : new Integer[]{null, 2}) {
+            final CompressionCodec codec = CompressionCodecs.forName("ZSTD", new CompressionOptions().setThreads(threads));
+            assertTrue(codec instanceof ZstdCodec);
+            assertEquals(".zst", codec.getFileExtension());
+            final byte[] compressed = compress(codec, bytes);
+            assertTrue(compressed.length < bytes.length);
+            try (
+                    InputStream in = new ZstdInputStream(new ByteArrayInputStream(compressed))
+            ) {
+                assertArrayEquals(bytes, ByteStreams.toByteArray(in));
+            }
+        }
+    }
+
+    private static byte[] compress(final CompressionCodec codec, final byte[] bytes) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length);
+        try (
+                OutputStream outputStream = codec.wrap(bos)
+        ) {
+            outputStream.write(bytes);
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] generateLargeBytes() {
+        StringBuilder rawText = new StringBuilder();
+        int round = 10000;
+        while (round > 0) {
+            rawText.append(UUID.randomUUID().toString());
+            --round;
+        }
+        return rawText.toString().getBytes();
+    }
+
+}
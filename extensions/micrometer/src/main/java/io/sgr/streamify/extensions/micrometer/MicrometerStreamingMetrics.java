@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.micrometer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.sgr.streamify.metrics.StreamingMetrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Reports {@link StreamingMetrics} to a Micrometer registry:
+ * <ul>
+ * <li>{@code streamify.bytes}, counter of bytes per {@code stage}</li>
+ * <li>{@code streamify.rows}, counter of rows read, its rate being rows per second</li>
+ * <li>{@code streamify.producer.blocked}, timer of producers waiting for consumers</li>
+ * <li>{@code streamify.time.to.first.byte}, timer of streams until their first byte was sent</li>
+ * <li>{@code streamify.requests}, timer of requests per {@code method} and {@code outcome}</li>
+ * <li>{@code streamify.compression.ratio}, summary of uncompressed to compressed size per {@code codec}</li>
+ * <li>{@code streamify.compression.level}, counter of bytes compressed per {@code codec} and {@code level} picked by
+ * adaptive codecs</li>
+ * <li>{@code streamify.scheduler.wait}, timer of streams waiting to be admitted by a scheduler</li>
+ * <li>{@code streamify.scheduler.queue}, gauge of streams waiting to be admitted, as last reported</li>
+ * </ul>
+ * Meters with tags given by the caller are registered on first use and cached, so reporting doesn't allocate.
+ */
+public class MicrometerStreamingMetrics implements StreamingMetrics {
+
+    public static final String PREFIX = "streamify.";
+
+    private static final String BYTES = "bytes";
+    private static final String SUCCESS = "success";
+    private static final String FAILURE = "failure";
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+
+    private final Counter rows;
+    private final Timer producerBlocked;
+    private final Timer timeToFirstByte;
+    private final Timer admissionWait;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final ConcurrentMap<String, Counter> bytes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> succeededRequests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> failedRequests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> compressionRatios = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> compressionLevels = new ConcurrentHashMap<>();
+
+    public MicrometerStreamingMetrics(@Nonnull final MeterRegistry registry) {
+        this(registry, Tags.empty());
+    }
+
+    /**
+     * @param registry
+     *         The registry to register meters with.
+     * @param tags
+     *         Common tags of all meters, e.g. the name of the export.
+     */
+    public MicrometerStreamingMetrics(@Nonnull final MeterRegistry registry, @Nonnull final Iterable<Tag> tags) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(registry), "Missing meter registry!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(tags), "Missing tags!");
+        this.registry = registry;
+        this.tags = Tags.of(tags);
+        this.rows = Counter.builder(PREFIX + "rows").tags(this.tags).baseUnit("rows").register(registry);
+        this.producerBlocked = Timer.builder(PREFIX + "producer.blocked").tags(this.tags).register(registry);
+        this.timeToFirstByte = Timer.builder(PREFIX + "time.to.first.byte").tags(this.tags).register(registry);
+        this.admissionWait = Timer.builder(PREFIX + "scheduler.wait").tags(this.tags).register(registry);
+        Gauge.builder(PREFIX + "scheduler.queue", queueDepth, AtomicInteger::get).tags(this.tags).register(registry);
+    }
+
+    @Override
+    public void recordBytes(@Nonnull final String stage, final long bytes) {
+        meter(this.bytes, stage, key -> Counter.builder(PREFIX + BYTES).tags(tags).tag("stage", key).baseUnit(BYTES).register(registry))
+                .increment(bytes);
+    }
+
+    @Override
+    public void recordRows(final long rows) {
+        this.rows.increment(rows);
+    }
+
+    @Override
+    public void recordProducerBlocked(final long nanos) {
+        producerBlocked.record(nanos, NANOSECONDS);
+    }
+
+    @Override
+    public void recordTimeToFirstByte(final long nanos) {
+        timeToFirstByte.record(nanos, NANOSECONDS);
+    }
+
+    @Override
+    public void recordRequest(@Nonnull final String method, final long nanos, final boolean success) {
+        final String outcome = success ? SUCCESS : FAILURE;
+        meter(success ? succeededRequests : failedRequests, method,
+                key -> Timer.builder(PREFIX + "requests").tags(tags).tag("method", key).tag("outcome", outcome).register(registry))
+                .record(nanos, NANOSECONDS);
+    }
+
+    @Override
+    public void recordCompression(@Nonnull final String codec, final long bytesIn, final long bytesOut) {
+        if (bytesOut <= 0) {
+            return;
+        }
+        meter(compressionRatios, codec,
+                key -> DistributionSummary.builder(PREFIX + "compression.ratio").tags(tags).tag("codec", key).register(registry))
+                .record((double) bytesIn / bytesOut);
+    }
+
+    @Override
+    public void recordCompressionLevel(@Nonnull final String codec, final int level, final long bytesIn) {
+        meter(compressionLevels, codec + ':' + level,
+                key -> Counter.builder(PREFIX + "compression.level").tags(tags).tag("codec", codec).tag("level", Integer.toString(level))
+                        .baseUnit(BYTES).register(registry))
+                .increment(bytesIn);
+    }
+
+    @Override
+    public void recordAdmissionWait(final long nanos) {
+        admissionWait.record(nanos, NANOSECONDS);
+    }
+
+    @Override
+    public void recordQueueDepth(final int depth) {
+        queueDepth.set(depth);
+    }
+
+    private static <M> M meter(final ConcurrentMap<String, M> meters, final String key, final Function<String, M> factory) {
+        // Look up first, computeIfAbsent() of Java 8 locks even when the meter is already there.
+        final M meter = meters.get(key);
+        return isNull(meter) ? meters.computeIfAbsent(key, factory) : meter;
+    }
+
+}
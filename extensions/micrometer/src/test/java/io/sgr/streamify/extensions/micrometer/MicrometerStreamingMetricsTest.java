@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.micrometer;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.Test;
+
+public class MicrometerStreamingMetricsTest {
+
+    @Test
+    public void testMetersRegistered() {
+        final MeterRegistry registry = new SimpleMeterRegistry();
+        final MicrometerStreamingMetrics metrics = new MicrometerStreamingMetrics(registry, Tags.of("export", "orders"));
+        metrics.recordBytes("upload", 100);
+        metrics.recordBytes("upload", 50);
+        metrics.recordBytes("gzip.in", 400);
+        metrics.recordRows(1024);
+        metrics.recordProducerBlocked(MILLISECONDS.toNanos(5));
+        metrics.recordTimeToFirstByte(MILLISECONDS.toNanos(20));
+        metrics.recordRequest("PUT", MILLISECONDS.toNanos(100), true);
+        metrics.recordRequest("PUT", MILLISECONDS.toNanos(100), false);
+        metrics.recordCompression("gzip", 400, 100);
+        metrics.recordCompression("gzip", 0, 0);
+        metrics.recordCompressionLevel("gzip-adaptive", 6, 1000);
+        metrics.recordCompressionLevel("gzip-adaptive", 6, 500);
+        metrics.recordCompressionLevel("gzip-adaptive", 0, 200);
+        metrics.recordAdmissionWait(MILLISECONDS.toNanos(30));
+        metrics.recordQueueDepth(7);
+        metrics.recordQueueDepth(3);
+
+        assertEquals(150, registry.get("streamify.bytes").tag("stage", "upload").tag("export", "orders").counter().count(), 0);
+        assertEquals(400, registry.get("streamify.bytes").tag("stage", "gzip.in").counter().count(), 0);
+        assertEquals(1024, registry.get("streamify.rows").counter().count(), 0);
+        assertEquals(5, registry.get("streamify.producer.blocked").timer().totalTime(MILLISECONDS), 0);
+        assertEquals(20, registry.get("streamify.time.to.first.byte").timer().totalTime(MILLISECONDS), 0);
+        assertEquals(1, registry.get("streamify.requests").tag("method", "PUT").tag("outcome", "success").timer().count());
+        assertEquals(1, registry.get("streamify.requests").tag("method", "PUT").tag("outcome", "failure").timer().count());
+        assertEquals(1, registry.get("streamify.compression.ratio").tag("codec", "gzip").summary().count());
+        assertEquals(4, registry.get("streamify.compression.ratio").tag("codec", "gzip").summary().mean(), 0);
+        assertEquals(1500, registry.get("streamify.compression.level").tag("codec", "gzip-adaptive").tag("level", "6").counter().count(), 0);
+        assertEquals(200, registry.get("streamify.compression.level").tag("codec", "gzip-adaptive").tag("level", "0").counter().count(), 0);
+        assertEquals(30, registry.get("streamify.scheduler.wait").timer().totalTime(MILLISECONDS), 0);
+        assertEquals(3, registry.get("streamify.scheduler.queue").tag("export", "orders").gauge().value(), 0);
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.webdav;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.DEFAULT_MAX_CONCURRENT_PARTS;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.DEFAULT_MAX_RETRIES;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.DEFAULT_PART_SIZE;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.DEFAULT_RETRY_BACKOFF_MILLIS;
+import static java.util.Objects.nonNull;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Settings of chunked uploads, where the content is sliced into fixed size parts which are uploaded concurrently into
+ * a temporary collection under {@link #getUploadsUrl()}, then assembled into the target file with a single MOVE, the way
+ * Nextcloud's chunked upload works.
+ * <p>
+ * At most {@code (maxConcurrentParts + 1) * partSize} bytes are held in memory per stream. A part is kept until the
+ * server acknowledged it, so a part which failed to upload is retried on its own with exponential backoff, instead of
+ * failing the whole upload.
+ */
+public class ChunkedUploadOptions {
+
+    private final String uploadsUrl;
+
+    private int partSize = DEFAULT_PART_SIZE;
+    private int maxConcurrentParts = DEFAULT_MAX_CONCURRENT_PARTS;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MILLIS;
+
+    /**
+     * @param uploadsUrl
+     *         URL under which temporary upload collections are created, e.g.
+     *         {@code https://cloud.example.com/remote.php/dav/uploads/<username>/}.
+     */
+    public ChunkedUploadOptions(@Nonnull final String uploadsUrl) {
+        checkArgument(!isNullOrEmpty(uploadsUrl), "Missing uploads URL!");
+        this.uploadsUrl = uploadsUrl.endsWith("/") ? uploadsUrl : uploadsUrl + "/";
+    }
+
+    /**
+     * @param other
+     *         Options to copy every setting from, so a copy can be adjusted without touching them.
+     */
+    public ChunkedUploadOptions(@Nonnull final ChunkedUploadOptions other) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(other), "Missing options to copy!");
+        this.uploadsUrl = other.uploadsUrl;
+        this.partSize = other.partSize;
+        this.maxConcurrentParts = other.maxConcurrentParts;
+        this.maxRetries = other.maxRetries;
+        this.retryBackoffMillis = other.retryBackoffMillis;
+    }
+
+    @Nonnull
+    public String getUploadsUrl() {
+        return uploadsUrl;
+    }
+
+    public int getPartSize() {
+        return partSize;
+    }
+
+    public ChunkedUploadOptions setPartSize(final int partSize) {
+        checkArgument(partSize > 0, "Part size should be greater than 0!");
+        this.partSize = partSize;
+        return this;
+    }
+
+    public int getMaxConcurrentParts() {
+        return maxConcurrentParts;
+    }
+
+    public ChunkedUploadOptions setMaxConcurrentParts(final int maxConcurrentParts) {
+        checkArgument(maxConcurrentParts > 0, "Max concurrent parts should be greater than 0!");
+        this.maxConcurrentParts = maxConcurrentParts;
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param maxRetries
+     *         How many more times a request is attempted after it failed, 0 to fail the upload on first error.
+     * @return This options.
+     */
+    public ChunkedUploadOptions setMaxRetries(final int maxRetries) {
+        checkArgument(maxRetries >= 0, "Max retries should not be negative!");
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    /**
+     * @param retryBackoffMillis
+     *         Delay before the first retry, doubled for every following one, up to
+     *         {@link io.sgr.streamify.extensions.webdav.utils.WebDavConstants#MAX_RETRY_BACKOFF_MILLIS}.
+     * @return This options.
+     */
+    public ChunkedUploadOptions setRetryBackoffMillis(final long retryBackoffMillis) {
+        checkArgument(retryBackoffMillis >= 0, "Retry backoff should not be negative!");
+        this.retryBackoffMillis = retryBackoffMillis;
+        return this;
+    }
+
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.webdav;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.HEADER_DESTINATION;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.HEADER_OC_CHECKSUM;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.MAX_RETRY_BACKOFF_MILLIS;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.METHOD_MKCOL;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.METHOD_MOVE;
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.sgr.streamify.Abortable;
+import io.sgr.streamify.OutputStreamWrapper;
+import io.sgr.streamify.checksums.ChecksumOptions;
+import io.sgr.streamify.checksums.ChecksumOutputStream;
+import io.sgr.streamify.extensions.webdav.utils.http.HttpStatusException;
+import io.sgr.streamify.extensions.webdav.utils.http.OkHttpStreamingCallback;
+import io.sgr.streamify.metrics.StreamingMetrics;
+import io.sgr.streamify.wrappers.OutputStreamWrappers;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Uploads content in fixed size parts over several connections at once, see {@link ChunkedUploadOptions}.
+ * <p>
+ * Parts are named {@code 00001}, {@code 00002}, and so on, then assembled by moving {@code .file} of the upload
+ * collection to the target URL. Requests which failed on the connection, with a server error or with 429 are retried with
+ * backoff, see {@link ChunkedUploadOptions#getMaxRetries()}, other client errors fail right away. {@link #getCommittedBytes()}
+ * tells how far the server has acknowledged the content. Once the upload failed the upload collection is deleted, nothing is
+ * left at the target.
+ */
+public class ChunkedUploadOutputStream extends OutputStream implements Abortable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedUploadOutputStream.class);
+
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("streamify-webdav-retry-%d").build());
+
+    private final OkHttpClient client;
+    private final String url;
+    private final String collectionUrl;
+    private final MediaType mediaType;
+    private final int partSize;
+    private final int maxBuffers;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final Collection<OutputStreamWrapper> wrappers;
+
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final List<Part> parts = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Map<Integer, Integer> acknowledged = new TreeMap<>();
+
+    private StreamingMetrics metrics = StreamingMetrics.NOOP;
+    private int bufferSize = OutputStreamWrappers.MAX_BUFFER_SIZE;
+    private ChecksumOptions checksumOptions;
+    private ChecksumOutputStream checksums;
+    private long openedAtNanos;
+    private int allocated;
+    private OutputStream outputStream;
+    private boolean closed;
+    private volatile boolean aborted;
+    private int committedParts;
+    private volatile long committedBytes;
+
+    ChunkedUploadOutputStream(
+            @Nonnull final OkHttpClient client, @Nonnull final String url, @Nonnull final String contentType,
+            @Nonnull final ChunkedUploadOptions options, final Collection<OutputStreamWrapper> wrappers) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(client), "Missing okhttp client!");
+        this.client = client;
+        checkArgument(!isNullOrEmpty(url), "Missing target URL to upload to!");
+        this.url = url;
+        checkArgument(!isNullOrEmpty(contentType), "Missing content type!");
+        this.mediaType = MediaType.parse(contentType);
+        //noinspection ConstantConditions
+        checkArgument(nonNull(options), "Missing chunked upload options!");
+        this.collectionUrl = options.getUploadsUrl() + "streamify-" + UUID.randomUUID() + "/";
+        this.partSize = options.getPartSize();
+        // One part being filled while the others are on the wire.
+        this.maxBuffers = options.getMaxConcurrentParts() + 1;
+        this.freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+        this.maxRetries = options.getMaxRetries();
+        this.retryBackoffMillis = options.getRetryBackoffMillis();
+        this.wrappers = wrappers;
+    }
+
+    /**
+     * @param metrics
+     *         Where to report bytes per stage, compression, time spent waiting for free parts, time to first byte and
+     *         latency of every request to, must be set before {@link #init()}.
+     * @return This stream.
+     */
+    ChunkedUploadOutputStream setMetrics(@Nonnull final StreamingMetrics metrics) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(metrics), "Missing metrics!");
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * @param bufferSize
+     *         Size of the buffer in front of the wrappers, see {@link OutputStreamWrappers}, must be set before
+     *         {@link #init()}.
+     * @return This stream.
+     */
+    ChunkedUploadOutputStream setBufferSize(final int bufferSize) {
+        checkArgument(bufferSize > 0, "Buffer size should be greater than 0!");
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * @param checksumOptions
+     *         Checksums to compute over the bytes sent, after wrappers applied, the strongest of which is sent along when
+     *         the parts are assembled, for the server to verify, none if {@code null}. Must be set before {@link #init()}.
+     * @return This stream.
+     */
+    ChunkedUploadOutputStream setChecksumOptions(@Nullable final ChecksumOptions checksumOptions) {
+        this.checksumOptions = checksumOptions;
+        return this;
+    }
+
+    ChunkedUploadOutputStream init() throws IOException {
+        openedAtNanos = System.nanoTime();
+        LOGGER.info("Uploading content to '{}' in parts of {} bytes through '{}'", url, partSize, collectionUrl);
+        executeWithRetries(new Request.Builder().url(collectionUrl).header(HEADER_DESTINATION, url).method(METHOD_MKCOL, null).build(), this::isCreated);
+        OutputStream sink = new PartWriter();
+        if (nonNull(checksumOptions)) {
+            this.checksums = new ChecksumOutputStream(sink, checksumOptions.getAlgorithms());
+            sink = checksums;
+        }
+        this.outputStream = OutputStreamWrappers.apply(sink, wrappers, bufferSize, metrics);
+        return this;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        outputStream.write(b);
+    }
+
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        outputStream.write(b, off, len);
+    }
+
+    /**
+     * Flushes the wrappers only, parts are always uploaded once they are full, or when this stream is closed.
+     *
+     * @throws IOException
+     *         If any wrapper failed to flush or an upload has already failed.
+     */
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            outputStream.close();
+            CompletableFuture.allOf(parts.stream().map(part -> part.done).toArray(CompletableFuture<?>[]::new)).get();
+            final Request.Builder move = new Request.Builder().url(collectionUrl + ".file").header(HEADER_DESTINATION, url).method(METHOD_MOVE, null);
+            if (nonNull(checksums) && checksumOptions.isVerify()) {
+                WebDavChecksums.ocChecksum(checksums).ifPresent(checksum -> move.header(HEADER_OC_CHECKSUM, checksum));
+            }
+            // The response of a MOVE which went through might still get lost, retrying it then fails for the parts are gone.
+            executeWithRetries(move.build(), this::isMoved);
+            if (nonNull(checksums) && checksumOptions.isSidecar()) {
+                WebDavChecksums.writeSidecars(client, url, checksums);
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            LOGGER.error(e.getMessage(), e);
+            abort();
+            throw new IOException(e);
+        } catch (IOException | RuntimeException e) {
+            abort();
+            throw e;
+        }
+        LOGGER.info("Completed.");
+    }
+
+    /**
+     * @return Number of leading bytes of the content, after wrappers applied, which have been acknowledged by the server.
+     */
+    public long getCommittedBytes() {
+        return committedBytes;
+    }
+
+    /**
+     * Cancels parts in flight and deletes those already uploaded, nothing shows up under the target URL.
+     */
+    @Override
+    public void abort() {
+        if (aborted) {
+            return;
+        }
+        closed = true;
+        aborted = true;
+        LOGGER.warn("Aborting upload to '{}' with {} bytes committed.", url, committedBytes);
+        for (Part part : parts) {
+            final Call call = part.call;
+            if (nonNull(call)) {
+                call.cancel();
+            }
+        }
+        try {
+            execute(new Request.Builder().url(collectionUrl).delete().build());
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Failed to clean up upload collection '%s'", collectionUrl), e);
+        }
+    }
+
+    /**
+     * @param request
+     *         The request to send.
+     * @param done
+     *         Checked after a failed attempt, tells whether an earlier attempt went through despite the failure, in
+     *         which case there's nothing more to do.
+     */
+    private void executeWithRetries(@Nonnull final Request request, @Nullable final BooleanSupplier done) throws IOException {
+        int attempt = 0;
+        while (true) {
+            try {
+                execute(request);
+                return;
+            } catch (IOException e) {
+                if (nonNull(done) && done.getAsBoolean()) {
+                    LOGGER.warn("Failed to {} '{}', but it had already been done: {}", request.method(), request.url(), e.getMessage());
+                    return;
+                }
+                if (attempt >= maxRetries || !isRetryable(e)) {
+                    throw e;
+                }
+                final long delay = backoff(attempt++);
+                LOGGER.warn("Failed to {} '{}', retrying in {} ms: {}", request.method(), request.url(), delay, e.getMessage());
+                try {
+                    MILLISECONDS.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to retry!");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Whether the upload collection exists, e.g. a MKCOL went through but its response got lost, and the retry
+     *         was refused for the collection exists already.
+     */
+    private boolean isCreated() {
+        return isSuccessful(status(collectionUrl));
+    }
+
+    /**
+     * @return Whether the parts have been assembled, i.e. the upload collection is gone and the target exists.
+     */
+    private boolean isMoved() {
+        return status(collectionUrl) == HTTP_NOT_FOUND && isSuccessful(status(url));
+    }
+
+    /**
+     * @return Status code of a HEAD request to the given URL, -1 if there was no response.
+     */
+    private int status(@Nonnull final String target) {
+        try (
+                Response response = client.newCall(new Request.Builder().url(target).head().build()).execute()
+        ) {
+            return response.code();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isSuccessful(final int code) {
+        return code >= 200 && code < 300;
+    }
+
+    /**
+     * @return Whether the same request might succeed later, i.e. the connection failed, or the server failed or asked
+     *         to slow down. Other client errors would only fail the same way again.
+     */
+    private static boolean isRetryable(@Nonnull final Throwable e) {
+        return !(e instanceof HttpStatusException) || ((HttpStatusException) e).isRetryable();
+    }
+
+    private long backoff(final int attempt) {
+        final int shift = Math.min(attempt, 16);
+        return retryBackoffMillis > MAX_RETRY_BACKOFF_MILLIS >> shift ? MAX_RETRY_BACKOFF_MILLIS : retryBackoffMillis << shift;
+    }
+
+    private void execute(@Nonnull final Request request) throws IOException {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try (
+                Response response = client.newCall(request).execute()
+        ) {
+            if (response.isSuccessful()) {
+                success = true;
+                return;
+            }
+            final ResponseBody body = response.body();
+            final String errStr = isNull(body) ? "NA" : body.string();
+            throw new HttpStatusException(String.format("Failed to %s '%s' because error code %d received! Details: %s",
+                    request.method(), request.url(), response.code(), errStr), response.code());
+        } finally {
+            metrics.recordRequest(request.method(), System.nanoTime() - start, success);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        final Throwable e = failure.get();
+        if (nonNull(e)) {
+            throw new IOException("Failed to upload part!", e);
+        }
+    }
+
+    private byte[] nextBuffer() throws IOException {
+        checkFailure();
+        byte[] buffer = freeBuffers.poll();
+        if (isNull(buffer) && allocated < maxBuffers) {
+            allocated++;
+            return new byte[partSize];
+        }
+        try {
+            if (isNull(buffer)) {
+                // Every finished part gives its buffer back, failed or not, so this won't block forever.
+                final long start = System.nanoTime();
+                buffer = freeBuffers.take();
+                metrics.recordProducerBlocked(System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for parts to be uploaded!");
+        }
+        checkFailure();
+        return buffer;
+    }
+
+    private void uploadPart(@Nonnull final byte[] buffer, final int length) {
+        if (parts.isEmpty()) {
+            metrics.recordTimeToFirstByte(System.nanoTime() - openedAtNanos);
+        }
+        final Part part = new Part(parts.size() + 1, buffer, length);
+        part.done.whenComplete((ignored, e) -> {
+            if (nonNull(e)) {
+                failure.compareAndSet(null, e);
+            } else {
+                acknowledge(part);
+            }
+            freeBuffers.offer(buffer);
+        });
+        parts.add(part);
+        send(part);
+    }
+
+    private void send(@Nonnull final Part part) {
+        if (aborted) {
+            part.done.completeExceptionally(new IOException("Upload aborted!"));
+            return;
+        }
+        final Request request = new Request.Builder()
+                .url(String.format("%s%05d", collectionUrl, part.number))
+                .header(HEADER_DESTINATION, url)
+                .put(RequestBody.create(mediaType, part.buffer, 0, part.length))
+                .build();
+        final CompletableFuture<Void> attempt = new CompletableFuture<>();
+        final long start = System.nanoTime();
+        attempt.whenComplete((ignored, e) -> {
+            metrics.recordRequest(request.method(), System.nanoTime() - start, isNull(e));
+            if (isNull(e)) {
+                metrics.recordBytes(WebDavOutputStream.STAGE_UPLOAD, part.length);
+                part.done.complete(null);
+                return;
+            }
+            if (aborted || part.attempts >= maxRetries || !isRetryable(e)) {
+                part.done.completeExceptionally(e);
+                return;
+            }
+            final long delay = backoff(part.attempts++);
+            LOGGER.warn("Failed to upload part {} to '{}', retrying in {} ms: {}", part.number, collectionUrl, delay, e.getMessage());
+            RETRY_SCHEDULER.schedule(() -> send(part), delay, MILLISECONDS);
+        });
+        final Call call = client.newCall(request);
+        part.call = call;
+        call.enqueue(new OkHttpStreamingCallback(attempt));
+    }
+
+    private synchronized void acknowledge(@Nonnull final Part part) {
+        acknowledged.put(part.number, part.length);
+        long committed = committedBytes;
+        Integer length;
+        while (nonNull(length = acknowledged.remove(committedParts + 1))) {
+            committedParts++;
+            committed += length;
+        }
+        committedBytes = committed;
+    }
+
+    private static final class Part {
+
+        private final int number;
+        private final byte[] buffer;
+        private final int length;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private int attempts;
+        private volatile Call call;
+
+        private Part(final int number, final byte[] buffer, final int length) {
+            this.number = number;
+            this.buffer = buffer;
+            this.length = length;
+        }
+
+    }
+
+    private final class PartWriter extends OutputStream {
+
+        private byte[] current;
+        private int position;
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (isNull(current)) {
+                current = nextBuffer();
+            }
+            current[position++] = (byte) b;
+            if (position == current.length) {
+                sendCurrent();
+            }
+        }
+
+        @Override
+        public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                if (isNull(current)) {
+                    current = nextBuffer();
+                }
+                final int count = Math.min(remaining, current.length - position);
+                System.arraycopy(b, offset, current, position, count);
+                position += count;
+                offset += count;
+                remaining -= count;
+                if (position == current.length) {
+                    sendCurrent();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Always send at least one part, even for empty content.
+            if (position > 0 || parts.isEmpty()) {
+                if (isNull(current)) {
+                    current = nextBuffer();
+                }
+                sendCurrent();
+            }
+            checkFailure();
+        }
+
+        private void sendCurrent() throws IOException {
+            checkFailure();
+            uploadPart(current, position);
+            current = null;
+            position = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.webdav;
+
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.HEADER_DIGEST;
+import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.HEADER_OC_CHECKSUM;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import com.google.common.base.Splitter;
+import com.google.common.io.BaseEncoding;
+import io.sgr.streamify.checksums.ChecksumAlgorithm;
+import io.sgr.streamify.checksums.ChecksumOutputStream;
+
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Checksums over HTTP: the {@code OC-Checksum} header of ownCloud and Nextcloud, which carries one checksum as
+ * {@code <algorithm>:<hex>}, and the {@code Digest} header of RFC 3230, which carries any number of them as
+ * {@code <algorithm>=<base64>}.
+ */
+final class WebDavChecksums {
+
+    private static final MediaType TEXT_PLAIN = MediaType.parse("text/plain; charset=utf-8");
+
+    private WebDavChecksums() {
+    }
+
+    /**
+     * @param checksums
+     *         A closed stream.
+     * @return Value of the {@code OC-Checksum} header for the strongest of the checksums computed.
+     */
+    @Nonnull
+    static Optional<String> ocChecksum(@Nonnull final ChecksumOutputStream checksums) {
+        return checksums.getChecksums().keySet().stream()
+                .reduce((weaker, stronger) -> stronger)
+                .map(algorithm -> algorithm.getOcName() + ":" + checksums.getHexChecksum(algorithm).orElse(""));
+    }
+
+    /**
+     * @param headers
+     *         Headers of a response.
+     * @return Checksums the destination reported for the content it received, if any.
+     */
+    @Nonnull
+    static Map<ChecksumAlgorithm, byte[]> reported(@Nonnull final Headers headers) {
+        final Map<ChecksumAlgorithm, byte[]> reported = new EnumMap<>(ChecksumAlgorithm.class);
+        final String ocChecksum = headers.get(HEADER_OC_CHECKSUM);
+        if (nonNull(ocChecksum)) {
+            for (String checksum : Splitter.on(' ').trimResults().omitEmptyStrings().split(ocChecksum)) {
+                final List<String> parts = Splitter.on(':').limit(2).splitToList(checksum);
+                findAlgorithm(parts.get(0), true).ifPresent(algorithm -> decode(parts, true)
+                        .ifPresent(value -> reported.put(algorithm, value)));
+            }
+        }
+        final String digest = headers.get(HEADER_DIGEST);
+        if (nonNull(digest)) {
+            for (String checksum : Splitter.on(',').trimResults().omitEmptyStrings().split(digest)) {
+                final List<String> parts = Splitter.on('=').limit(2).splitToList(checksum);
+                findAlgorithm(parts.get(0), false).ifPresent(algorithm -> decode(parts, false)
+                        .ifPresent(value -> reported.put(algorithm, value)));
+            }
+        }
+        return reported;
+    }
+
+    /**
+     * @throws IOException
+     *         If the destination reported a different checksum than the one computed for any algorithm.
+     */
+    static void verify(@Nonnull final String url, @Nonnull final ChecksumOutputStream checksums, @Nonnull final Headers headers) throws IOException {
+        final Map<ChecksumAlgorithm, byte[]> reported = reported(headers);
+        for (Map.Entry<ChecksumAlgorithm, byte[]> entry : reported.entrySet()) {
+            final byte[] computed = checksums.getChecksums().get(entry.getKey());
+            if (nonNull(computed) && !Arrays.equals(computed, entry.getValue())) {
+                throw new IOException(String.format("Checksum mismatch of '%s', %s of %d bytes sent was %s but %s received!", url, entry.getKey(),
+                        checksums.getCount(), checksums.getHexChecksum(entry.getKey()).orElse(""), BaseEncoding.base16().lowerCase().encode(entry.getValue())));
+            }
+        }
+    }
+
+    /**
+     * Writes each checksum next to the content, e.g. {@code export.jsonl.sha256}, in the format of {@code sha256sum}.
+     */
+    static void writeSidecars(@Nonnull final OkHttpClient client, @Nonnull final String url, @Nonnull final ChecksumOutputStream checksums)
+            throws IOException {
+        final List<String> segments = HttpUrl.get(url).pathSegments();
+        final String fileName = segments.get(segments.size() - 1);
+        for (ChecksumAlgorithm algorithm : checksums.getChecksums().keySet()) {
+            final String content = checksums.getHexChecksum(algorithm).orElse("") + "  " + fileName + "\n";
+            final Request request = new Request.Builder().url(url + algorithm.getFileExtension()).put(RequestBody.create(TEXT_PLAIN, content.getBytes(UTF_8)))
+                    .build();
+            try (
+                    Response response = client.newCall(request).execute()
+            ) {
+                if (!response.isSuccessful()) {
+                    final ResponseBody body = response.body();
+                    final String errStr = isNull(body) ? "NA" : body.string();
+                    throw new IOException(String.format("Failed to write checksum to '%s' because error code %d received! Details: %s",
+                            request.url(), response.code(), errStr));
+                }
+            }
+        }
+    }
+
+    private static Optional<ChecksumAlgorithm> findAlgorithm(@Nonnull final String name, final boolean ocName) {
+        return Arrays.stream(ChecksumAlgorithm.values())
+                .filter(algorithm -> (ocName ? algorithm.getOcName() : algorithm.getDigestName()).equalsIgnoreCase(name.trim()))
+                .findFirst();
+    }
+
+    private static Optional<byte[]> decode(@Nonnull final List<String> parts, final boolean hex) {
+        if (parts.size() < 2) {
+            return Optional.empty();
+        }
+        final String value = parts.get(1).trim();
+        try {
+            return Optional.of(hex ? BaseEncoding.base16().lowerCase().decode(value.toLowerCase(Locale.ROOT)) : BaseEncoding.base64().decode(value));
+        } catch (IllegalArgumentException e) {
+            // Not a checksum we can make sense of, e.g. of an algorithm by the same name in a different encoding.
+            return Optional.empty();
+        }
+    }
+
+}
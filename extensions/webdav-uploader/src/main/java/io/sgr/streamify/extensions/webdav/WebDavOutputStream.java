@@ -19,13 +19,27 @@ package io.sgr.streamify.extensions.webdav;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
+import io.sgr.streamify.Abortable;
 import io.sgr.streamify.OutputStreamWrapper;
+import io.sgr.streamify.buffers.BytePipe;
+import io.sgr.streamify.buffers.ChunkSource;
+import io.sgr.streamify.buffers.ChunkedPipe;
+import io.sgr.streamify.buffers.SpillOptions;
+import io.sgr.streamify.buffers.SpillingPipe;
+import io.sgr.streamify.checksums.ChecksumOptions;
+import io.sgr.streamify.checksums.ChecksumOutputStream;
 import io.sgr.streamify.extensions.webdav.utils.WebDavConstants;
 import io.sgr.streamify.extensions.webdav.utils.http.OkHttpStreamingCallback;
 import io.sgr.streamify.extensions.webdav.utils.http.OkHttpStreamingRequestBody;
+import io.sgr.streamify.metrics.MeteredChunkSource;
+import io.sgr.streamify.metrics.StreamingMetrics;
+import io.sgr.streamify.wrappers.OutputStreamWrappers;
 
+import okhttp3.Call;
+import okhttp3.Headers;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
@@ -34,15 +48,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
-public class WebDavOutputStream extends OutputStream {
+public class WebDavOutputStream extends OutputStream implements Abortable {
+
+    static final String STAGE_UPLOAD = "upload";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WebDavOutputStream.class);
 
@@ -51,14 +66,32 @@ public class WebDavOutputStream extends OutputStream {
     private final String contentType;
     private final int bufferSize;
     private final Collection<OutputStreamWrapper> wrappers;
+    private final SpillOptions spillOptions;
 
-    private PipedInputStream inputStream;
+    private StreamingMetrics metrics = StreamingMetrics.NOOP;
+    private ChecksumOptions checksumOptions;
+    private BytePipe pipe;
+    private ChecksumOutputStream checksums;
     private OutputStream outputStream;
     private CompletableFuture<?> future;
+    private Call call;
+    private volatile Headers responseHeaders;
+    private boolean closed;
 
     WebDavOutputStream(
             @Nonnull final OkHttpClient client, @Nonnull final String url, @Nonnull final String contentType, final int bufferSize,
             final Collection<OutputStreamWrapper> wrappers) {
+        this(client, url, contentType, bufferSize, wrappers, null);
+    }
+
+    /**
+     * @param spillOptions
+     *         When given, content which doesn't fit into the buffer is spilled to disk instead of blocking the writer,
+     *         see {@link SpillingPipe}.
+     */
+    WebDavOutputStream(
+            @Nonnull final OkHttpClient client, @Nonnull final String url, @Nonnull final String contentType, final int bufferSize,
+            final Collection<OutputStreamWrapper> wrappers, final SpillOptions spillOptions) {
         //noinspection ConstantConditions
         checkArgument(nonNull(client), "Missing okhttp client!");
         this.client = client;
@@ -68,21 +101,56 @@ public class WebDavOutputStream extends OutputStream {
         this.contentType = contentType;
         this.bufferSize = bufferSize <= 0 ? WebDavConstants.DEFAULT_BUFFER_SIZE : bufferSize;
         this.wrappers = wrappers;
+        this.spillOptions = spillOptions;
+    }
+
+    /**
+     * @param metrics
+     *         Where to report bytes per stage, compression, producer blocked time, time to first byte and PUT latency
+     *         to, must be set before {@link #init()}.
+     * @return This stream.
+     */
+    WebDavOutputStream setMetrics(@Nonnull final StreamingMetrics metrics) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(metrics), "Missing metrics!");
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * @param checksumOptions
+     *         Checksums to compute over the bytes sent, after wrappers applied, and verify against those reported by the
+     *         server, none if {@code null}. Must be set before {@link #init()}.
+     * @return This stream.
+     */
+    WebDavOutputStream setChecksumOptions(@Nullable final ChecksumOptions checksumOptions) {
+        this.checksumOptions = checksumOptions;
+        return this;
     }
 
     WebDavOutputStream init() throws IOException {
-        this.inputStream = new PipedInputStream(bufferSize);
-        this.outputStream = new PipedOutputStream(inputStream);
-        if (nonNull(this.wrappers) && !wrappers.isEmpty()) {
-            for (OutputStreamWrapper wrapper : wrappers) {
-                this.outputStream = wrapper.wrap(this.outputStream);
-            }
+        final long start = System.nanoTime();
+        this.pipe = isNull(spillOptions) ? new ChunkedPipe(bufferSize) : new SpillingPipe(bufferSize, spillOptions);
+        OutputStream sink = pipe.sink();
+        if (nonNull(checksumOptions)) {
+            this.checksums = new ChecksumOutputStream(sink, checksumOptions.getAlgorithms());
+            sink = checksums;
         }
-        final RequestBody reqBody = new OkHttpStreamingRequestBody(inputStream, contentType);
+        this.outputStream = OutputStreamWrappers.apply(sink, wrappers, bufferSize, metrics);
+        final ChunkSource source = metrics == StreamingMetrics.NOOP ? pipe.source() : new MeteredChunkSource(pipe.source(), metrics, STAGE_UPLOAD, start);
+        final RequestBody reqBody = OkHttpStreamingRequestBody.fromChunkSource(source, contentType);
         LOGGER.info("Uploading content to '{}'", url);
         final Request request = new Request.Builder().url(url).put(reqBody).build();
         this.future = new CompletableFuture<>();
-        client.newCall(request).enqueue(new OkHttpStreamingCallback(future));
+        // Once the upload failed nobody is going to drain the pipe, so release the producer instead of letting it block.
+        this.future.whenComplete((ignored, e) -> {
+            metrics.recordRequest(request.method(), System.nanoTime() - start, isNull(e));
+            if (nonNull(e)) {
+                closeSourceQuietly();
+            }
+        });
+        this.call = client.newCall(request);
+        call.enqueue(new OkHttpStreamingCallback(future, headers -> this.responseHeaders = headers));
         return this;
     }
 
@@ -90,20 +158,68 @@ public class WebDavOutputStream extends OutputStream {
         outputStream.write(b);
     }
 
+    @Override
+    public void write(@Nonnull final byte[] b, final int off, final int len) throws IOException {
+        outputStream.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
     @Override
     public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
         try {
             outputStream.close();
             if (nonNull(future)) {
                 future.get();
             }
+            if (nonNull(checksums)) {
+                if (checksumOptions.isVerify() && nonNull(responseHeaders)) {
+                    WebDavChecksums.verify(url, checksums, responseHeaders);
+                }
+                if (checksumOptions.isSidecar()) {
+                    WebDavChecksums.writeSidecars(client, url, checksums);
+                }
+            }
         } catch (InterruptedException | ExecutionException e) {
             LOGGER.error(e.getMessage(), e);
             throw new IOException(e);
         } finally {
-            inputStream.close();
+            closeSourceQuietly();
+            metrics.recordProducerBlocked(pipe.getProducerBlockedNanos());
         }
         LOGGER.info("Completed.");
     }
 
+    /**
+     * Cancels the upload without ending the request body, so the server never gets a complete request. The wrappers
+     * are left as they are, closing them would only produce more content nobody is going to read.
+     */
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LOGGER.warn("Aborting upload to '{}'.", url);
+        if (nonNull(call)) {
+            call.cancel();
+        }
+        closeSourceQuietly();
+    }
+
+    private void closeSourceQuietly() {
+        try {
+            pipe.source().close();
+        } catch (IOException e) {
+            LOGGER.warn(e.getMessage(), e);
+        }
+    }
+
 }
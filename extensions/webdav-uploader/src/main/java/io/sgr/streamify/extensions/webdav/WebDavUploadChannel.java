@@ -20,37 +20,89 @@ package io.sgr.streamify.extensions.webdav;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static io.sgr.streamify.extensions.webdav.utils.WebDavConstants.DEFAULT_BUFFER_SIZE;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import io.sgr.streamify.OutputStreamWrapper;
+import io.sgr.streamify.ReactiveStreamingChannel;
 import io.sgr.streamify.StreamingChannel;
 import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.buffers.ChunkSource;
+import io.sgr.streamify.buffers.SpillOptions;
+import io.sgr.streamify.checksums.ChecksumOptions;
+import io.sgr.streamify.concurrent.VirtualThreads;
 import io.sgr.streamify.extensions.webdav.utils.http.BasicAuthInterceptor;
+import io.sgr.streamify.extensions.webdav.utils.http.OkHttpStreamingCallback;
+import io.sgr.streamify.extensions.webdav.utils.http.OkHttpStreamingRequestBody;
+import io.sgr.streamify.metrics.MeteredChunkSource;
+import io.sgr.streamify.metrics.StreamingMetrics;
+import io.sgr.streamify.reactive.PublisherChunkSource;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.reactivestreams.Publisher;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
-public class WebDavUploadChannel implements StreamingChannel {
+public class WebDavUploadChannel implements StreamingChannel, ReactiveStreamingChannel {
 
     private static final String WEB_PATH_SEPARATOR = "/";
 
     private final String baseUrl;
-    private final OkHttpClient client;
+    private final OkHttpClient baseClient;
+
+    private OkHttpClient client;
+    private ExecutorService executor;
+    private Integer maxConcurrentRequests;
+    private ChunkedUploadOptions chunkedUploadOptions;
+    private OkHttpClient chunkedUploadClient;
+    private SpillOptions spillOptions;
+    private ChecksumOptions checksumOptions;
+    private StreamingMetrics metrics = StreamingMetrics.NOOP;
 
     public WebDavUploadChannel(@Nonnull final String baseUrl, final String username, final String password) {
+        this(baseUrl, username, password, SharedClientHolder.CLIENT);
+    }
+
+    /**
+     * Channels derive their clients from the given one, sharing its connection pool and dispatcher, so many channels
+     * to the same servers don't multiply sockets and threads. Pass the same client to every channel, tuned to taste,
+     * e.g. {@code new OkHttpClient.Builder().connectionPool(new ConnectionPool(32, 5, TimeUnit.MINUTES)).build()}.
+     * Channels created without one share a default client with a 30 seconds connect timeout and a 1 hour read
+     * timeout.
+     *
+     * @param baseUrl
+     *         URL files are uploaded under.
+     * @param username
+     *         User to authenticate as, or {@code null} for no authentication.
+     * @param password
+     *         Password of the user.
+     * @param sharedClient
+     *         Client to derive from.
+     */
+    public WebDavUploadChannel(@Nonnull final String baseUrl, final String username, final String password, @Nonnull final OkHttpClient sharedClient) {
         checkArgument(!isNullOrEmpty(baseUrl), "Missing base URL!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(sharedClient), "Missing okhttp client!");
         this.baseUrl = baseUrl.endsWith(WEB_PATH_SEPARATOR) ? baseUrl : baseUrl + WEB_PATH_SEPARATOR;
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
-        if (!isNullOrEmpty(username)) {
-            builder.addInterceptor(new BasicAuthInterceptor(username, password));
+        if (isNullOrEmpty(username)) {
+            this.baseClient = sharedClient;
+        } else {
+            this.baseClient = sharedClient.newBuilder().addInterceptor(new BasicAuthInterceptor(username, password)).build();
         }
-        builder.connectTimeout(30, TimeUnit.SECONDS);
-        builder.readTimeout(1, TimeUnit.HOURS);
-        this.client = builder.build();
+        this.client = baseClient;
     }
 
     @SuppressFBWarnings("OS_OPEN_STREAM")   // The returned stream will be closed somewhere else.
@@ -59,9 +111,151 @@ public class WebDavUploadChannel implements StreamingChannel {
     public OutputStream open(@Nonnull final StreamingRequest request, @Nonnull final String identifier) throws IOException {
         checkArgument(!isNullOrEmpty(identifier), "Identifier shouldn't be blank string!");
         final String relPath = buildRelativePath(request, identifier);
-        final OkHttpClient client = rebuildClientPerRequestIfNeeded(request);
-        return new WebDavOutputStream(client, baseUrl + relPath, request.getContentType(), request.getBufferSize().orElse(DEFAULT_BUFFER_SIZE), null)
-                .init();
+        final List<OutputStreamWrapper> wrappers = request.getWrappers();
+        final ChecksumOptions checksums = request.getChecksumOptions().orElse(checksumOptions);
+        if (nonNull(chunkedUploadOptions)) {
+            final OkHttpClient client = clientFor(chunkedUploadClient, request);
+            return new ChunkedUploadOutputStream(client, baseUrl + relPath, request.getContentType(), chunkedUploadOptionsFor(request), wrappers)
+                    .setBufferSize(request.getBufferSize().orElse(DEFAULT_BUFFER_SIZE)).setChecksumOptions(checksums).setMetrics(metrics).init();
+        }
+        final OkHttpClient client = clientFor(this.client, request);
+        return new WebDavOutputStream(client, baseUrl + relPath, request.getContentType(), request.getBufferSize().orElse(DEFAULT_BUFFER_SIZE), wrappers,
+                request.getSpillOptions().orElse(spillOptions)).setChecksumOptions(checksums).setMetrics(metrics).init();
+    }
+
+    /**
+     * Uploads the published content with a single PUT, requesting more only as the connection takes it, so no thread is
+     * tied up on the producing side. The sending side still takes a dispatcher thread per upload, since OkHttp writes
+     * request bodies in a blocking way, and the dispatcher queues uploads beyond its limits of concurrent requests.
+     * Chunked uploads, wrappers and compression codecs don't apply, compress the published buffers instead.
+     */
+    @Nonnull
+    @Override
+    public CompletableFuture<Void> stream(@Nonnull final StreamingRequest request, @Nonnull final String identifier, @Nonnull final Publisher<ByteBuffer> content) {
+        checkArgument(!isNullOrEmpty(identifier), "Identifier shouldn't be blank string!");
+        //noinspection ConstantConditions
+        checkArgument(nonNull(content), "Missing content to stream!");
+        checkArgument(request.getWrappers().isEmpty(), "Wrappers and compression codecs are not supported when streaming from a publisher!");
+        final String url = baseUrl + buildRelativePath(request, identifier);
+        final OkHttpClient client = clientFor(this.client, request);
+        final long start = System.nanoTime();
+        final PublisherChunkSource source = new PublisherChunkSource();
+        final ChunkSource body = metrics == StreamingMetrics.NOOP ? source : new MeteredChunkSource(source, metrics, WebDavOutputStream.STAGE_UPLOAD, start);
+        final Request httpRequest = new Request.Builder().url(url).put(OkHttpStreamingRequestBody.fromChunkSource(body, request.getContentType())).build();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        future.whenComplete((ignored, e) -> {
+            metrics.recordRequest(httpRequest.method(), System.nanoTime() - start, isNull(e));
+            if (nonNull(e)) {
+                // Stops the publisher, and the request body if it's still waiting for content, e.g. when cancelled.
+                source.close();
+            }
+        });
+        content.subscribe(source);
+        client.newCall(httpRequest).enqueue(new OkHttpStreamingCallback(future));
+        return future;
+    }
+
+    /**
+     * Switches to chunked uploads, or back to a single PUT per stream when given {@code null}.
+     *
+     * @param options
+     *         Chunked upload options.
+     * @return This channel.
+     */
+    public WebDavUploadChannel setChunkedUpload(@Nullable final ChunkedUploadOptions options) {
+        this.chunkedUploadOptions = options;
+        rebuildClients();
+        return this;
+    }
+
+    /**
+     * Runs requests, and with them the writers of streamed request bodies, on the given executor instead of OkHttp's
+     * default pool of platform threads. With virtual threads, see {@link VirtualThreads#newThreadPerTaskExecutor(String)},
+     * an upload waiting on a slow network no longer holds a platform thread, so raise
+     * {@link #setMaxConcurrentRequests(Integer)} along with it. The executor is not shut down by this channel.
+     * <p>
+     * This gives the channel a dispatcher of its own, while connections are still pooled with the shared client.
+     *
+     * @param executor
+     *         The executor, or {@code null} for the shared client's one.
+     * @return This channel.
+     */
+    public WebDavUploadChannel setExecutor(@Nullable final ExecutorService executor) {
+        this.executor = executor;
+        rebuildClients();
+        return this;
+    }
+
+    /**
+     * @param maxConcurrentRequests
+     *         Most requests in flight at once for this channel, further ones are queued, or {@code null} for the limits of
+     *         the shared client's dispatcher. Since uploads all go to the same host, this applies per host as well. Like
+     *         {@link #setExecutor(ExecutorService)}, this gives the channel a dispatcher of its own.
+     * @return This channel.
+     */
+    public WebDavUploadChannel setMaxConcurrentRequests(@Nullable final Integer maxConcurrentRequests) {
+        checkArgument(isNull(maxConcurrentRequests) || maxConcurrentRequests > 0, "Max concurrent requests should be greater than 0!");
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        rebuildClients();
+        return this;
+    }
+
+    /**
+     * Lets single PUT uploads spill content which doesn't fit into the request's buffer to disk, so writers, e.g. a
+     * database cursor, can finish at full speed while the upload drains at network speed. Chunked uploads are not
+     * affected, they are bounded by their parts.
+     *
+     * @param options
+     *         Spill options, or {@code null} to block writers once the buffer is full.
+     * @return This channel.
+     */
+    public WebDavUploadChannel setSpillOptions(@Nullable final SpillOptions options) {
+        this.spillOptions = options;
+        return this;
+    }
+
+    /**
+     * Computes checksums of every upload while it's being sent, so it doesn't have to be downloaded again to be
+     * verified. Single PUT uploads are verified against the {@code OC-Checksum} or {@code Digest} header of the
+     * response, if the server reports one, since the checksum is only known once the body has been sent. Chunked
+     * uploads send the strongest checksum along with the request assembling the parts, for the server to verify.
+     *
+     * @param options
+     *         Checksum options, or {@code null} to not compute any.
+     * @return This channel.
+     */
+    public WebDavUploadChannel setChecksumOptions(@Nullable final ChecksumOptions options) {
+        this.checksumOptions = options;
+        return this;
+    }
+
+    /**
+     * @param metrics
+     *         Where to report measurements of every upload to, nowhere if {@code null}.
+     * @return This channel.
+     */
+    public WebDavUploadChannel setMetrics(@Nullable final StreamingMetrics metrics) {
+        this.metrics = nonNull(metrics) ? metrics : StreamingMetrics.NOOP;
+        return this;
+    }
+
+    private void rebuildClients() {
+        this.client = isNull(executor) && isNull(maxConcurrentRequests) ? baseClient : baseClient.newBuilder().dispatcher(newDispatcher(0)).build();
+        // Parts all go to the same host, which OkHttp limits to 5 concurrent calls by default.
+        // Dispatchers of their own still run calls on the threads of the shared one, unless given an executor.
+        this.chunkedUploadClient = isNull(chunkedUploadOptions)
+                ? null : baseClient.newBuilder().dispatcher(newDispatcher(chunkedUploadOptions.getMaxConcurrentParts())).build();
+    }
+
+    private Dispatcher newDispatcher(final int minRequestsPerHost) {
+        final Dispatcher dispatcher = new Dispatcher(isNull(executor) ? baseClient.dispatcher().executorService() : executor);
+        if (nonNull(maxConcurrentRequests)) {
+            dispatcher.setMaxRequests(maxConcurrentRequests);
+            dispatcher.setMaxRequestsPerHost(maxConcurrentRequests);
+        }
+        dispatcher.setMaxRequestsPerHost(Math.max(dispatcher.getMaxRequestsPerHost(), minRequestsPerHost));
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), dispatcher.getMaxRequestsPerHost()));
+        return dispatcher;
     }
 
     private String buildRelativePath(@Nonnull final StreamingRequest request, @Nonnull final String identifier) {
@@ -69,14 +263,43 @@ public class WebDavUploadChannel implements StreamingChannel {
         return identifier.startsWith(WEB_PATH_SEPARATOR) ? identifier.substring(WEB_PATH_SEPARATOR.length(), identifier.length() - 1) : identifier;
     }
 
-    private OkHttpClient rebuildClientPerRequestIfNeeded(final StreamingRequest request) {
-        // TODO: This will be extremely useful when need to set per request timeout.
-        //        For example:
-        //        return this.client.newBuilder()
-        //                .connectTimeout(30, TimeUnit.SECONDS)
-        //                .readTimeout(1, TimeUnit.HOURS)
-        //                .build();
-        return this.client;
+    /**
+     * Derives a client with the timeouts of the request if it has any, the derived client shares the connection pool and
+     * dispatcher of the given one, so it's cheap to build and connections are still reused.
+     */
+    private static OkHttpClient clientFor(final OkHttpClient client, final StreamingRequest request) {
+        final Optional<Long> connectTimeout = request.getConnectTimeoutMillis();
+        final Optional<Long> readTimeout = request.getReadTimeoutMillis();
+        final Optional<Long> writeTimeout = request.getWriteTimeoutMillis();
+        if (!connectTimeout.isPresent() && !readTimeout.isPresent() && !writeTimeout.isPresent()) {
+            return client;
+        }
+        final OkHttpClient.Builder builder = client.newBuilder();
+        connectTimeout.ifPresent(timeout -> builder.connectTimeout(timeout, TimeUnit.MILLISECONDS));
+        readTimeout.ifPresent(timeout -> builder.readTimeout(timeout, TimeUnit.MILLISECONDS));
+        writeTimeout.ifPresent(timeout -> builder.writeTimeout(timeout, TimeUnit.MILLISECONDS));
+        return builder.build();
+    }
+
+    private ChunkedUploadOptions chunkedUploadOptionsFor(final StreamingRequest request) {
+        final ChunkedUploadOptions options = chunkedUploadOptions;
+        final Optional<Integer> maxConcurrency = request.getMaxConcurrency().filter(max -> max < options.getMaxConcurrentParts());
+        if (!maxConcurrency.isPresent()) {
+            return options;
+        }
+        return new ChunkedUploadOptions(options).setMaxConcurrentParts(maxConcurrency.get());
+    }
+
+    /**
+     * Holds the client shared by channels created without one, only built once needed.
+     */
+    private static final class SharedClientHolder {
+
+        private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(1, TimeUnit.HOURS)
+                .build();
+
     }
 
 }
@@ -20,5 +20,16 @@ package io.sgr.streamify.extensions.webdav.utils;
 public class WebDavConstants {
 
     public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_PART_SIZE = 10 * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONCURRENT_PARTS = 4;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_RETRY_BACKOFF_MILLIS = 500;
+    public static final long MAX_RETRY_BACKOFF_MILLIS = 30 * 1000;
+
+    public static final String METHOD_MKCOL = "MKCOL";
+    public static final String METHOD_MOVE = "MOVE";
+    public static final String HEADER_DESTINATION = "Destination";
+    public static final String HEADER_OC_CHECKSUM = "OC-Checksum";
+    public static final String HEADER_DIGEST = "Digest";
 
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.webdav.utils.http;
+
+import java.io.IOException;
+
+/**
+ * The server answered, but with an unsuccessful status code.
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final int code;
+
+    public HttpStatusException(final String message, final int code) {
+        super(message);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return Whether the same request might succeed later, i.e. a server error or too many requests. Other client
+     *         errors, e.g. 403 or 409, would only fail the same way again.
+     */
+    public boolean isRetryable() {
+        return code >= 500 || code == TOO_MANY_REQUESTS;
+    }
+
+}
@@ -23,22 +23,35 @@ import static java.util.Objects.nonNull;
 
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.Headers;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public class OkHttpStreamingCallback implements Callback {
 
     private final CompletableFuture<?> future;
+    private final Consumer<Headers> headersConsumer;
 
     public OkHttpStreamingCallback(@Nonnull final CompletableFuture<?> future) {
+        this(future, null);
+    }
+
+    /**
+     * @param headersConsumer
+     *         Receives headers of a successful response before the future completes, e.g. to verify checksums.
+     */
+    public OkHttpStreamingCallback(@Nonnull final CompletableFuture<?> future, @Nullable final Consumer<Headers> headersConsumer) {
         //noinspection ConstantConditions
         checkArgument(nonNull(future), "Missing CompletableFuture!");
         this.future = future;
+        this.headersConsumer = headersConsumer;
     }
 
     @Override
@@ -52,13 +65,16 @@ public class OkHttpStreamingCallback implements Callback {
                 ResponseBody body = response.body()
         ) {
             if (response.isSuccessful()) {
+                if (nonNull(headersConsumer)) {
+                    headersConsumer.accept(response.headers());
+                }
                 future.complete(null);
                 return;
             }
             final String errStr = isNull(body) ? "NA" : body.string();
             final String err =
                     String.format("Failed to stream to '%s' because error code %d received! Details: %s", response.request().url(), response.code(), errStr);
-            future.completeExceptionally(new IOException(err));
+            future.completeExceptionally(new HttpStatusException(err, response.code()));
         }
     }
 
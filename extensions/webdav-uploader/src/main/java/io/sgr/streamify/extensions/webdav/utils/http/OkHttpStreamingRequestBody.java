@@ -21,6 +21,8 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static java.util.Objects.nonNull;
 
+import io.sgr.streamify.buffers.ChunkSource;
+
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okhttp3.internal.Util;
@@ -37,15 +39,40 @@ import javax.annotation.Nullable;
 public class OkHttpStreamingRequestBody extends RequestBody {
 
     private final InputStream inputStream;
+    private final ChunkSource chunkSource;
     private final String contentType;
 
     public OkHttpStreamingRequestBody(@Nonnull final InputStream inputStream, @Nullable final String contentType) {
         //noinspection ConstantConditions
         checkArgument(nonNull(inputStream), "Missing input stream!");
         this.inputStream = inputStream;
+        this.chunkSource = null;
+        this.contentType = contentType;
+    }
+
+    private OkHttpStreamingRequestBody(@Nonnull final ChunkSource chunkSource, @Nullable final String contentType) {
+        this.inputStream = null;
+        this.chunkSource = chunkSource;
         this.contentType = contentType;
     }
 
+    /**
+     * Chunks from the given source are written straight into the sink, without being copied through an {@link InputStream} first.
+     * A factory rather than a constructor, for sources like {@link io.sgr.streamify.buffers.ChunkedPipe.Source} are
+     * input streams as well.
+     *
+     * @param chunkSource
+     *         The source of the content.
+     * @param contentType
+     *         The content type.
+     * @return The request body.
+     */
+    public static OkHttpStreamingRequestBody fromChunkSource(@Nonnull final ChunkSource chunkSource, @Nullable final String contentType) {
+        //noinspection ConstantConditions
+        checkArgument(nonNull(chunkSource), "Missing chunk source!");
+        return new OkHttpStreamingRequestBody(chunkSource, contentType);
+    }
+
     @Nullable
     @Override
     public MediaType contentType() {
@@ -54,6 +81,17 @@ public class OkHttpStreamingRequestBody extends RequestBody {
 
     @Override
     public void writeTo(@Nonnull final BufferedSink sink) throws IOException {
+        if (nonNull(chunkSource)) {
+            try {
+                //noinspection StatementWithEmptyBody
+                while (chunkSource.readChunk(sink::write)) {
+                    // Keep draining until the producer closed its end.
+                }
+            } finally {
+                Util.closeQuietly(chunkSource);
+            }
+            return;
+        }
         Source source = null;
         try {
             source = Okio.source(inputStream);
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.webdav;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+public class ChunkedUploadOutputStreamTest {
+
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<>();
+
+    private MockWebServer server;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    private final AtomicBoolean created = new AtomicBoolean();
+    private final AtomicBoolean moved = new AtomicBoolean();
+
+    private volatile int failingPart;
+    private volatile int failureCode = 500;
+    private volatile boolean loseMoveResponse;
+    private volatile boolean loseMkcolResponse;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Nonnull
+            @Override
+            public MockResponse dispatch(@Nonnull final RecordedRequest request) {
+                requests.add(request);
+                if (loseMoveResponse && "MOVE".equals(request.getMethod())) {
+                    // The parts are gone once assembled, so a retried MOVE fails.
+                    return moved.getAndSet(true)
+                            ? new MockResponse().setResponseCode(404)
+                            : new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                }
+                if (loseMkcolResponse && "MKCOL".equals(request.getMethod())) {
+                    // The collection exists once created, so a retried MKCOL is not allowed.
+                    return created.getAndSet(true)
+                            ? new MockResponse().setResponseCode(405)
+                            : new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                }
+                if ("HEAD".equals(request.getMethod()) && moved.get() && request.getPath().startsWith("/uploads/")) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                if ("PUT".equals(request.getMethod()) && request.getPath().endsWith(String.format("/%05d", failingPart))
+                        && failuresLeft.getAndDecrement() > 0) {
+                    return new MockResponse().setResponseCode(failureCode);
+                }
+                return new MockResponse().setResponseCode(201);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void testUploadInParts() throws IOException {
+        final byte[] bytes = new byte[10 * 1000 + 123];
+        new Random().nextBytes(bytes);
+        final ChunkedUploadOptions options = new ChunkedUploadOptions(server.url("/uploads").toString()).setPartSize(1000).setMaxConcurrentParts(3);
+        final String target = server.url("/files/export.jsonl").toString();
+        final ChunkedUploadOutputStream out = new ChunkedUploadOutputStream(new OkHttpClient(), target, "application/x-jsonlines", options, null).init();
+        out.write(bytes, 0, 500);
+        out.write(bytes[500]);
+        out.write(bytes, 501, bytes.length - 501);
+        out.close();
+        assertEquals(bytes.length, out.getCommittedBytes());
+        assertEquals("MKCOL", requests.get(0).getMethod());
+        final RecordedRequest move = requests.get(requests.size() - 1);
+        assertEquals("MOVE", move.getMethod());
+        assertTrue(move.getPath().endsWith("/.file"));
+        assertEquals(target, move.getHeader("Destination"));
+        final Map<String, byte[]> parts = new TreeMap<>();
+        requests.stream().filter(request -> "PUT".equals(request.getMethod()))
+                .forEach(request -> parts.put(request.getPath(), request.getBody().readByteArray()));
+        assertEquals(11, parts.size());
+        final ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+        for (byte[] part : parts.values()) {
+            assembled.write(part);
+        }
+        assertArrayEquals(bytes, assembled.toByteArray());
+    }
+
+    @Test
+    public void testFailedPartBeenRetried() throws IOException {
+        failingPart = 2;
+        failuresLeft.set(2);
+        final ChunkedUploadOptions options = new ChunkedUploadOptions(server.url("/uploads/").toString())
+                .setPartSize(100).setMaxConcurrentParts(2).setRetryBackoffMillis(10);
+        final ChunkedUploadOutputStream out =
+                new ChunkedUploadOutputStream(new OkHttpClient(), server.url("/files/export.jsonl").toString(), "text/plain", options, null).init();
+        out.write(new byte[1000]);
+        out.close();
+        assertEquals(1000, out.getCommittedBytes());
+        assertEquals(12, requests.stream().filter(request -> "PUT".equals(request.getMethod())).count());
+        assertEquals("MOVE", requests.get(requests.size() - 1).getMethod());
+    }
+
+    @Test
+    public void testLostMoveResponse() throws IOException {
+        loseMoveResponse = true;
+        final ChunkedUploadOptions options = new ChunkedUploadOptions(server.url("/uploads/").toString())
+                .setPartSize(100).setMaxConcurrentParts(2).setRetryBackoffMillis(10);
+        final ChunkedUploadOutputStream out =
+                new ChunkedUploadOutputStream(new OkHttpClient(), server.url("/files/export.jsonl").toString(), "text/plain", options, null).init();
+        out.write(new byte[1000]);
+        out.close();
+        assertTrue(moved.get());
+        assertTrue(requests.stream().noneMatch(request -> "DELETE".equals(request.getMethod())));
+    }
+
+    @Test
+    public void testLostMkcolResponse() throws IOException {
+        loseMkcolResponse = true;
+        final ChunkedUploadOptions options = new ChunkedUploadOptions(server.url("/uploads/").toString())
+                .setPartSize(100).setMaxConcurrentParts(2).setRetryBackoffMillis(10);
+        final ChunkedUploadOutputStream out =
+                new ChunkedUploadOutputStream(new OkHttpClient(), server.url("/files/export.jsonl").toString(), "text/plain", options, null).init();
+        out.write(new byte[1000]);
+        out.close();
+        assertTrue(created.get());
+        assertEquals(1000, out.getCommittedBytes());
+        assertEquals("MOVE", requests.get(requests.size() - 1).getMethod());
+    }
+
+    @Test
+    public void testClientErrorNotRetried() {
+        failingPart = 2;
+        failureCode = 403;
+        failuresLeft.set(Integer.MAX_VALUE);
+        final ChunkedUploadOptions options = new ChunkedUploadOptions(server.url("/uploads/").toString())
+                .setPartSize(100).setMaxConcurrentParts(2).setMaxRetries(3).setRetryBackoffMillis(10);
+        try (
+                OutputStream out = new ChunkedUploadOutputStream(new OkHttpClient(), server.url("/files/export.jsonl").toString(), "text/plain", options, null)
+                        .init()
+        ) {
+            out.write(new byte[1000]);
+        } catch (IOException e) {
+            assertEquals(1, requests.stream().filter(request -> "PUT".equals(request.getMethod()) && request.getPath().endsWith("/00002")).count());
+            assertTrue(requests.stream().anyMatch(request -> "DELETE".equals(request.getMethod())));
+            return;
+        }
+        fail("Expecting upload to fail!");
+    }
+
+    @Test
+    public void testFailedPartAbortsUpload() {
+        failingPart = 2;
+        failuresLeft.set(Integer.MAX_VALUE);
+        final ChunkedUploadOptions options = new ChunkedUploadOptions(server.url("/uploads/").toString())
+                .setPartSize(100).setMaxConcurrentParts(2).setMaxRetries(1).setRetryBackoffMillis(10);
+        try (
+                OutputStream out = new ChunkedUploadOutputStream(new OkHttpClient(), server.url("/files/export.jsonl").toString(), "text/plain", options, null)
+                        .init()
+        ) {
+            out.write(new byte[1000]);
+        } catch (IOException e) {
+            assertTrue(requests.stream().anyMatch(request -> "DELETE".equals(request.getMethod())));
+            assertTrue(requests.stream().noneMatch(request -> "MOVE".equals(request.getMethod())));
+            return;
+        }
+        fail("Expecting upload to fail!");
+    }
+
+}
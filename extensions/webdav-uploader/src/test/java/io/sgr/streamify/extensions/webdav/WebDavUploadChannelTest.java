@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017-2019 SgrAlpha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.sgr.streamify.extensions.webdav;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.checksums.ChecksumAlgorithm;
+import io.sgr.streamify.checksums.ChecksumOptions;
+import io.sgr.streamify.extensions.webdav.requests.JsonLinesBasedStreamRequest;
+import io.sgr.streamify.reactive.StreamPublisher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+public class WebDavUploadChannelTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStreamFromPublisher() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201));
+        final WebDavUploadChannel channel = new WebDavUploadChannel(server.url("/").toString(), null, null);
+        final StreamingRequest request = new JsonLinesBasedStreamRequest();
+        final CountDownLatch closed = new CountDownLatch(1);
+        final StreamPublisher<String> content = new StreamPublisher<>(
+                IntStream.range(0, 10000).mapToObj(i -> "{\"id\":" + i + "}\n").onClose(closed::countDown),
+                line -> ByteBuffer.wrap(line.getBytes(UTF_8)), executor);
+        channel.stream(request, "rows.jsonl", content).get(10, TimeUnit.SECONDS);
+
+        final RecordedRequest recorded = server.takeRequest();
+        assertEquals("PUT", recorded.getMethod());
+        assertEquals("/rows.jsonl", recorded.getPath());
+        assertEquals(IntStream.range(0, 10000).mapToObj(i -> "{\"id\":" + i + "}\n").collect(Collectors.joining()), recorded.getBody().readUtf8());
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCompressedUpload() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201));
+        final WebDavUploadChannel channel = new WebDavUploadChannel(server.url("/").toString(), null, null);
+        final String content = IntStream.range(0, 10000).mapToObj(i -> "{\"id\":" + i + "}\n").collect(Collectors.joining());
+        try (OutputStream out = channel.open(new JsonLinesBasedStreamRequest().setCompression(true), "rows.jsonl.gz")) {
+            for (String line : content.split("(?<=\n)")) {
+                out.write(line.getBytes(UTF_8));
+            }
+        }
+
+        final RecordedRequest recorded = server.takeRequest();
+        assertEquals("/rows.jsonl.gz", recorded.getPath());
+        try (InputStream in = new GZIPInputStream(recorded.getBody().inputStream())) {
+            assertEquals(content, new String(ByteStreams.toByteArray(in), UTF_8));
+        }
+    }
+
+    @Test
+    public void testChecksumVerifiedAndWrittenNextToContent() throws Exception {
+        // SHA-256 of "123456789".
+        final String sha256 = "15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225";
+        server.enqueue(new MockResponse().setResponseCode(201).setHeader("OC-Checksum", "SHA256:" + sha256.toUpperCase(Locale.ROOT)));
+        server.enqueue(new MockResponse().setResponseCode(201));
+        final WebDavUploadChannel channel = new WebDavUploadChannel(server.url("/").toString(), null, null)
+                .setChecksumOptions(new ChecksumOptions(ChecksumAlgorithm.SHA256).setSidecar(true));
+        try (OutputStream out = channel.open(new JsonLinesBasedStreamRequest(), "rows.jsonl")) {
+            out.write("123456789".getBytes(UTF_8));
+        }
+
+        assertEquals("/rows.jsonl", server.takeRequest().getPath());
+        final RecordedRequest sidecar = server.takeRequest();
+        assertEquals("/rows.jsonl.sha256", sidecar.getPath());
+        assertEquals(sha256 + "  rows.jsonl\n", sidecar.getBody().readUtf8());
+    }
+
+    @Test
+    public void testChecksumMismatchFailsUpload() throws Exception {
+        // Digest header of RFC 3230, with the SHA-256 of "12345678" instead.
+        server.enqueue(new MockResponse().setResponseCode(201).setHeader("Digest", "sha-256=73l8gRjwLftklgfdXT+MdiMEjJwGPVMsyVxe16iYpk8="));
+        final WebDavUploadChannel channel = new WebDavUploadChannel(server.url("/").toString(), null, null)
+                .setChecksumOptions(new ChecksumOptions(ChecksumAlgorithm.CRC32C, ChecksumAlgorithm.SHA256));
+        try {
+            try (OutputStream out = channel.open(new JsonLinesBasedStreamRequest(), "rows.jsonl")) {
+                out.write("123456789".getBytes(UTF_8));
+            }
+            fail("Expecting upload to fail verification!");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Checksum mismatch"));
+        }
+    }
+
+    @Test
+    public void testPublisherFailureFailsUpload() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201));
+        final WebDavUploadChannel channel = new WebDavUploadChannel(server.url("/").toString(), null, null);
+        final StreamPublisher<Integer> content = new StreamPublisher<>(IntStream.range(0, 10).boxed(), i -> {
+            if (i == 5) {
+                throw new IllegalStateException("Something was wrong!");
+            }
+            return ByteBuffer.allocate(1);
+        }, executor);
+        try {
+            channel.stream(new JsonLinesBasedStreamRequest(), "rows.jsonl", content).get(10, TimeUnit.SECONDS);
+            fail("Expecting upload to fail!");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testPerRequestReadTimeout() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(201).setHeadersDelay(5, TimeUnit.SECONDS));
+        final WebDavUploadChannel channel = new WebDavUploadChannel(server.url("/").toString(), null, null);
+        final StreamingRequest request = new JsonLinesBasedStreamRequest() {
+            @Override
+            public Optional<Long> getReadTimeoutMillis() {
+                return Optional.of(200L);
+            }
+        };
+        try {
+            try (OutputStream out = channel.open(request, "rows.jsonl")) {
+                out.write("{\"id\":1}\n".getBytes(UTF_8));
+            }
+            fail("Expecting upload to time out waiting for the response!");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+}
@@ -18,6 +18,9 @@
 package io.sgr.streamify.extensions.webdav.requests;
 
 import io.sgr.streamify.StreamingRequest;
+import io.sgr.streamify.codecs.CompressionCodec;
+import io.sgr.streamify.codecs.CompressionOptions;
+import io.sgr.streamify.codecs.GZipCodec;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -60,6 +63,11 @@ public class JsonLinesBasedStreamRequest implements StreamingRequest {
         return this;
     }
 
+    @Override
+    public Optional<CompressionCodec> getCompressionCodec() {
+        return compress ? Optional.of(new GZipCodec(new CompressionOptions())) : Optional.empty();
+    }
+
     public boolean isCompress() {
         return compress;
     }
@@ -68,4 +76,5 @@ public class JsonLinesBasedStreamRequest implements StreamingRequest {
         this.compress = compress;
         return this;
     }
+
 }
@@ -17,11 +17,17 @@
 
 package io.sgr.streamify.extensions.webdav.utils.http;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import io.sgr.streamify.buffers.ChunkSource;
+import io.sgr.streamify.buffers.ChunkedPipe;
+
+import okio.Buffer;
 import okio.BufferedSink;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,6 +36,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 @RunWith(MockitoJUnitRunner.class)
 public class OkHttpStreamingRequestBodyTest {
@@ -46,4 +53,18 @@ public class OkHttpStreamingRequestBodyTest {
         assertTrue(body.isOneShot());
     }
 
+    @Test
+    public void testWriteChunksTo() throws IOException {
+        final byte[] bytes = "{\"key\":\"value\"}".getBytes(UTF_8);
+        final ChunkedPipe pipe = new ChunkedPipe(64, 4);
+        try (OutputStream outputStream = pipe.sink()) {
+            outputStream.write(bytes);
+        }
+        final ChunkSource source = pipe.source();
+        OkHttpStreamingRequestBody body = OkHttpStreamingRequestBody.fromChunkSource(source, "application/json");
+        final Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        assertArrayEquals(bytes, buffer.readByteArray());
+    }
+
 }
\ No newline at end of file